@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.cdi.sample1.IceCreamService;
+import org.ops4j.pax.cdi.sample1.client.IceCreamClient;
+import org.ops4j.pax.exam.Configuration;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.ops4j.pax.swissbox.tracker.ServiceLookup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceRegistration;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.pax.cdi.test.support.TestConfiguration.cdiProviderBundles;
+import static org.ops4j.pax.cdi.test.support.TestConfiguration.paxCdiProviderAdapter;
+import static org.ops4j.pax.cdi.test.support.TestConfiguration.workspaceBundle;
+import static org.ops4j.pax.exam.OptionUtils.combine;
+
+/**
+ * Delivers {@code ServiceCdiEvent}s to the observers of a bean bundle running in the framework,
+ * with the service obtained eagerly, lazily and with asynchronous delivery.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class ServiceCdiEventTest extends AbstractControlledTestBase {
+
+    private static final String LAZY_SERVICES = "org.ops4j.pax.cdi.extension.impl.ServiceEventBridge.lazyServices";
+
+    private static final String ASYNC = "org.ops4j.pax.cdi.extension.impl.EventQueue.async";
+
+    private static final long TIMEOUT = 10000;
+
+    @Configuration
+    public Option[] config() {
+        return combine(
+                baseConfigure(),
+
+                workspaceBundle("org.ops4j.pax.cdi.samples", "pax-cdi-sample1"),
+                workspaceBundle("org.ops4j.pax.cdi.samples", "pax-cdi-sample1-client"),
+                paxCdiProviderAdapter(),
+                cdiProviderBundles());
+    }
+
+    @Test
+    public void shouldDeliverEvents() throws Exception {
+        checkEvents("mango");
+    }
+
+    @Test
+    public void shouldDeliverEventsWithLazyServices() throws Exception {
+        System.setProperty(LAZY_SERVICES, "true");
+        try {
+            checkEvents("lemon");
+        }
+        finally {
+            System.clearProperty(LAZY_SERVICES);
+        }
+    }
+
+    @Test
+    public void shouldDeliverEventsAsynchronously() throws Exception {
+        System.setProperty(ASYNC, "true");
+        try {
+            checkEvents("pistachio");
+        }
+        finally {
+            System.clearProperty(ASYNC);
+        }
+    }
+
+    private void checkEvents(final String flavour) throws Exception {
+        // restart the client, so that its container reads the framework properties
+        Bundle clientBundle = findBundle("org.ops4j.pax.cdi.sample1.client");
+        assertThat(clientBundle, is(notNullValue()));
+        clientBundle.stop();
+        clientBundle.start();
+        IceCreamClient client = ServiceLookup.getService(bc, IceCreamClient.class, TIMEOUT);
+
+        Dictionary<String, String> props = new Hashtable<>();
+        props.put("flavour", flavour);
+        IceCreamService service = new IceCreamService() {
+
+            @Override
+            public String getFlavour() {
+                return flavour;
+            }
+        };
+        ServiceRegistration<IceCreamService> reg = bc.registerService(IceCreamService.class, service, props);
+        waitForEvents(client, "added IceCreamService with flavour " + flavour,
+            "added IceCreamService with class " + service.getClass().getName());
+
+        reg.unregister();
+        waitForEvents(client, "removed IceCreamService with flavour " + flavour,
+            "removed IceCreamService with class " + service.getClass().getName());
+    }
+
+    private void waitForEvents(IceCreamClient client, String... events) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            List<String> received = client.getEvents();
+            synchronized (received) {
+                received = new ArrayList<>(received);
+            }
+            if (received.containsAll(Arrays.asList(events))) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        assertThat(client.getEvents(), hasItems(events));
+    }
+
+    private Bundle findBundle(String symbolicName) {
+        for (Bundle b : bc.getBundles()) {
+            if (symbolicName.equals(b.getSymbolicName())) {
+                return b;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.util.AnnotationLiteral;
+import javax.inject.Inject;
+
+import org.jboss.weld.config.ConfigurationKey;
+import org.jboss.weld.config.WeldConfiguration;
+import org.jboss.weld.manager.api.ExecutorServices;
+import org.jboss.weld.manager.api.WeldManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.cdi.spi.CdiContainer;
+import org.ops4j.pax.cdi.spi.CdiContainerFactory;
+import org.ops4j.pax.cdi.test.support.CdiProvider;
+import org.ops4j.pax.exam.Configuration;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
+import static org.ops4j.pax.cdi.test.support.TestConfiguration.cdiProviderBundles;
+import static org.ops4j.pax.cdi.test.support.TestConfiguration.getCdiProvider;
+import static org.ops4j.pax.cdi.test.support.TestConfiguration.paxCdiProviderAdapter;
+import static org.ops4j.pax.cdi.test.support.TestConfiguration.workspaceBundle;
+import static org.ops4j.pax.exam.OptionUtils.combine;
+
+/**
+ * Restarts a bean bundle with Weld's concurrent deployment disabled and enabled and reports the
+ * average container startup time for both modes. Checks that the mode is actually applied, that
+ * concurrent deployments share one executor and that both modes deploy the same beans.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class WeldConcurrentDeploymentTest extends AbstractControlledTestBase {
+
+    private static final String CONCURRENT_DEPLOYMENT = "org.ops4j.pax.cdi.weld.impl.WeldCdiContainer.concurrentDeployment";
+
+    private static final String SHARED_EXECUTOR_SERVICES = "org.ops4j.pax.cdi.weld.impl.SharedExecutorServices";
+
+    private static final int RESTARTS = 10;
+
+    @Inject
+    private CdiContainerFactory containerFactory;
+
+    @Configuration
+    public Option[] config() {
+        return combine(
+                baseConfigure(),
+
+                workspaceBundle("org.ops4j.pax.cdi.samples", "pax-cdi-sample1"),
+                paxCdiProviderAdapter(),
+                cdiProviderBundles());
+    }
+
+    @Test
+    public void compareStartupTimes() throws Exception {
+        assumeThat(getCdiProvider(), is(CdiProvider.WELD2));
+
+        Bundle bundle = findBundle("org.ops4j.pax.cdi.sample1");
+        assertThat(bundle, is(notNullValue()));
+
+        Deployments sequential = deploy(bundle, false);
+        Deployments concurrent = deploy(bundle, true);
+        LOG.info("average Weld container startup: sequential {} us, concurrent {} us",
+            sequential.averageMicros(), concurrent.averageMicros());
+
+        assertThat(concurrent.executorServices, is(notNullValue()));
+        assertThat(concurrent.executorServices, is(not(sameInstance(sequential.executorServices))));
+        assertThat(concurrent.beans, is(sequential.beans));
+        assertThat(containerFactory.getContainers().size(), is(1));
+    }
+
+    private Deployments deploy(Bundle bundle, boolean concurrentDeployment) throws Exception {
+        System.setProperty(CONCURRENT_DEPLOYMENT, Boolean.toString(concurrentDeployment));
+        try {
+            Deployments deployments = new Deployments();
+            for (int i = 0; i < RESTARTS; i++) {
+                bundle.stop();
+                long start = System.nanoTime();
+                bundle.start();
+                CdiContainer container = getContainer(bundle);
+                assertThat(container, is(notNullValue()));
+                deployments.totalNanos += System.nanoTime() - start;
+                deployments.add(container.unwrap(WeldManager.class), concurrentDeployment);
+            }
+            return deployments;
+        }
+        finally {
+            System.clearProperty(CONCURRENT_DEPLOYMENT);
+        }
+    }
+
+    private CdiContainer getContainer(Bundle bundle) throws Exception {
+        for (ServiceReference<CdiContainer> ref : bc.getServiceReferences(CdiContainer.class,
+            "(bundleId=" + bundle.getBundleId() + ")")) {
+            return bc.getService(ref);
+        }
+        return null;
+    }
+
+    private Bundle findBundle(String symbolicName) {
+        for (Bundle b : bc.getBundles()) {
+            if (symbolicName.equals(b.getSymbolicName())) {
+                return b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the state of the deployments of one mode.
+     */
+    private static class Deployments {
+
+        private long totalNanos;
+        private ExecutorServices executorServices;
+        private List<String> beans;
+
+        void add(WeldManager manager, boolean concurrentDeployment) {
+            assertThat(manager, is(notNullValue()));
+            WeldConfiguration configuration = manager.getServices().get(WeldConfiguration.class);
+            assertThat(configuration.getBooleanProperty(ConfigurationKey.CONCURRENT_DEPLOYMENT),
+                is(concurrentDeployment));
+
+            ExecutorServices services = manager.getServices().get(ExecutorServices.class);
+            if (concurrentDeployment) {
+                assertThat(services.getClass().getName(), is(SHARED_EXECUTOR_SERVICES));
+                if (executorServices != null) {
+                    // one executor for all deployments
+                    assertThat(services, is(sameInstance(executorServices)));
+                }
+            }
+            else if (services != null) {
+                assertThat(services.getClass().getName(), is(not(SHARED_EXECUTOR_SERVICES)));
+            }
+            executorServices = services;
+
+            List<String> deployed = new ArrayList<>();
+            for (Bean<?> bean : manager.getBeans(Object.class, new AnyLiteral())) {
+                deployed.add(bean.toString());
+            }
+            Collections.sort(deployed);
+            if (beans != null) {
+                assertThat(deployed, is(beans));
+            }
+            beans = deployed;
+        }
+
+        long averageMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(totalNanos / RESTARTS);
+        }
+    }
+
+    @SuppressWarnings("all")
+    private static class AnyLiteral extends AnnotationLiteral<Any> implements Any {
+    }
+}
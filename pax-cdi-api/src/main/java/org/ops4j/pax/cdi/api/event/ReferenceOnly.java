@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.api.event;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.PARAMETER;
+
+/**
+ * Marks an observer of {@link ServiceCdiEvent}s which does not need the service object. Pax CDI
+ * does not obtain the service to deliver the event to this observer, so the service, which may be
+ * a lazily activated component, is not activated by the event. {@link ServiceCdiEvent#getService()}
+ * still obtains the service on demand while the event is being delivered.
+ * <p>
+ * This is not a qualifier and has no effect on other observers.
+ *
+ * <pre>
+ * public void onAdded(&#64;Observes &#64;ServiceAdded &#64;ReferenceOnly ServiceCdiEvent&lt;? extends MyService&gt; event)
+ * </pre>
+ */
+@Target(PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReferenceOnly {
+
+}
@@ -19,6 +19,9 @@ import org.osgi.framework.ServiceReference;
 
 /**
  * CDI event fired when a service is added or removed.
+ * <p>
+ * The service may be obtained lazily, on the first call of {@link #getService()}. It is only
+ * available while the event is being delivered.
  *
  * @param <T>
  *            service type
@@ -44,6 +47,17 @@ public class ServiceCdiEvent<T> {
         this.service = service;
     }
 
+    /**
+     * Creates an event for the given service reference. Subclasses obtaining the service lazily
+     * override {@link #getService()}.
+     *
+     * @param reference
+     *            service reference
+     */
+    protected ServiceCdiEvent(ServiceReference<T> reference) {
+        this.reference = reference;
+    }
+
     /**
      * Gets the service reference.
      *
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.Dependent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.spi.scan.BeanDescriptorParser;
+import org.ops4j.pax.cdi.spi.scan.BeanDiscoveryMode;
+import org.ops4j.pax.cdi.spi.scan.BeanScanIndex;
+import org.ops4j.pax.cdi.spi.scan.BeanScanner;
+import org.ops4j.pax.cdi.spi.scan.DefaultBeanDescriptor;
+import org.ops4j.pax.tinybundles.core.TinyBundle;
+import org.ops4j.pax.tinybundles.core.TinyBundles;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+
+/**
+ * Scans a bean bundle with a given number of classes, half of which carry a bean defining
+ * annotation, sequentially and in parallel. The scan index is disabled, so each invocation parses
+ * all class files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BeanScannerBenchmark {
+
+    private static final String PACKAGE = "org.ops4j.pax.cdi.benchmarks.scan";
+
+    private static final String BEANS_XML = "<beans xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" "
+        + "version=\"1.1\" bean-discovery-mode=\"annotated\"/>";
+
+    private static final BeanDescriptorParser PARSER = url -> new DefaultBeanDescriptor(url,
+        BeanDiscoveryMode.ANNOTATED, "1.1");
+
+    @Param({ "1000", "10000", "50000" })
+    private int classes;
+
+    @Param({ "1", "4" })
+    private int parallelism;
+
+    private EmbeddedFramework framework;
+    private Bundle bundle;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(BeanScanner.PARALLELISM, Integer.toString(parallelism));
+        properties.put(BeanScanIndex.ENABLED, "false");
+        framework = new EmbeddedFramework(properties);
+
+        TinyBundle tb = TinyBundles.bundle()
+            .set(Constants.BUNDLE_MANIFESTVERSION, "2")
+            .set(Constants.BUNDLE_SYMBOLICNAME, PACKAGE)
+            .add("META-INF/beans.xml",
+                new ByteArrayInputStream(BEANS_XML.getBytes(StandardCharsets.UTF_8)));
+        for (int i = 0; i < classes; i++) {
+            String className = PACKAGE + ".Generated" + i;
+            byte[] bytes = (i % 2 == 0)
+                ? ClassGenerator.generate(className, Dependent.class)
+                : ClassGenerator.generate(className);
+            tb.add(className.replace('.', '/') + ".class", new ByteArrayInputStream(bytes));
+        }
+        bundle = framework.install(PACKAGE, tb.build());
+        bundle.start();
+
+        int found = scan().size();
+        if (found != classes / 2) {
+            throw new IllegalStateException("expected " + classes / 2 + " bean classes, found " + found);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    public Set<String> scan() {
+        BeanScanner scanner = new BeanScanner(bundle, PARSER);
+        scanner.scan();
+        return scanner.getBeanClasses();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates trivial classes for benchmarks which need a large number of distinct bean classes.
+ * Each class is public, has a default constructor and may carry runtime visible annotations
+ * without members.
+ */
+public class ClassGenerator {
+
+    private ClassGenerator() {
+    }
+
+    /**
+     * Generates the bytecode of a class.
+     *
+     * @param className
+     *            fully qualified class name
+     * @param annotations
+     *            annotation types to be placed on the class
+     * @return class file bytes
+     */
+    public static byte[] generate(String className, Class<?>... annotations) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+            className.replace('.', '/'), null, "java/lang/Object", null);
+        for (Class<?> annotation : annotations) {
+            cw.visitAnnotation(Type.getDescriptor(annotation), true).visitEnd();
+        }
+        visitConstructor(cw);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Generates the bytecode of a class with empty observer methods {@code observe0(T event)},
+     * {@code observe1(T event)}, ..., where the event parameter {@code i} is annotated with
+     * {@code @Observes}, the given qualifiers and {@code @Filter("(name=i)")}.
+     *
+     * @param className
+     *            fully qualified class name
+     * @param eventType
+     *            observed event type
+     * @param filterAnnotation
+     *            filter qualifier with a single {@code String value()} member
+     * @param name
+     *            attribute name used in the filters
+     * @param count
+     *            number of observer methods
+     * @param qualifiers
+     *            qualifiers without members placed on every event parameter
+     * @return class file bytes
+     */
+    public static byte[] generateObservers(String className, Class<?> eventType,
+        Class<?> filterAnnotation, String name, int count, Class<?>... qualifiers) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+            className.replace('.', '/'), null, "java/lang/Object", null);
+        visitConstructor(cw);
+        String descriptor = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(eventType));
+        for (int i = 0; i < count; i++) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "observe" + i, descriptor, null, null);
+            mv.visitParameterAnnotation(0, "Ljavax/enterprise/event/Observes;", true).visitEnd();
+            for (Class<?> qualifier : qualifiers) {
+                mv.visitParameterAnnotation(0, Type.getDescriptor(qualifier), true).visitEnd();
+            }
+            AnnotationVisitor av = mv.visitParameterAnnotation(0, Type.getDescriptor(filterAnnotation), true);
+            av.visit("value", "(" + name + "=" + i + ")");
+            av.visitEnd();
+            mv.visitCode();
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void visitConstructor(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Class loader defining generated classes.
+     */
+    public static class GeneratedClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes = new HashMap<>();
+
+        public GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public void add(String className, byte[] bytes) {
+            classes.put(className, bytes);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
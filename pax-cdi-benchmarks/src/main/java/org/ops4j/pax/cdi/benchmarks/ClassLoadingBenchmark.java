@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * Starts the Weld container of a small bean bundle and counts the exceptions created while it
+ * starts. Exceptions are recorded with the {@code jdk.JavaExceptionThrow} event of Java Flight
+ * Recorder, which instruments the {@code Throwable} constructors, so the times reported here are
+ * higher than those of {@link ContainerBenchmark}.
+ * <p>
+ * The counters are totals per iteration, divide them by {@code starts} for the number of
+ * exceptions per container start. With {@code packageIndex=false}, the Weld {@code DelegatingBundle}
+ * looks up every class in the bean bundle first and then in the remaining bundles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassLoadingBenchmark {
+
+    private static final String PACKAGE_CACHE = "org.ops4j.pax.cdi.weld.impl.util.DelegatingBundle.packageCache";
+
+    private static final String EXCEPTION_THROW = "jdk.JavaExceptionThrow";
+
+    @Param({ "true", "false" })
+    private String packageIndex;
+
+    private EmbeddedFramework framework;
+    private Bundle beanBundle;
+    private Recording recording;
+
+    /**
+     * Exceptions created during container starts.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Exceptions {
+
+        public long starts;
+        public long exceptions;
+        public long classNotFound;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            starts = 0;
+            exceptions = 0;
+            classNotFound = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty(PACKAGE_CACHE, packageIndex);
+        Map<String, String> properties = new HashMap<>();
+        properties.put(Constants.FRAMEWORK_BOOTDELEGATION, "sun.*,com.sun.*");
+        framework = new EmbeddedFramework(properties);
+
+        File bundles = ContainerBenchmark.getBundlesDirectory();
+        List<Bundle> installed = new ArrayList<>();
+        installed.addAll(framework.installAll(new File(bundles, "common")));
+        installed.addAll(framework.installAll(new File(bundles, "weld")));
+        framework.startAll(installed);
+
+        beanBundle = ContainerBenchmark.installBeanBundle(framework);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+        System.clearProperty(PACKAGE_CACHE);
+    }
+
+    @Setup(Level.Invocation)
+    public void startRecording() {
+        recording = new Recording();
+        recording.enable(EXCEPTION_THROW);
+        recording.start();
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopRecording(Exceptions counters) throws IOException, BundleException {
+        recording.stop();
+        Path file = Files.createTempFile("pax-cdi-benchmark", ".jfr");
+        try {
+            recording.dump(file);
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (EXCEPTION_THROW.equals(event.getEventType().getName())) {
+                    counters.exceptions++;
+                    RecordedClass thrownClass = event.getClass("thrownClass");
+                    if (thrownClass != null && ClassNotFoundException.class.getName().equals(thrownClass.getName())) {
+                        counters.classNotFound++;
+                    }
+                }
+            }
+            counters.starts++;
+        }
+        finally {
+            recording.close();
+            Files.delete(file);
+            beanBundle.stop();
+        }
+    }
+
+    @Benchmark
+    public Bundle start() throws BundleException {
+        beanBundle.start();
+        return beanBundle;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.weld.environment.se.WeldContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.api.Component;
+import org.ops4j.pax.cdi.api.Service;
+import org.ops4j.pax.cdi.benchmarks.ClassGenerator.GeneratedClassLoader;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Starts and shuts down a Weld SE container with a number of OSGi service components, measuring
+ * component registration, activation and service publication in the component registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ComponentRegistryBenchmark {
+
+    private static final String PACKAGE = "org.ops4j.pax.cdi.benchmarks.components.";
+
+    @Param({ "10", "100", "500" })
+    private int components;
+
+    private EmbeddedFramework framework;
+    private GeneratedClassLoader classLoader;
+    private Class<?>[] classes;
+
+    @Setup
+    public void setUp() throws Exception {
+        framework = new EmbeddedFramework();
+        classLoader = new GeneratedClassLoader(getClass().getClassLoader());
+        classes = new Class<?>[components];
+        for (int i = 0; i < components; i++) {
+            String className = PACKAGE + "Component" + i;
+            classLoader.add(className, ClassGenerator.generate(className, Component.class, Service.class));
+            classes[i] = classLoader.loadClass(className);
+        }
+
+        WeldContainer weld = createCdi();
+        int registered = countServices();
+        framework.dispose(weld);
+        if (registered != components) {
+            throw new IllegalStateException("expected " + components + " services, found " + registered);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    public WeldContainer startStop() {
+        WeldContainer weld = createCdi();
+        framework.dispose(weld);
+        return weld;
+    }
+
+    private WeldContainer createCdi() {
+        Thread thread = Thread.currentThread();
+        ClassLoader prevTccl = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return framework.createCdi(classes);
+        }
+        finally {
+            thread.setContextClassLoader(prevTccl);
+        }
+    }
+
+    private int countServices() throws InvalidSyntaxException {
+        int count = 0;
+        for (Class<?> cls : classes) {
+            ServiceReference<?>[] refs = framework.getBundleContext().getServiceReferences(cls.getName(), null);
+            count += refs == null ? 0 : refs.length;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ops4j.pax.cdi.extension.impl.support.Configurable;
+
+/**
+ * Creates configuration proxies with {@link Configurable} and reads all members of a proxy.
+ * <p>
+ * The {@code *Cached} benchmarks read members of an existing proxy, which only converts each value once. The
+ * {@code *Uncached} benchmarks read the same members from a new proxy, i.e. they pay the full conversion on each
+ * call, as every call did before conversion results were cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConfigurableBenchmark {
+
+    public enum Mode {
+        FAST, SAFE
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface SampleConfig {
+
+        String name() default "sample";
+
+        int port() default 8080;
+
+        long timeout() default 1000L;
+
+        boolean enabled() default false;
+
+        String[] hosts() default {};
+
+        Mode mode() default Mode.SAFE;
+
+        String missing() default "default";
+    }
+
+    public interface Nested {
+
+        String host();
+
+        int port();
+    }
+
+    public interface TypedConfig {
+
+        int count();
+
+        double ratio();
+
+        List<Integer> ports();
+
+        Map<String, String> tags();
+
+        Nested nested();
+    }
+
+    private Map<String, Object> config;
+    private SampleConfig proxy;
+    private Map<String, Object> typedConfig;
+    private TypedConfig typedProxy;
+
+    @Setup
+    public void setUp() {
+        config = new HashMap<>();
+        config.put("name", "benchmark");
+        config.put("port", "9090");
+        config.put("timeout", 5000L);
+        config.put("enabled", "true");
+        config.put("hosts", "[ alpha, beta, gamma ]");
+        config.put("mode", "FAST");
+        proxy = Configurable.create(SampleConfig.class, config);
+
+        typedConfig = new HashMap<>();
+        typedConfig.put("count", "42");
+        typedConfig.put("ratio", 0.5);
+        typedConfig.put("ports", "8080, 8181, 8282");
+        typedConfig.put("tags", "{ env.prod, region.eu }");
+        typedConfig.put("nested.host", "localhost");
+        typedConfig.put("nested.port", "1099");
+        typedProxy = Configurable.create(TypedConfig.class, typedConfig);
+    }
+
+    @Benchmark
+    public SampleConfig create() {
+        return Configurable.create(SampleConfig.class, config);
+    }
+
+    @Benchmark
+    public void invoke(Blackhole bh) {
+        read(proxy, bh);
+    }
+
+    @Benchmark
+    public void invokeUncached(Blackhole bh) {
+        read(Configurable.create(SampleConfig.class, config), bh);
+    }
+
+    @Benchmark
+    public int primitivesCached() {
+        return typedProxy.count() + (int) typedProxy.ratio();
+    }
+
+    @Benchmark
+    public int primitivesUncached() {
+        TypedConfig typed = Configurable.create(TypedConfig.class, typedConfig);
+        return typed.count() + (int) typed.ratio();
+    }
+
+    @Benchmark
+    public List<Integer> listCached() {
+        return typedProxy.ports();
+    }
+
+    @Benchmark
+    public List<Integer> listUncached() {
+        return Configurable.create(TypedConfig.class, typedConfig).ports();
+    }
+
+    @Benchmark
+    public Map<String, String> mapCached() {
+        return typedProxy.tags();
+    }
+
+    @Benchmark
+    public Map<String, String> mapUncached() {
+        return Configurable.create(TypedConfig.class, typedConfig).tags();
+    }
+
+    @Benchmark
+    public String nestedCached() {
+        return typedProxy.nested().host();
+    }
+
+    @Benchmark
+    public String nestedUncached() {
+        return Configurable.create(TypedConfig.class, typedConfig).nested().host();
+    }
+
+    private static void read(SampleConfig proxy, Blackhole bh) {
+        bh.consume(proxy.name());
+        bh.consume(proxy.port());
+        bh.consume(proxy.timeout());
+        bh.consume(proxy.enabled());
+        bh.consume(proxy.hosts());
+        bh.consume(proxy.mode());
+        bh.consume(proxy.missing());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.benchmarks.beans.Greeter;
+import org.ops4j.pax.cdi.benchmarks.beans.GreetingComponent;
+import org.ops4j.pax.tinybundles.core.TinyBundles;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Starts and stops the CDI container of a small bean bundle with the Weld or OpenWebBeans adapter.
+ * The Pax CDI and CDI provider bundles are installed into an embedded framework from the
+ * {@code bundles} directory next to the benchmark JAR, which is populated by the Maven build, or
+ * from the directory given by the system property {@value #BUNDLES_DIRECTORY}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContainerBenchmark {
+
+    public static final String BUNDLES_DIRECTORY = "org.ops4j.pax.cdi.benchmarks.bundles";
+
+    private static final String BEANS_XML = "<beans xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" "
+        + "version=\"1.1\" bean-discovery-mode=\"all\"/>";
+
+    private static final String CDI_CONTAINER = "org.ops4j.pax.cdi.spi.CdiContainer";
+
+    @Param({ "weld", "openwebbeans" })
+    private String provider;
+
+    private EmbeddedFramework framework;
+    private Bundle beanBundle;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(Constants.FRAMEWORK_BOOTDELEGATION, "sun.*,com.sun.*");
+        framework = new EmbeddedFramework(properties);
+
+        File bundles = getBundlesDirectory();
+        List<Bundle> installed = new ArrayList<>();
+        installed.addAll(framework.installAll(new File(bundles, "common")));
+        installed.addAll(framework.installAll(new File(bundles, provider)));
+        framework.startAll(installed);
+
+        beanBundle = installBeanBundle(framework);
+
+        beanBundle.start();
+        if (!hasContainer()) {
+            throw new IllegalStateException("no " + provider + " CDI container for " + beanBundle);
+        }
+        beanBundle.stop();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    public Bundle startStop() throws BundleException {
+        beanBundle.start();
+        beanBundle.stop();
+        return beanBundle;
+    }
+
+    /**
+     * Installs a small bean bundle requiring the Pax CDI extender and extension.
+     *
+     * @param framework
+     *            embedded framework
+     * @return the installed bundle, not started
+     * @throws BundleException
+     *             if the bundle cannot be installed
+     */
+    static Bundle installBeanBundle(EmbeddedFramework framework) throws BundleException {
+        return framework.install("bean-bundle", TinyBundles.bundle()
+            .add(Greeter.class)
+            .add(GreetingComponent.class)
+            .add("META-INF/beans.xml",
+                new ByteArrayInputStream(BEANS_XML.getBytes(StandardCharsets.UTF_8)))
+            .set(Constants.BUNDLE_MANIFESTVERSION, "2")
+            .set(Constants.BUNDLE_SYMBOLICNAME, "org.ops4j.pax.cdi.benchmarks.beans")
+            .set(Constants.IMPORT_PACKAGE, "javax.enterprise.context,javax.inject,org.ops4j.pax.cdi.api")
+            .set(Constants.REQUIRE_CAPABILITY,
+                "osgi.extender;filter:=\"(osgi.extender=pax.cdi)\","
+                + "org.ops4j.pax.cdi.extension;filter:=\"(extension=pax-cdi-extension)\"")
+            .set(Constants.DYNAMICIMPORT_PACKAGE, "org.apache.webbeans.*")
+            .build());
+    }
+
+    static File getBundlesDirectory() throws URISyntaxException {
+        String directory = System.getProperty(BUNDLES_DIRECTORY);
+        if (directory != null) {
+            return new File(directory);
+        }
+        // next to target/benchmarks.jar
+        File jar = new File(ContainerBenchmark.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        return new File(jar.getParentFile(), "bundles");
+    }
+
+    private boolean hasContainer() throws InvalidSyntaxException {
+        ServiceReference<?>[] refs = framework.getBundleContext().getServiceReferences(CDI_CONTAINER,
+            "(bundleId=" + beanBundle.getBundleId() + ")");
+        return refs != null;
+    }
+}
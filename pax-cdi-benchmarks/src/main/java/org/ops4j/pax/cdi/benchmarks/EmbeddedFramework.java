@@ -0,0 +1,179 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+import org.ops4j.pax.cdi.extension.impl.OsgiExtension2;
+import org.ops4j.pax.cdi.extension.impl.component2.BundleContextHolder;
+import org.ops4j.pax.cdi.spi.ContainerInitialized;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+
+/**
+ * An embedded OSGi framework for benchmarks, booted the same way as in the unit tests of
+ * pax-cdi-extension. Benchmarks either install real bundles into the framework, or run Pax CDI
+ * from the class path in Weld SE containers bound to the system bundle context.
+ */
+public class EmbeddedFramework {
+
+    private final Path storage;
+    private final Framework framework;
+    private final List<WeldContainer> welds = new ArrayList<>();
+
+    public EmbeddedFramework() throws IOException, BundleException {
+        this(new HashMap<>());
+    }
+
+    /**
+     * Starts an empty framework with the given configuration properties.
+     *
+     * @param properties
+     *            framework properties
+     * @throws IOException
+     *             if the framework storage cannot be created
+     * @throws BundleException
+     *             if the framework cannot be started
+     */
+    public EmbeddedFramework(Map<String, String> properties) throws IOException, BundleException {
+        storage = Files.createTempDirectory("pax-cdi-benchmark");
+        Map<String, String> config = new HashMap<>(properties);
+        config.put(Constants.FRAMEWORK_STORAGE, storage.toString());
+        framework = ServiceLoader.load(FrameworkFactory.class).iterator().next().newFramework(config);
+        framework.start();
+    }
+
+    public BundleContext getBundleContext() {
+        return framework.getBundleContext();
+    }
+
+    public Bundle install(String location, InputStream is) throws BundleException {
+        return getBundleContext().installBundle(location, is);
+    }
+
+    /**
+     * Installs all bundles from the given directory in alphabetical order.
+     *
+     * @param directory
+     *            directory with bundle JARs
+     * @return installed bundles
+     * @throws IOException
+     *             if a bundle cannot be read
+     * @throws BundleException
+     *             if a bundle cannot be installed
+     */
+    public List<Bundle> installAll(File directory) throws IOException, BundleException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (files == null) {
+            throw new IOException("no bundles in " + directory.getAbsolutePath()
+                + ", run 'mvn package' in pax-cdi-benchmarks first");
+        }
+        Arrays.sort(files);
+        List<Bundle> bundles = new ArrayList<>();
+        for (File file : files) {
+            try (InputStream is = new FileInputStream(file)) {
+                bundles.add(install(file.toURI().toString(), is));
+            }
+        }
+        return bundles;
+    }
+
+    /**
+     * Starts all given bundles except fragments.
+     *
+     * @param bundles
+     *            bundles to be started
+     * @throws BundleException
+     *             if a bundle cannot be started
+     */
+    public void startAll(List<Bundle> bundles) throws BundleException {
+        for (Bundle bundle : bundles) {
+            if (bundle.getHeaders().get(Constants.FRAGMENT_HOST) == null) {
+                bundle.start();
+            }
+        }
+    }
+
+    /**
+     * Creates a Weld SE container for the given bean classes with the Pax CDI extension loaded
+     * from the class path.
+     *
+     * @param classes
+     *            bean classes
+     * @return started container
+     */
+    public WeldContainer createCdi(Class<?>... classes) {
+        BundleContextHolder.setBundleContext(getBundleContext());
+        WeldContainer weld = new Weld()
+            .containerId(UUID.randomUUID().toString())
+            .disableDiscovery()
+            .beanClasses(classes)
+            .extensions(new OsgiExtension2())
+            .initialize();
+        weld.getBeanManager().fireEvent(new ContainerInitialized());
+        welds.add(weld);
+        return weld;
+    }
+
+    /**
+     * Shuts down a Weld SE container created by {@link #createCdi(Class...)}.
+     *
+     * @param weld
+     *            container to be shut down
+     */
+    public void dispose(WeldContainer weld) {
+        welds.remove(weld);
+        weld.close();
+    }
+
+    /**
+     * Shuts down all Weld SE containers, stops the framework and deletes its storage.
+     *
+     * @throws Exception
+     *             on failure
+     */
+    public void stop() throws Exception {
+        for (WeldContainer weld : welds) {
+            weld.close();
+        }
+        welds.clear();
+        framework.stop();
+        framework.waitForStop(10000);
+        try (Stream<Path> paths = Files.walk(storage)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
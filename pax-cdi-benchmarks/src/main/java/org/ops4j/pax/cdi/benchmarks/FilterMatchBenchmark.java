@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.extension.impl.support.CompiledFilter;
+import org.ops4j.pax.cdi.extension.impl.support.PrivateRegistryWrapper;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Matches an injection point filter as generated by pax-cdi against a matching and a
+ * non-matching service, with the framework filter and the compiled filter, for framework services
+ * and for services of the private registry of a bean bundle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterMatchBenchmark {
+
+    private static final String FILTER = "(&(objectClass=" + Runnable.class.getName()
+        + ")(name=hello)(" + PrivateRegistryWrapper.PRIVATE + "=true))";
+
+    @Param({ "false", "true" })
+    private boolean compiled;
+
+    @Param({ "false", "true" })
+    private boolean privateService;
+
+    private EmbeddedFramework framework;
+    private Filter filter;
+    private ServiceReference<?> matching;
+    private ServiceReference<?> other;
+
+    @Setup
+    public void setUp() throws Exception {
+        framework = new EmbeddedFramework();
+        BundleContext bundleContext = privateService
+            ? new PrivateRegistryWrapper(framework.getBundleContext())
+            : framework.getBundleContext();
+        filter = compiled ? CompiledFilter.compile(FILTER) : FrameworkUtil.createFilter(FILTER);
+        Runnable service = () -> { };
+        Dictionary<String, Object> props = new Hashtable<>();
+        props.put("name", "hello");
+        props.put(PrivateRegistryWrapper.PRIVATE, true);
+        matching = bundleContext.registerService(new String[] { Runnable.class.getName() }, service, props)
+            .getReference();
+        props.put("name", "other");
+        other = bundleContext.registerService(new String[] { Runnable.class.getName() }, service, props)
+            .getReference();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    public boolean match() {
+        return filter.match(matching);
+    }
+
+    @Benchmark
+    public boolean noMatch() {
+        return filter.match(other);
+    }
+}
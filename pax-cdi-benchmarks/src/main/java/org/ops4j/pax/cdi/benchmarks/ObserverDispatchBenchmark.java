@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.api.Filter;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.benchmarks.ClassGenerator.GeneratedClassLoader;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Registers and unregisters a service in a container with many {@code @ServiceAdded} observers of
+ * the same service type, each with a different {@code @Filter("(id=n)")}. Only one observer
+ * matches the service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObserverDispatchBenchmark {
+
+    public interface Greeting {
+
+        String greet();
+    }
+
+    @Param({ "10", "100", "500" })
+    private int observers;
+
+    private EmbeddedFramework framework;
+    private BundleContext bundleContext;
+    private Dictionary<String, Object> properties;
+    private final Greeting greeting = () -> "Hello";
+
+    @Setup
+    public void setUp() throws Exception {
+        framework = new EmbeddedFramework();
+        bundleContext = framework.getBundleContext();
+
+        String className = "org.ops4j.pax.cdi.benchmarks.observers.GreetingObservers";
+        GeneratedClassLoader classLoader = new GeneratedClassLoader(getClass().getClassLoader());
+        classLoader.add(className, ClassGenerator.generateObservers(className, Greeting.class,
+            Filter.class, "id", observers, ServiceAdded.class));
+        Class<?> observerClass = classLoader.loadClass(className);
+
+        Thread thread = Thread.currentThread();
+        ClassLoader prevTccl = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            framework.createCdi(observerClass);
+        }
+        finally {
+            thread.setContextClassLoader(prevTccl);
+        }
+
+        properties = new Hashtable<>();
+        properties.put("id", Integer.toString(observers / 2));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    public Greeting registerUnregister() {
+        bundleContext.registerService(Greeting.class, greeting, properties).unregister();
+        return greeting;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.spi.Contextual;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.BeanManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.extension.impl.context.BundleScopeContext;
+import org.ops4j.pax.cdi.extension.impl.context.SingletonScopeContext;
+import org.osgi.framework.Bundle;
+
+/**
+ * Looks up an existing instance in the singleton and bundle scope contexts with 1, 8 and 64
+ * threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScopeContextBenchmark {
+
+    /**
+     * Per-thread state binding the client bundle of the bundle scope context.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private BundleScopeContext context;
+
+        @Setup
+        public void setUp(ScopeContextBenchmark benchmark) {
+            context = benchmark.bundleContext;
+            context.setClientBundle(benchmark.client);
+        }
+
+        @TearDown
+        public void tearDown() {
+            context.setClientBundle(null);
+        }
+    }
+
+    public static class Hello {
+    }
+
+    private EmbeddedFramework framework;
+    private BeanManager beanManager;
+    private SingletonScopeContext singletonContext;
+    private BundleScopeContext bundleContext;
+    private Bundle client;
+    private final Contextual<Object> contextual = new SimpleContextual();
+
+    @Setup
+    public void setUp() throws Exception {
+        framework = new EmbeddedFramework();
+        beanManager = framework.createCdi(Hello.class).getBeanManager();
+        client = framework.getBundleContext().getBundle();
+
+        singletonContext = new SingletonScopeContext(beanManager);
+        singletonContext.get(contextual, beanManager.createCreationalContext(contextual));
+
+        bundleContext = new BundleScopeContext(beanManager);
+        bundleContext.setClientBundle(client);
+        bundleContext.get(contextual, beanManager.createCreationalContext(contextual));
+        bundleContext.setClientBundle(null);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object singleton1() {
+        return singletonContext.get(contextual, null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object singleton8() {
+        return singletonContext.get(contextual, null);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object singleton64() {
+        return singletonContext.get(contextual, null);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object bundle1(Client state) {
+        return bundleContext.get(contextual, null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object bundle8(Client state) {
+        return bundleContext.get(contextual, null);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object bundle64(Client state) {
+        return bundleContext.get(contextual, null);
+    }
+
+    private static class SimpleContextual implements Contextual<Object> {
+
+        @Override
+        public Object create(CreationalContext<Object> creationalContext) {
+            return new Object();
+        }
+
+        @Override
+        public void destroy(Object instance, CreationalContext<Object> creationalContext) {
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.enterprise.event.Observes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.api.event.ServiceRemoved;
+import org.ops4j.pax.cdi.extension.impl.osgi.ServiceEventMultiplexer;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Measures the cost of a service event as the number of CDI containers listening to service
+ * events grows, with the shared {@link ServiceEventMultiplexer} and with one framework listener
+ * per container. {@code unobserved} registers a service no container is interested in, which is
+ * the common case for most service events in a framework.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ServiceListenerBenchmark {
+
+    public interface Greeting {
+
+        String greet();
+    }
+
+    public interface Unobserved {
+
+        String greet();
+    }
+
+    public static class GreetingObserver {
+
+        static final AtomicLong ADDED = new AtomicLong();
+
+        public void added(@Observes @ServiceAdded Greeting greeting) {
+            ADDED.incrementAndGet();
+        }
+
+        public void removed(@Observes @ServiceRemoved Greeting greeting) {
+        }
+    }
+
+    @Param({ "1", "10", "100" })
+    private int containers;
+
+    @Param({ "true", "false" })
+    private boolean multiplexed;
+
+    private EmbeddedFramework framework;
+    private BundleContext bundleContext;
+    private final Greeting greeting = () -> "Hello";
+    private final Unobserved unobserved = () -> "Hello";
+
+    @Setup
+    public void setUp() throws Exception {
+        framework = new EmbeddedFramework(
+            Collections.singletonMap(ServiceEventMultiplexer.ENABLED, Boolean.toString(multiplexed)));
+        bundleContext = framework.getBundleContext();
+        for (int i = 0; i < containers; i++) {
+            framework.createCdi(GreetingObserver.class);
+        }
+
+        long added = GreetingObserver.ADDED.get();
+        observed();
+        if (GreetingObserver.ADDED.get() - added != containers) {
+            throw new IllegalStateException("service event not delivered to all containers");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    public Greeting observed() {
+        bundleContext.registerService(Greeting.class, greeting, null).unregister();
+        return greeting;
+    }
+
+    @Benchmark
+    public Unobserved unobserved() {
+        bundleContext.registerService(Unobserved.class, unobserved, null).unregister();
+        return unobserved;
+    }
+}
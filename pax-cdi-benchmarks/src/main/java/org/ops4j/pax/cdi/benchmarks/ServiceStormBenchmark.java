@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.enterprise.event.Observes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.api.event.ServiceCdiEvent;
+import org.ops4j.pax.cdi.api.event.ServiceRemoved;
+import org.ops4j.pax.cdi.extension.impl.ServiceEventBridge;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Registers and unregisters 10,000 services, created by service factories, while a CDI container
+ * observes {@link ServiceCdiEvent}s for them without reading the service. With
+ * {@code lazy=true}, the service event bridge does not obtain the services.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ServiceStormBenchmark {
+
+    private static final int SERVICES = 10000;
+
+    public interface Worker {
+
+        void work();
+    }
+
+    public static class WorkerObserver {
+
+        static final AtomicLong EVENTS = new AtomicLong();
+
+        public void added(@Observes @ServiceAdded ServiceCdiEvent<? extends Worker> event) {
+            EVENTS.incrementAndGet();
+        }
+
+        public void removed(@Observes @ServiceRemoved ServiceCdiEvent<? extends Worker> event) {
+            EVENTS.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a new worker for each client, like a component activated on demand.
+     */
+    static class WorkerFactory implements ServiceFactory<Worker> {
+
+        static final AtomicLong CREATED = new AtomicLong();
+
+        @Override
+        public Worker getService(Bundle bundle, ServiceRegistration<Worker> registration) {
+            CREATED.incrementAndGet();
+            return () -> { };
+        }
+
+        @Override
+        public void ungetService(Bundle bundle, ServiceRegistration<Worker> registration, Worker service) {
+        }
+    }
+
+    @Param({ "false", "true" })
+    private boolean lazy;
+
+    private EmbeddedFramework framework;
+    private BundleContext bundleContext;
+    private final WorkerFactory factory = new WorkerFactory();
+
+    @Setup
+    public void setUp() throws Exception {
+        framework = new EmbeddedFramework();
+        bundleContext = framework.getBundleContext();
+        System.setProperty(ServiceEventBridge.LAZY_SERVICES, Boolean.toString(lazy));
+        try {
+            framework.createCdi(WorkerObserver.class);
+        }
+        finally {
+            System.clearProperty(ServiceEventBridge.LAZY_SERVICES);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        framework.stop();
+    }
+
+    @Benchmark
+    public long storm() {
+        List<ServiceRegistration<?>> registrations = new ArrayList<>(SERVICES);
+        for (int i = 0; i < SERVICES; i++) {
+            registrations.add(bundleContext.registerService(Worker.class.getName(), factory, null));
+        }
+        for (ServiceRegistration<?> registration : registrations) {
+            registration.unregister();
+        }
+        return WorkerObserver.EVENTS.get();
+    }
+}
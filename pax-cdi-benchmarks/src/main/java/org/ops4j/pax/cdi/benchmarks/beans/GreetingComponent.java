@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.benchmarks.beans;
+
+import java.util.concurrent.Callable;
+import javax.inject.Inject;
+
+import org.ops4j.pax.cdi.api.Component;
+import org.ops4j.pax.cdi.api.Immediate;
+import org.ops4j.pax.cdi.api.Service;
+
+/**
+ * OSGi service component of the bean bundle started by {@code ContainerBenchmark}.
+ */
+@Component
+@Immediate
+@Service
+public class GreetingComponent implements Callable<String> {
+
+    @Inject
+    private Greeter greeter;
+
+    @Override
+    public String call() {
+        return greeter.greet("benchmark");
+    }
+}
@@ -16,6 +16,7 @@
 package org.ops4j.pax.cdi.extender.impl;
 
 import org.ops4j.pax.cdi.spi.CdiContainerFactory;
+import org.ops4j.pax.cdi.spi.scan.BeanScanner;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
@@ -59,5 +60,7 @@ public class Activator implements BundleActivator {
     @Override
     public void stop(BundleContext context) throws Exception {
         tracker.close();
+        // no more containers are started, so no more bean bundles are scanned
+        BeanScanner.shutdown();
     }
 }
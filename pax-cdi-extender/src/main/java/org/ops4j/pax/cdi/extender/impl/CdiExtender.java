@@ -50,6 +50,12 @@ import static org.ops4j.pax.cdi.spi.Constants.EXTENDER_CAPABILITY;
  * <p>
  * The extender creates a CDI container for each bean bundle. For web beans bundles, the CDI
  * container is not created until the web adapter is available.
+ * <p>
+ * By default, standalone containers are started synchronously on the bundle tracker thread. If
+ * the framework property {@code org.ops4j.pax.cdi.extender.impl.CdiExtender.asyncBoot} is
+ * {@code true}, they are started by a {@link ContainerBootstrap} on a pool of
+ * {@code org.ops4j.pax.cdi.extender.impl.CdiExtender.bootThreads} threads (default: number of
+ * processors).
  *
  * @author Guillaume Nodet
  * @author Harald Wellmann
@@ -57,6 +63,10 @@ import static org.ops4j.pax.cdi.spi.Constants.EXTENDER_CAPABILITY;
 public class CdiExtender implements BundleTrackerCustomizer<CdiContainer>,
                                     ServiceTrackerCustomizer<CdiWebAdapter, CdiWebAdapter> {
 
+    public static final String ASYNC_BOOT = CdiExtender.class.getName() + ".asyncBoot";
+
+    public static final String BOOT_THREADS = CdiExtender.class.getName() + ".bootThreads";
+
     private static Logger log = LoggerFactory.getLogger(CdiExtender.class);
 
     private final BundleContext context;
@@ -66,6 +76,7 @@ public class CdiExtender implements BundleTrackerCustomizer<CdiContainer>,
     private ServiceTracker<CdiWebAdapter, CdiWebAdapter> listenerTracker;
     private CdiWebAdapter webAdapter;
     private Map<Long, Bundle> webBundles = new HashMap<>();
+    private ContainerBootstrap bootstrap;
 
     CdiExtender(BundleContext context, CdiContainerFactory factory) {
         this.context = context;
@@ -79,8 +90,27 @@ public class CdiExtender implements BundleTrackerCustomizer<CdiContainer>,
         log.info("starting CDI extender {}", context.getBundle().getSymbolicName());
         this.listenerTracker = new ServiceTracker<>(context, CdiWebAdapter.class, this);
         this.listenerTracker.open();
+        if (Boolean.parseBoolean(context.getProperty(ASYNC_BOOT))) {
+            this.bootstrap = new ContainerBootstrap(context, getBootThreads());
+        }
         this.bundleWatcher = new BundleTracker<>(context, Bundle.ACTIVE, this);
         this.bundleWatcher.open();
+        if (bootstrap != null) {
+            bootstrap.open();
+        }
+    }
+
+    private int getBootThreads() {
+        String value = context.getProperty(BOOT_THREADS);
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            }
+            catch (NumberFormatException exc) {
+                log.warn("invalid value for {}: {}", BOOT_THREADS, value);
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
     }
 
     synchronized void stop() {
@@ -88,6 +118,10 @@ public class CdiExtender implements BundleTrackerCustomizer<CdiContainer>,
         log.info("stopping CDI extender {}", context.getBundle().getSymbolicName());
         bundleWatcher.close();
         listenerTracker.close();
+        if (bootstrap != null) {
+            bootstrap.close();
+            bootstrap = null;
+        }
     }
 
     @Override
@@ -121,6 +155,9 @@ public class CdiExtender implements BundleTrackerCustomizer<CdiContainer>,
     public synchronized void removedBundle(Bundle bundle, BundleEvent event, CdiContainer container) {
         if (container != null) {
             synchronized (container) {
+                if (bootstrap != null) {
+                    bootstrap.cancel(bundle);
+                }
                 container.stop();
             }
         }
@@ -151,10 +188,15 @@ public class CdiExtender implements BundleTrackerCustomizer<CdiContainer>,
                 container = doCreateLazyContainer(bundle);
             }
         }
-        // Standalone containers are started right now.
+        // Standalone containers are started right now, or scheduled in async boot mode.
         else {
             container = doCreateContainer(bundle);
-            container.start(new Object());
+            if (bootstrap != null) {
+                bootstrap.start(bundle, container);
+            }
+            else {
+                container.start(new Object());
+            }
         }
         return container;
     }
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extender.impl;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ops4j.pax.cdi.spi.CdiContainer;
+import org.ops4j.pax.cdi.spi.CdiContainersReady;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.ops4j.pax.cdi.spi.BeanBundles.findExtensions;
+
+/**
+ * Starts standalone CDI containers on a thread pool. A container is started only after the
+ * containers of all bean bundles it is wired to (by extension, package or bundle wires) have
+ * completed their startup, so that independent containers boot in parallel while dependent ones
+ * keep their order.
+ * <p>
+ * Containers added before {@link #open()} are only scheduled when the bootstrap is opened, that is,
+ * once the bundle tracker has seen all active bean bundles, so that the order does not depend on
+ * the order in which the tracker reports them. Containers added later wait for the known
+ * containers they are wired to. Wiring cycles are broken arbitrarily.
+ * <p>
+ * Whenever no container startup is pending, a {@link CdiContainersReady} service is registered.
+ * Its {@link CdiContainersReady#CONTAINERS} property is updated when containers are removed. The
+ * service is registered, modified and unregistered without holding the monitor of the bootstrap.
+ */
+class ContainerBootstrap {
+
+    private static Logger log = LoggerFactory.getLogger(ContainerBootstrap.class);
+
+    private enum State {
+        NEW, VISITING, SCHEDULED
+    }
+
+    private static class Boot {
+
+        private final CdiContainer container;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private State state = State.NEW;
+        private boolean cancelled;
+
+        Boot(CdiContainer container) {
+            this.container = container;
+        }
+    }
+
+    private final BundleContext context;
+    private final ExecutorService executor;
+    private final Map<Bundle, Boot> boots = new LinkedHashMap<>();
+    private boolean opened;
+    private boolean closed;
+
+    private ServiceRegistration<CdiContainersReady> readyReg;
+    private int readyCount;
+    private boolean updating;
+    private boolean updatePending;
+
+    ContainerBootstrap(BundleContext context, int threads) {
+        this.context = context;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "pax-cdi-boot-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Schedules the startup of the given container.
+     *
+     * @param bundle
+     *            bean bundle
+     * @param container
+     *            CDI container of the bean bundle
+     */
+    void start(Bundle bundle, CdiContainer container) {
+        synchronized (this) {
+            Boot boot = new Boot(container);
+            boots.put(bundle, boot);
+            if (opened) {
+                schedule(bundle, boot);
+            }
+        }
+        updateReadiness();
+    }
+
+    /**
+     * Cancels a pending startup of the given container. Must be called while holding the monitor
+     * of the container, which guarantees that the startup either has completed or will not run.
+     *
+     * @param bundle
+     *            bean bundle
+     */
+    void cancel(Bundle bundle) {
+        Boot boot;
+        synchronized (this) {
+            boot = boots.remove(bundle);
+        }
+        if (boot != null) {
+            boot.cancelled = true;
+            boot.done.complete(null);
+        }
+        updateReadiness();
+    }
+
+    /**
+     * Schedules the containers added so far. To be called after the initial bean bundles have
+     * been tracked.
+     */
+    void open() {
+        synchronized (this) {
+            opened = true;
+            for (Map.Entry<Bundle, Boot> entry : boots.entrySet()) {
+                schedule(entry.getKey(), entry.getValue());
+            }
+        }
+        updateReadiness();
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            executor.shutdown();
+            boots.clear();
+        }
+        updateReadiness();
+    }
+
+    /**
+     * Schedules the given container after the containers of its providers, scheduling these
+     * first if needed. Must be called while holding the monitor.
+     */
+    private void schedule(Bundle bundle, Boot boot) {
+        if (boot.state != State.NEW) {
+            return;
+        }
+        boot.state = State.VISITING;
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (Bundle provider : findProviders(bundle)) {
+            Boot providerBoot = boots.get(provider);
+            if (providerBoot == null || provider.equals(bundle)) {
+                continue;
+            }
+            schedule(provider, providerBoot);
+            // a provider still being visited depends on this bundle
+            if (providerBoot.state == State.SCHEDULED) {
+                log.debug("CDI container for {} waits for {}", bundle, provider);
+                dependencies.add(providerBoot.done);
+            }
+        }
+        boot.state = State.SCHEDULED;
+        CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[dependencies.size()]))
+            .whenCompleteAsync((result, exc) -> run(bundle, boot), executor);
+    }
+
+    private void run(Bundle bundle, Boot boot) {
+        try {
+            synchronized (boot.container) {
+                if (!boot.cancelled) {
+                    boot.container.start(new Object());
+                }
+            }
+        }
+        // CHECKSTYLE:SKIP
+        catch (RuntimeException exc) {
+            log.error("cannot start CDI container for bean bundle " + bundle, exc);
+        }
+        finally {
+            boot.done.complete(null);
+            updateReadiness();
+        }
+    }
+
+    private static Set<Bundle> findProviders(Bundle bundle) {
+        Set<Bundle> providers = new HashSet<>();
+        findExtensions(bundle, providers);
+        BundleWiring wiring = bundle.adapt(BundleWiring.class);
+        if (wiring != null) {
+            for (BundleWire wire : wiring.getRequiredWires(null)) {
+                providers.add(wire.getProviderWiring().getBundle());
+            }
+        }
+        return providers;
+    }
+
+    /**
+     * Registers, modifies or unregisters the readiness service to match the current state. The
+     * framework calls are made without holding the monitor, by one thread at a time: a thread
+     * finding an update in progress leaves it to that thread to re-evaluate the state.
+     */
+    private void updateReadiness() {
+        synchronized (this) {
+            updatePending = true;
+            if (updating) {
+                return;
+            }
+            updating = true;
+        }
+        boolean finished = false;
+        try {
+            while (true) {
+                ServiceRegistration<CdiContainersReady> registration;
+                boolean ready;
+                int count;
+                synchronized (this) {
+                    if (!updatePending) {
+                        updating = false;
+                        finished = true;
+                        return;
+                    }
+                    updatePending = false;
+                    registration = readyReg;
+                    ready = opened && !closed && isReady();
+                    count = boots.size();
+                }
+                if (ready) {
+                    register(registration, count);
+                }
+                else if (registration != null) {
+                    unregister(registration);
+                    synchronized (this) {
+                        readyReg = null;
+                    }
+                }
+            }
+        }
+        finally {
+            if (!finished) {
+                synchronized (this) {
+                    updating = false;
+                }
+            }
+        }
+    }
+
+    private boolean isReady() {
+        for (Boot boot : boots.values()) {
+            if (!boot.done.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void register(ServiceRegistration<CdiContainersReady> registration, int count) {
+        Dictionary<String, Object> props = new Hashtable<>();
+        props.put(CdiContainersReady.CONTAINERS, count);
+        if (registration == null) {
+            log.debug("all {} CDI containers started", count);
+            registration = context.registerService(CdiContainersReady.class, new CdiContainersReady() {
+            }, props);
+        }
+        else if (count != readyCount) {
+            try {
+                registration.setProperties(props);
+            }
+            catch (IllegalStateException exc) {
+                log.trace("service already unregistered", exc);
+            }
+        }
+        synchronized (this) {
+            readyReg = registration;
+            readyCount = count;
+        }
+    }
+
+    private static void unregister(ServiceRegistration<?> registration) {
+        try {
+            registration.unregister();
+        }
+        catch (IllegalStateException exc) {
+            log.trace("service already unregistered", exc);
+        }
+    }
+}
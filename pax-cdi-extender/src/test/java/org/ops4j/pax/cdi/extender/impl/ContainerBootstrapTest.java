@@ -0,0 +1,248 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extender.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ops4j.pax.cdi.spi.CdiContainer;
+import org.ops4j.pax.cdi.spi.CdiContainerFactory;
+import org.ops4j.pax.cdi.spi.CdiContainersReady;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ContainerBootstrapTest {
+
+    private static final long TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder cache;
+
+    private Framework framework;
+    private ContainerBootstrap bootstrap;
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+    public ContainerBootstrapTest() {
+        File root = new File("target/osgi");
+        root.mkdirs();
+        cache = new TemporaryFolder(root);
+    }
+
+    @Before
+    public void setUp() throws BundleException {
+        Map<String, String> config = new HashMap<>();
+        config.put(Constants.FRAMEWORK_STORAGE, cache.getRoot().toString());
+        config.put(Constants.FRAMEWORK_SYSTEMCAPABILITIES_EXTRA,
+            "osgi.extender; osgi.extender=\"pax.cdi\"; version:Version=\"1.0\"");
+        config.put(CdiExtender.ASYNC_BOOT, "true");
+        // the URL handlers need reflective access to java.net on Java 9+, and are not used here
+        config.put("felix.service.urlhandlers", "false");
+        framework = ServiceLoader.load(FrameworkFactory.class).iterator().next().newFramework(config);
+        framework.start();
+    }
+
+    @After
+    public void tearDown() throws BundleException, InterruptedException {
+        if (bootstrap != null) {
+            bootstrap.close();
+        }
+        framework.stop();
+        framework.waitForStop(TIMEOUT);
+    }
+
+    @Test
+    public void readinessSignal() throws Exception {
+        Bundle bundle = startBundle("a", null, null);
+        CountDownLatch release = new CountDownLatch(1);
+        bootstrap = new ContainerBootstrap(getBundleContext(), 2);
+        bootstrap.start(bundle, container(bundle, release));
+        Assert.assertNull(getReadyService());
+
+        bootstrap.open();
+        Assert.assertNull(getReadyService());
+
+        release.countDown();
+        ServiceReference<CdiContainersReady> ref = waitForReadyService(1);
+        Assert.assertEquals(1, ref.getProperty(CdiContainersReady.CONTAINERS));
+
+        Bundle other = startBundle("b", null, null);
+        CountDownLatch releaseOther = new CountDownLatch(1);
+        bootstrap.start(other, container(other, releaseOther));
+        Assert.assertNull(getReadyService());
+        releaseOther.countDown();
+        waitForReadyService(2);
+    }
+
+    @Test
+    public void dependentBundlesStartInOrder() throws Exception {
+        Bundle provider = startBundle("provider", "Export-Package", "org.example.api");
+        Bundle consumer = startBundle("consumer", "Import-Package", "org.example.api");
+        Bundle independent = startBundle("independent", null, null);
+
+        CountDownLatch release = new CountDownLatch(1);
+        bootstrap = new ContainerBootstrap(getBundleContext(), 3);
+        // the tracker reports the consumer before its provider
+        bootstrap.start(consumer, container(consumer, null));
+        bootstrap.start(provider, container(provider, release));
+        bootstrap.start(independent, container(independent, null));
+        bootstrap.open();
+
+        waitFor("independent");
+        Assert.assertFalse(started.contains("consumer"));
+        release.countDown();
+        waitForReadyService(3);
+        Assert.assertTrue(started.indexOf("provider") < started.indexOf("consumer"));
+    }
+
+    @Test
+    public void containersCountAfterStop() throws Exception {
+        Bundle a = startBundle("a", null, null);
+        Bundle b = startBundle("b", null, null);
+        bootstrap = new ContainerBootstrap(getBundleContext(), 2);
+        CdiContainer containerA = container(a, null);
+        bootstrap.start(a, containerA);
+        bootstrap.start(b, container(b, null));
+        bootstrap.open();
+        waitForReadyService(2);
+
+        synchronized (containerA) {
+            bootstrap.cancel(a);
+        }
+        waitForReadyService(1);
+
+        bootstrap.close();
+        Assert.assertNull(getReadyService());
+    }
+
+    @Test
+    public void asyncBoot() throws Exception {
+        Bundle beanBundle = startBundle("bean", "Require-Capability",
+            "osgi.extender; filter:=\"(osgi.extender=pax.cdi)\"");
+
+        CdiContainerFactory factory = mock(CdiContainerFactory.class);
+        when(factory.createContainer(any(Bundle.class), anyCollection())).thenAnswer(
+            invocation -> container(invocation.getArgument(0), null));
+        CdiExtender extender = new CdiExtender(getBundleContext(), factory);
+        extender.start();
+        try {
+            ServiceReference<CdiContainersReady> ref = waitForReadyService(1);
+            Assert.assertEquals(1, ref.getProperty(CdiContainersReady.CONTAINERS));
+            Assert.assertEquals(Collections.singletonList("bean"), started);
+            Assert.assertTrue(threads.get(0), threads.get(0).startsWith("pax-cdi-boot-"));
+
+            beanBundle.stop();
+            waitForReadyService(0);
+        }
+        finally {
+            extender.stop();
+        }
+        Assert.assertNull(getReadyService());
+    }
+
+    private BundleContext getBundleContext() {
+        return framework.getBundleContext();
+    }
+
+    private CdiContainer container(Bundle bundle, CountDownLatch release) {
+        CdiContainer container = mock(CdiContainer.class);
+        when(container.getBundle()).thenReturn(bundle);
+        doAnswer(invocation -> {
+            if (release != null) {
+                Assert.assertTrue(release.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            }
+            threads.add(Thread.currentThread().getName());
+            started.add(bundle.getSymbolicName());
+            return null;
+        }).when(container).start(any());
+        return container;
+    }
+
+    private ServiceReference<CdiContainersReady> getReadyService() {
+        return getBundleContext().getServiceReference(CdiContainersReady.class);
+    }
+
+    private ServiceReference<CdiContainersReady> waitForReadyService(int containers)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            ServiceReference<CdiContainersReady> ref = getReadyService();
+            if (ref != null && Integer.valueOf(containers).equals(
+                ref.getProperty(CdiContainersReady.CONTAINERS))) {
+                return ref;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("no CdiContainersReady service for " + containers + " containers");
+    }
+
+    private void waitFor(String symbolicName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!started.contains(symbolicName)) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private Bundle startBundle(String symbolicName, String header, String value)
+        throws BundleException, IOException {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Bundle-ManifestVersion", "2");
+        attributes.putValue("Bundle-SymbolicName", symbolicName);
+        if (header != null) {
+            attributes.putValue(header, value);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JarOutputStream(baos, manifest).close();
+        Bundle bundle = getBundleContext().installBundle("test:" + symbolicName,
+            new ByteArrayInputStream(baos.toByteArray()));
+        bundle.start();
+        return bundle;
+    }
+}
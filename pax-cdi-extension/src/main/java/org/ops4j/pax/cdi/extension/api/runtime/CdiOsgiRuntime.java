@@ -17,8 +17,11 @@ package org.ops4j.pax.cdi.extension.api.runtime;
 
 import java.util.Collection;
 
+import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentActorDTO;
 import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentConfigurationDTO;
 import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentDescriptionDTO;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.EventQueueDTO;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.SingletonScopeDTO;
 import org.osgi.framework.Bundle;
 
 public interface CdiOsgiRuntime {
@@ -42,6 +45,18 @@ public interface CdiOsgiRuntime {
      */
     Collection<ComponentDescriptionDTO> getComponentDescriptionDTOs(Bundle... bundles);
 
+    /**
+     * Returns the component descriptions declared by the active bundle with
+     * the specified id.
+     *
+     * @param bundleId The id of the bundle whose declared component
+     *        descriptions are to be returned.
+     * @return The declared component descriptions of the specified active
+     *         bundle. An empty collection is returned if the bundle is not
+     *         active or has no component descriptions.
+     */
+    Collection<ComponentDescriptionDTO> getComponentDescriptionDTOs(long bundleId);
+
     /**
      * Returns the {@link ComponentDescriptionDTO} declared with the specified name
      * by the specified bundle.
@@ -72,4 +87,63 @@ public interface CdiOsgiRuntime {
      */
     Collection<ComponentConfigurationDTO> getComponentConfigurationDTOs(ComponentDescriptionDTO description);
 
+    /**
+     * Returns the event queues of the specified active bundles.
+     *
+     * <p>
+     * Only bean bundles with asynchronous delivery of OSGi events have an
+     * event queue.
+     *
+     * @param bundles The bundles whose event queues are to be returned.
+     *        Specifying no bundles will return the event queues of all active
+     *        bundles.
+     * @return A snapshot of the event queues of the specified bundles. An
+     *         empty collection is returned if there are none.
+     */
+    Collection<EventQueueDTO> getEventQueueDTOs(Bundle... bundles);
+
+    /**
+     * Returns the component actors of the specified active bundles.
+     *
+     * <p>
+     * Each bean bundle with a CDI container has a component actor.
+     *
+     * @param bundles The bundles whose component actors are to be returned.
+     *        Specifying no bundles will return the component actors of all
+     *        active bundles.
+     * @return A snapshot of the component actors of the specified bundles. An
+     *         empty collection is returned if there are none.
+     */
+    Collection<ComponentActorDTO> getComponentActorDTOs(Bundle... bundles);
+
+    /**
+     * Returns the singleton scope contexts of the specified active bundles.
+     *
+     * <p>
+     * Each bean bundle with a CDI container has a singleton scope context.
+     *
+     * @param bundles The bundles whose singleton scope contexts are to be
+     *        returned. Specifying no bundles will return the singleton scope
+     *        contexts of all active bundles.
+     * @return A snapshot of the singleton scope contexts of the specified
+     *         bundles. An empty collection is returned if there are none.
+     */
+    Collection<SingletonScopeDTO> getSingletonScopeDTOs(Bundle... bundles);
+
+    /**
+     * Returns the change count of the runtime.
+     *
+     * <p>
+     * The change count is incremented after any change which may affect the
+     * component description or configuration DTOs. Callers polling the
+     * runtime can skip fetching DTOs while the change count is unchanged.
+     * The runtime caches the DTOs between changes and returns copies of
+     * the component description and configuration DTOs. The nested bundle
+     * and reference DTOs of these copies are shared by all callers and
+     * must not be modified.
+     *
+     * @return The change count.
+     */
+    long getChangeCount();
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.api.runtime.dto;
+
+import org.osgi.dto.DTO;
+import org.osgi.framework.dto.BundleDTO;
+
+/**
+ * A representation of the actor running the asynchronous component tasks of a bean bundle, such
+ * as late binding.
+ *
+ * @NotThreadSafe
+ */
+public class ComponentActorDTO extends DTO {
+
+    /**
+     * The bean bundle owning the components.
+     */
+    public BundleDTO bundle;
+
+    /**
+     * The number of tasks currently scheduled.
+     */
+    public int queueLength;
+
+    /**
+     * The largest number of tasks scheduled at the same time.
+     */
+    public int maxQueueLength;
+
+    /**
+     * The number of tasks run.
+     */
+    public long executed;
+
+    /**
+     * The average time in microseconds from scheduling a task to the end of its run.
+     */
+    public long averageLatency;
+
+    /**
+     * The largest time in microseconds from scheduling a task to the end of its run.
+     */
+    public long maxLatency;
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.api.runtime.dto;
+
+import org.osgi.dto.DTO;
+import org.osgi.framework.dto.BundleDTO;
+
+/**
+ * A representation of the queue delivering OSGi service and bundle events asynchronously to the
+ * CDI container of a bean bundle.
+ *
+ * @NotThreadSafe
+ */
+public class EventQueueDTO extends DTO {
+
+    /**
+     * The bean bundle owning the CDI container.
+     */
+    public BundleDTO bundle;
+
+    /**
+     * The maximum number of queued events. Further events block the thread firing them until
+     * queued events have been delivered.
+     */
+    public int capacity;
+
+    /**
+     * The number of events currently queued.
+     */
+    public int queueDepth;
+
+    /**
+     * The largest number of events queued at the same time.
+     */
+    public int maxQueueDepth;
+
+    /**
+     * The number of events delivered.
+     */
+    public long delivered;
+
+    /**
+     * The average time in microseconds from queueing an event to the end of its delivery.
+     */
+    public long averageLatency;
+
+    /**
+     * The largest time in microseconds from queueing an event to the end of its delivery.
+     */
+    public long maxLatency;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.api.runtime.dto;
+
+import org.osgi.dto.DTO;
+import org.osgi.framework.dto.BundleDTO;
+
+/**
+ * A representation of the context holding the {@code @SingletonScoped} instances of a bean
+ * bundle.
+ *
+ * @NotThreadSafe
+ */
+public class SingletonScopeDTO extends DTO {
+
+    /**
+     * The bean bundle owning the context.
+     */
+    public BundleDTO bundle;
+
+    /**
+     * The number of instances currently held or being created.
+     */
+    public int instances;
+
+    /**
+     * The number of times a thread requested an instance which was still being created by
+     * another thread and had to wait for it.
+     */
+    public long contendedCreations;
+}
@@ -27,22 +27,39 @@ import javax.inject.Inject;
 import org.ops4j.pax.cdi.api.event.BundleCdiEvent;
 import org.ops4j.pax.cdi.api.event.BundleStarted;
 import org.ops4j.pax.cdi.api.event.BundleStopped;
+import org.ops4j.pax.cdi.extension.impl.osgi.BundleEventMultiplexer;
+import org.ops4j.pax.cdi.extension.impl.osgi.BundleEventMultiplexer.Subscription;
 import org.ops4j.pax.cdi.spi.BeanBundles;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
-import org.osgi.util.tracker.BundleTracker;
-import org.osgi.util.tracker.BundleTrackerCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Wraps OSGi bundle events in as {@link BundleCdiEvent} and fires them as CDI events.
+ * Wraps OSGi bundle events in as {@link BundleCdiEvent} and fires them as CDI events, through the
+ * {@link EventQueue} of the container if there is one.
+ * <p>
+ * Bundle events are only received if the container observes {@link BundleCdiEvent}s, from the
+ * {@link BundleEventMultiplexer} shared by all containers. The bundles already installed are
+ * passed to the observers, with a {@code null} bundle event, if enabled by the framework property
+ * {@link #REPLAY} or for a single bean bundle by the manifest header {@value #REPLAY_HEADER},
+ * which takes precedence.
  *
  * @author Harald Wellmann
  */
 @ApplicationScoped
-public class BundleEventBridge implements BundleTrackerCustomizer<Void> {
+public class BundleEventBridge {
+
+    /**
+     * Framework property for firing events for the bundles installed when the container starts.
+     */
+    public static final String REPLAY = BundleEventBridge.class.getName() + ".replay";
+
+    /**
+     * Manifest header for firing events for the bundles installed when the container starts.
+     */
+    public static final String REPLAY_HEADER = "Pax-CDI-Bundle-Events-Replay";
 
     private static Logger log = LoggerFactory.getLogger(BundleEventBridge.class);
 
@@ -52,36 +69,45 @@ public class BundleEventBridge implements BundleTrackerCustomizer<Void> {
     @Inject
     private Event<BundleCdiEvent> event;
 
-    private BundleTracker<Void> bundleTracker;
+    @Inject
+    private OsgiExtension2 extension;
+
+    private Subscription subscription;
 
     /**
-     * Starts the bundle tracker.
+     * Subscribes to bundle events, if observed.
      */
     @PostConstruct
     public void start() {
-        int stateMask = Bundle.INSTALLED | Bundle.UNINSTALLED | Bundle.STARTING
-            | Bundle.STOPPING | Bundle.RESOLVED | Bundle.ACTIVE;
-        bundleTracker = new BundleTracker<>(bundleContext, stateMask, this);
-        bundleTracker.open();
+        if (extension.isBundleEventObserved()) {
+            subscription = BundleEventMultiplexer.subscribe(bundleContext, this::bundleChanged, isReplay());
+        }
     }
 
     /**
-     * Stops the bundle tracker.
+     * Unsubscribes from bundle events.
      */
     @PreDestroy
     public void stop() {
-        bundleTracker.close();
+        if (subscription != null) {
+            subscription.close();
+        }
     }
 
-    @Override
-    public Void addingBundle(Bundle bundle, BundleEvent bundleEvent) {
+    private boolean isReplay() {
+        String value = bundleContext.getBundle().getHeaders().get(REPLAY_HEADER);
+        if (value == null) {
+            value = bundleContext.getProperty(REPLAY);
+        }
+        return Boolean.parseBoolean(value == null ? null : value.trim());
+    }
+
+    private void bundleChanged(Bundle bundle, BundleEvent bundleEvent) {
         if (!BeanBundles.isActiveBeanBundle(bundle)) {
-            return null;
+            return;
         }
-        log.debug("adding bundle {} {}", bundle);
-        Event<BundleCdiEvent> childEvent = select(bundleEvent);
-        childEvent.fire(new BundleCdiEvent(bundle, bundleEvent));
-        return null;
+        log.debug("bundle event {} {}", bundle, bundleEvent);
+        fire(bundle, bundleEvent);
     }
 
     /**
@@ -109,16 +135,16 @@ public class BundleEventBridge implements BundleTrackerCustomizer<Void> {
         }
     }
 
-    @Override
-    public void modifiedBundle(Bundle bundle, BundleEvent bundleEvent, Void object) {
-        Event<BundleCdiEvent> childEvent = select(bundleEvent);
-        childEvent.fire(new BundleCdiEvent(bundle, bundleEvent));
-    }
-
-    @Override
-    public void removedBundle(Bundle bundle, BundleEvent bundleEvent, Void object) {
+    private void fire(Bundle bundle, BundleEvent bundleEvent) {
         Event<BundleCdiEvent> childEvent = select(bundleEvent);
-        childEvent.fire(new BundleCdiEvent(bundle, bundleEvent));
+        BundleCdiEvent cdiEvent = new BundleCdiEvent(bundle, bundleEvent);
+        EventQueue eventQueue = extension.getEventQueue();
+        if (eventQueue != null) {
+            eventQueue.submit(() -> childEvent.fire(cdiEvent), () -> { });
+        }
+        else {
+            childEvent.fire(cdiEvent);
+        }
     }
 
     // Force the instantation of this bean
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers OSGi service and bundle events to the observers of one CDI container asynchronously,
+ * so that slow observers do not block the thread of the framework firing the event.
+ * <p>
+ * Events are delivered one at a time in the order they were queued, which keeps the order of
+ * events for any service or bundle. The queue is drained by a thread pool shared by all
+ * containers. When {@link #CAPACITY} events are queued, the thread queueing another event blocks
+ * until an event has been delivered. Events queued while delivering an event of any container
+ * never block, so that containers observing each other cannot deadlock.
+ * <p>
+ * Asynchronous delivery is enabled for all containers by the framework property {@link #ASYNC}
+ * and for a single bean bundle by the manifest header {@value #ASYNC_HEADER}, which takes
+ * precedence. The pool is created with the first queued event and shut down when the extension
+ * bundle stops.
+ */
+public class EventQueue {
+
+    /**
+     * Framework property enabling asynchronous delivery of OSGi events.
+     */
+    public static final String ASYNC = EventQueue.class.getName() + ".async";
+
+    /**
+     * Manifest header enabling asynchronous delivery of OSGi events for a bean bundle.
+     */
+    public static final String ASYNC_HEADER = "Pax-CDI-Async-Events";
+
+    /**
+     * Framework property for the maximum number of queued events per container.
+     */
+    public static final String CAPACITY = EventQueue.class.getName() + ".capacity";
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventQueue.class);
+
+    private static ExecutorService executor;
+
+    /**
+     * Daemon threads for draining the queues.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new DrainThread(r, "pax-cdi-events-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * A thread of the shared pool, which only delivers queued events.
+     */
+    private static class DrainThread extends Thread {
+
+        DrainThread(Runnable target, String name) {
+            super(target, name);
+        }
+    }
+
+    /**
+     * A queued event.
+     */
+    private static class Task {
+
+        private final Runnable delivery;
+        private final Runnable release;
+        private final boolean permit;
+        private final long queued = System.nanoTime();
+
+        Task(Runnable delivery, Runnable release, boolean permit) {
+            this.delivery = delivery;
+            this.release = release;
+            this.permit = permit;
+        }
+    }
+
+    private final Bundle bundle;
+    private final int capacity;
+    private final Semaphore permits;
+    private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+    private final Object lock = new Object();
+
+    /** guarded by {@link #lock} */
+    private boolean draining;
+    private volatile Thread drainThread;
+    private volatile boolean closed;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+
+    EventQueue(Bundle bundle, int capacity) {
+        this.bundle = bundle;
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+    }
+
+    /**
+     * Creates the event queue of the container of the given bean bundle, if asynchronous delivery
+     * is enabled.
+     *
+     * @param bundleContext
+     *            bundle context of the bean bundle
+     * @return event queue, or {@code null} for synchronous delivery
+     */
+    static EventQueue create(BundleContext bundleContext) {
+        Bundle bundle = bundleContext.getBundle();
+        String value = bundle.getHeaders().get(ASYNC_HEADER);
+        if (value == null) {
+            value = bundleContext.getProperty(ASYNC);
+        }
+        if (!Boolean.parseBoolean(value == null ? null : value.trim())) {
+            return null;
+        }
+        return new EventQueue(bundle, getCapacity(bundleContext.getProperty(CAPACITY)));
+    }
+
+    private static int getCapacity(String value) {
+        if (value == null) {
+            return DEFAULT_CAPACITY;
+        }
+        try {
+            int capacity = Integer.parseInt(value.trim());
+            if (capacity > 0) {
+                return capacity;
+            }
+        }
+        catch (NumberFormatException exc) {
+            // logged below
+        }
+        LOG.warn("invalid event queue capacity {}, using {}", value, DEFAULT_CAPACITY);
+        return DEFAULT_CAPACITY;
+    }
+
+    /**
+     * Queues an event.
+     *
+     * @param delivery
+     *            delivers the event to the observers
+     * @param release
+     *            releases the resources held by the event, run after delivery or when the event
+     *            is discarded
+     */
+    void submit(Runnable delivery, Runnable release) {
+        boolean permit = false;
+        // a drain thread waiting for another queue may hold up the delivery that frees a permit
+        if (!(Thread.currentThread() instanceof DrainThread)) {
+            try {
+                permits.acquire();
+                permit = true;
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                LOG.warn("interrupted while queueing an event for bundle {}, discarding it", bundle);
+                release.run();
+                return;
+            }
+        }
+        if (closed) {
+            if (permit) {
+                permits.release();
+            }
+            release.run();
+            return;
+        }
+        tasks.add(new Task(delivery, release, permit));
+        maxQueueDepth.accumulate(queueDepth.incrementAndGet());
+        schedule();
+    }
+
+    /**
+     * Discards all queued events and waits for the delivery of the current event, unless called
+     * by the delivering thread.
+     */
+    void close() {
+        closed = true;
+        schedule();
+        if (Thread.currentThread() == drainThread) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        synchronized (lock) {
+            while (draining) {
+                long timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    LOG.warn("event queue of bundle {} not drained in time", bundle);
+                    return;
+                }
+                try {
+                    lock.wait(timeout);
+                }
+                catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public Bundle getBundle() {
+        return bundle;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return (int) maxQueueDepth.get();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * Returns the average latency from queueing to the end of delivery in nanoseconds.
+     */
+    public long getAverageLatency() {
+        long count = delivered.get();
+        return (count == 0) ? 0 : totalLatency.get() / count;
+    }
+
+    /**
+     * Returns the maximum latency from queueing to the end of delivery in nanoseconds.
+     */
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    private void schedule() {
+        synchronized (lock) {
+            if (draining || tasks.isEmpty()) {
+                return;
+            }
+            draining = true;
+        }
+        execute(this::drain);
+    }
+
+    private static synchronized void execute(Runnable drain) {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+        }
+        executor.execute(drain);
+    }
+
+    /**
+     * Shuts down the pool shared by all queues, after the current deliveries. The next event
+     * queued uses a new pool.
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private void drain() {
+        drainThread = Thread.currentThread();
+        try {
+            Task task;
+            while ((task = tasks.poll()) != null) {
+                queueDepth.decrementAndGet();
+                run(task);
+            }
+        }
+        finally {
+            drainThread = null;
+            synchronized (lock) {
+                draining = false;
+                lock.notifyAll();
+            }
+        }
+        // an event queued after the last poll is delivered by a new drain
+        schedule();
+    }
+
+    private void run(Task task) {
+        boolean deliver = !closed;
+        try {
+            if (deliver) {
+                task.delivery.run();
+            }
+        }
+        catch (RuntimeException exc) {
+            LOG.error("cannot deliver event to bundle {}", bundle, exc);
+        }
+        finally {
+            try {
+                task.release.run();
+            }
+            catch (RuntimeException exc) {
+                LOG.warn("cannot release event of bundle {}", bundle, exc);
+            }
+            if (task.permit) {
+                permits.release();
+            }
+            if (deliver) {
+                long latency = System.nanoTime() - task.queued;
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulate(latency);
+                delivered.incrementAndGet();
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -54,6 +55,9 @@ import org.ops4j.pax.cdi.api.Global;
 import org.ops4j.pax.cdi.api.PrototypeScoped;
 import org.ops4j.pax.cdi.api.Service;
 import org.ops4j.pax.cdi.api.SingletonScoped;
+import org.ops4j.pax.cdi.api.event.BundleCdiEvent;
+import org.ops4j.pax.cdi.api.event.BundleStarted;
+import org.ops4j.pax.cdi.api.event.BundleStopped;
 import org.ops4j.pax.cdi.api.event.ServiceCdiEvent;
 import org.ops4j.pax.cdi.extension.impl.component2.BundleContextHolder;
 import org.ops4j.pax.cdi.extension.impl.component2.ComponentDescriptor;
@@ -83,9 +87,12 @@ public class OsgiExtension2 implements Extension {
 
     private ComponentRegistry componentRegistry;
     private GlobalDescriptor global;
+    private EventQueue eventQueue;
 
     private final Set<String> observedFilters = new HashSet<>();
     private final Set<Annotation> observedQualifiers = new HashSet<>();
+    private final List<ServiceObserver> serviceObservers = new ArrayList<>();
+    private boolean bundleEventObserved;
 
     public OsgiExtension2() {
     }
@@ -101,6 +108,7 @@ public class OsgiExtension2 implements Extension {
     public void beforeBeanDiscovery(@Observes BeforeBeanDiscovery event, BeanManager manager) {
         componentRegistry = new ComponentRegistry(manager, BundleContextHolder.getBundleContext());
         global = new GlobalDescriptor(componentRegistry);
+        eventQueue = EventQueue.create(BundleContextHolder.getBundleContext());
 
         event.addAnnotatedType(manager.createAnnotatedType(BundleEventBridge.class));
         event.addAnnotatedType(manager.createAnnotatedType(ServiceEventBridge.class));
@@ -234,18 +242,27 @@ public class OsgiExtension2 implements Extension {
         BeanManager beanManager = componentRegistry.getBeanManager();
         SingletonScopeContext serviceContext = new SingletonScopeContext(beanManager);
         event.addContext(serviceContext);
+        componentRegistry.setSingletonScopeContext(serviceContext);
         BundleScopeContext bundleScopeContext = new BundleScopeContext(beanManager);
         event.addContext(bundleScopeContext);
-        PrototypeScopeContext prototypeScopeContext = new PrototypeScopeContext(beanManager);
+        PrototypeScopeContext prototypeScopeContext = new PrototypeScopeContext(beanManager,
+            componentRegistry.getBundleContext());
         event.addContext(prototypeScopeContext);
     }
 
     public void applicationScopeInitialized(@Observes @Initialized(ApplicationScoped.class) Object init) {
         componentRegistry.start();
         Registry.getInstance().register(componentRegistry);
+        if (eventQueue != null) {
+            Registry.getInstance().register(eventQueue);
+        }
     }
 
     public void applicationScopeDestroyed(@Observes @Destroyed(ApplicationScoped.class) Object destroy) {
+        if (eventQueue != null) {
+            Registry.getInstance().unregister(eventQueue);
+            eventQueue.close();
+        }
         Registry.getInstance().unregister(componentRegistry);
         componentRegistry.stop();
     }
@@ -276,6 +293,32 @@ public class OsgiExtension2 implements Extension {
         return observedQualifiers;
     }
 
+    /**
+     * Returns the queue for asynchronous delivery of OSGi events, or {@code null} for synchronous
+     * delivery. Public for the same reason as {@link #getServiceObservers()}.
+     */
+    public EventQueue getEventQueue() {
+        return eventQueue;
+    }
+
+    /**
+     * Returns {@code true} if the container has an observer for {@link BundleCdiEvent}s. Public
+     * for the same reason as {@link #getServiceObservers()}.
+     */
+    public boolean isBundleEventObserved() {
+        return bundleEventObserved;
+    }
+
+    /**
+     * Returns the observers of {@link ServiceCdiEvent}s.
+     * <p>
+     * This method must be public: the extension is injected as a client proxy, which is defined
+     * by another class loader in OSGi and therefore cannot override package-private methods.
+     */
+    public List<ServiceObserver> getServiceObservers() {
+        return serviceObservers;
+    }
+
     public <T, X> void processObserverMethod(@Observes ProcessObserverMethod<T, X> event) {
         Set<Annotation> qualifiers = event.getObserverMethod().getObservedQualifiers();
         if (qualifiers.contains(new ServiceAddedLiteral())
@@ -293,6 +336,19 @@ public class OsgiExtension2 implements Extension {
             String filter = Filters.and(filters);
             observedFilters.add(filter);
             observedQualifiers.addAll(qualifiers);
+            serviceObservers.add(new ServiceObserver(event.getObserverMethod(), event.getAnnotatedMethod()));
+        }
+        Class<?> observed = Types.getRawType(event.getObserverMethod().getObservedType());
+        if (observed == BundleCdiEvent.class) {
+            bundleEventObserved = true;
+        }
+        else if (observed == Object.class) {
+            for (Annotation qualifier : qualifiers) {
+                if (qualifier.annotationType() == BundleStarted.class
+                        || qualifier.annotationType() == BundleStopped.class) {
+                    bundleEventObserved = true;
+                }
+            }
         }
     }
 
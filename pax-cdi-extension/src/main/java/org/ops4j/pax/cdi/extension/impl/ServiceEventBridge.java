@@ -16,9 +16,12 @@
 package org.ops4j.pax.cdi.extension.impl;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
@@ -29,13 +32,12 @@ import javax.enterprise.util.TypeLiteral;
 import javax.inject.Inject;
 
 import org.ops4j.pax.cdi.api.event.ServiceCdiEvent;
-import org.ops4j.pax.cdi.extension.impl.support.Filters;
+import org.ops4j.pax.cdi.extension.impl.osgi.ServiceEventMultiplexer;
+import org.ops4j.pax.cdi.extension.impl.osgi.ServiceEventMultiplexer.Subscription;
 import org.ops4j.pax.cdi.extension.impl.util.ParameterizedTypeLiteral;
 import org.ops4j.pax.cdi.extension.impl.util.ServiceAddedLiteral;
 import org.ops4j.pax.cdi.extension.impl.util.ServiceRemovedLiteral;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.Filter;
-import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceObjects;
@@ -44,6 +46,22 @@ import org.osgi.framework.ServiceReference;
 /**
  * Maps OSGi service events to CDI events. Fires events qualified with {@code ServiceAdded} or
  * {@code ServiceRemoved}.
+ * <p>
+ * Events are only fired when an observer method collected by {@link OsgiExtension2} matches the
+ * service. The service itself is fired with its class, so an observer of a service type receives
+ * every service whose class is assignable to that type, whatever its {@code objectClass}. The
+ * bridge therefore obtains every service matching the filter of such an observer.
+ * {@link ServiceCdiEvent}s are fired with the most specific service type observed by the matching
+ * observers, so that the service is only obtained when an observer needs it. With the framework
+ * property {@link #LAZY_SERVICES} set to {@code true}, or for observers annotated with
+ * {@code ReferenceOnly}, the event obtains the service on the first call of
+ * {@link ServiceCdiEvent#getService()}.
+ * <p>
+ * Service events are received through a {@link ServiceEventMultiplexer} subscription to the
+ * service types of the {@code ServiceCdiEvent} observers, or to all services if there are
+ * observers of the service itself. With an {@link EventQueue}, the service is obtained when the
+ * event is received and the CDI events are fired asynchronously. A lazily obtained service may no
+ * longer be available by then.
  *
  * @author Harald Wellmann
  * @author Guillaume Nodet
@@ -52,6 +70,14 @@ import org.osgi.framework.ServiceReference;
 @ApplicationScoped
 public class ServiceEventBridge implements ServiceListener {
 
+    /**
+     * Framework property for delivering all {@link ServiceCdiEvent}s with a lazily obtained service.
+     */
+    public static final String LAZY_SERVICES = ServiceEventBridge.class.getName() + ".lazyServices";
+
+    private static final Annotation SERVICE_ADDED = new ServiceAddedLiteral();
+    private static final Annotation SERVICE_REMOVED = new ServiceRemovedLiteral();
+
     @Inject
     private BundleContext bundleContext;
 
@@ -61,8 +87,10 @@ public class ServiceEventBridge implements ServiceListener {
     @Inject
     private OsgiExtension2 extension;
 
-    private String filter;
-    private Map<Annotation, Filter> filters;
+    private Subscription subscription;
+    private ServiceObserverIndex addedObservers;
+    private ServiceObserverIndex removedObservers;
+    private boolean lazy;
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
@@ -73,69 +101,211 @@ public class ServiceEventBridge implements ServiceListener {
         }
 
         ServiceReference serviceReference = serviceEvent.getServiceReference();
-        ServiceObjects serviceObjects =
-                bundleContext.getServiceObjects(serviceReference);
+        ServiceObserverIndex index = (serviceEvent.getType() == ServiceEvent.REGISTERED)
+            ? addedObservers : removedObservers;
+
+        Set<Annotation> typedQualifiers = null;
+        Set<Annotation> cdiEventQualifiers = null;
+        List<Class<?>> cdiEventTypes = null;
+        boolean eager = false;
+        for (ServiceObserver observer : index.getCandidates(serviceReference)) {
+            if (!observer.matches(serviceReference)) {
+                continue;
+            }
+            if (observer.isTyped()) {
+                typedQualifiers = addQualifiers(typedQualifiers, qualifier, observer);
+            }
+            if (observer.isCdiEvent()) {
+                cdiEventQualifiers = addQualifiers(cdiEventQualifiers, qualifier, observer);
+                if (cdiEventTypes == null) {
+                    cdiEventTypes = new ArrayList<>();
+                }
+                cdiEventTypes.add(observer.getService());
+                eager |= !lazy && !observer.isReferenceOnly();
+            }
+        }
+        boolean typed = typedQualifiers != null;
+        if (!typed && cdiEventQualifiers == null) {
+            return;
+        }
 
-        Object service = serviceObjects.getService();
+        Class<?> cdiEventType = (cdiEventTypes == null) ? null : getMostSpecificType(cdiEventTypes);
+        ServiceObjects serviceObjects = null;
+        Object service = null;
+        // without a common observed type, the type of the event is the class of the service
+        if (typed || eager || (cdiEventQualifiers != null && cdiEventType == null)) {
+            serviceObjects = bundleContext.getServiceObjects(serviceReference);
+            service = serviceObjects.getService();
+        }
 
+        final ServiceObjects eventServiceObjects = serviceObjects;
+        final Object eventService = service;
+        final Set<Annotation> eventTypedQualifiers = typedQualifiers;
+        final Set<Annotation> eventCdiEventQualifiers = cdiEventQualifiers;
+        final Class<?> eventCdiEventType = (cdiEventType == null && service != null)
+            ? service.getClass() : cdiEventType;
+        Runnable delivery = () -> deliver(serviceReference, eventService, eventTypedQualifiers,
+            eventCdiEventQualifiers, eventCdiEventType);
+        Runnable release = () -> {
+            if (eventService != null) {
+                eventServiceObjects.ungetService(eventService);
+            }
+        };
+        EventQueue eventQueue = extension.getEventQueue();
+        if (eventQueue != null) {
+            eventQueue.submit(delivery, release);
+            return;
+        }
         try {
-            Class klass = service.getClass();
-            Event<Object> event = this.event;
-            for (Map.Entry<Annotation, Filter> entry : filters.entrySet()) {
-                if (entry.getValue().match(serviceReference)) {
-                    event = event.select(entry.getKey());
-                }
+            delivery.run();
+        }
+        finally {
+            release.run();
+        }
+    }
+
+    private static Set<Annotation> addQualifiers(Set<Annotation> qualifiers, Annotation qualifier,
+        ServiceObserver observer) {
+        Set<Annotation> result = qualifiers;
+        if (result == null) {
+            result = new LinkedHashSet<>();
+            result.add(qualifier);
+        }
+        Collections.addAll(result, observer.getFilterQualifiers());
+        return result;
+    }
+
+    /**
+     * Returns the observed type which is a subtype of all other observed types, or {@code null}
+     * if there is no such type.
+     */
+    private static Class<?> getMostSpecificType(List<Class<?>> types) {
+        Class<?> result = types.get(0);
+        for (Class<?> type : types) {
+            if (result.isAssignableFrom(type)) {
+                result = type;
+            }
+        }
+        for (Class<?> type : types) {
+            if (!type.isAssignableFrom(result)) {
+                return null;
             }
-            event.select(klass, qualifier).fire(service);
+        }
+        return result;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void deliver(ServiceReference serviceReference, Object service,
+        Set<Annotation> typedQualifiers, Set<Annotation> cdiEventQualifiers, Class<?> cdiEventType) {
+        // qualifiers of the matching typed observers, whose filters have all matched
+        if (typedQualifiers != null) {
+            Class klass = service.getClass();
+            event.select(klass, typedQualifiers.toArray(new Annotation[typedQualifiers.size()])).fire(service);
+        }
+        if (cdiEventQualifiers == null) {
+            return;
+        }
 
-            TypeLiteral literal = new ParameterizedTypeLiteral(ServiceCdiEvent.class, klass);
-            ServiceCdiEvent cdiEvent = new ServiceCdiEvent(serviceReference, service);
-            event.select(literal, qualifier).fire(cdiEvent);
+        LazyServiceCdiEvent lazyEvent = null;
+        try {
+            ServiceCdiEvent cdiEvent;
+            if (service != null) {
+                cdiEvent = new ServiceCdiEvent(serviceReference, service);
+            }
+            else {
+                lazyEvent = new LazyServiceCdiEvent(serviceReference, bundleContext);
+                cdiEvent = lazyEvent;
+            }
+            TypeLiteral literal = new ParameterizedTypeLiteral(ServiceCdiEvent.class, cdiEventType);
+            event.select(literal, cdiEventQualifiers.toArray(new Annotation[cdiEventQualifiers.size()]))
+                .fire(cdiEvent);
         }
         finally {
-            serviceObjects.ungetService(service);
+            if (lazyEvent != null) {
+                lazyEvent.release();
+            }
         }
     }
 
     @PostConstruct
     public void init() {
-        filter = Filters.or(extension.getObservedFilters());
-        if (filter != null) {
-            try {
-                filters = new HashMap<>();
-                for (Annotation annotation : extension.getObservedQualifiers()) {
-                    String flt = Filters.getFilter(Collections.singleton(annotation));
-                    if (flt != null) {
-                        filters.put(annotation, bundleContext.createFilter(flt));
-                    }
-                }
-                bundleContext.addServiceListener(this, filter);
-            } catch (InvalidSyntaxException e) {
-                throw new RuntimeException(e);
+        lazy = Boolean.parseBoolean(bundleContext.getProperty(LAZY_SERVICES));
+        List<ServiceObserver> added = new ArrayList<>();
+        List<ServiceObserver> removed = new ArrayList<>();
+        for (ServiceObserver observer : extension.getServiceObservers()) {
+            if (observer.isDeliverable()) {
+                (observer.isAdded() ? added : removed).add(observer);
             }
         }
+        addedObservers = new ServiceObserverIndex(added);
+        removedObservers = new ServiceObserverIndex(removed);
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            Set<String> addedClassNames = addedObservers.getObservedClassNames();
+            Set<String> removedClassNames = removedObservers.getObservedClassNames();
+            Set<String> classNames = null;
+            if (addedClassNames != null && removedClassNames != null) {
+                classNames = new HashSet<>(addedClassNames);
+                classNames.addAll(removedClassNames);
+            }
+            subscription = ServiceEventMultiplexer.subscribe(bundleContext, classNames, this);
+        }
     }
 
     @PreDestroy
     public void destroy() {
-        if (filter != null) {
-            bundleContext.removeServiceListener(this);
+        if (subscription != null) {
+            subscription.close();
         }
     }
 
     private Annotation toQualifier(ServiceEvent serviceEvent) {
         switch (serviceEvent.getType()) {
             case ServiceEvent.REGISTERED:
-                return new ServiceAddedLiteral();
+                return SERVICE_ADDED;
 
             case ServiceEvent.UNREGISTERING:
-                return new ServiceRemovedLiteral();
+                return SERVICE_REMOVED;
 
             default:
                 return null;
         }
     }
 
+    /**
+     * A {@code ServiceCdiEvent} obtaining the service on demand, until the event has been
+     * delivered to all observers.
+     */
+    static class LazyServiceCdiEvent<T> extends ServiceCdiEvent<T> {
+
+        private final BundleContext bundleContext;
+        private ServiceObjects<T> serviceObjects;
+        private T service;
+        private boolean released;
+
+        LazyServiceCdiEvent(ServiceReference<T> reference, BundleContext bundleContext) {
+            super(reference);
+            this.bundleContext = bundleContext;
+        }
+
+        @Override
+        public synchronized T getService() {
+            if (service == null && !released) {
+                serviceObjects = bundleContext.getServiceObjects(getReference());
+                if (serviceObjects != null) {
+                    service = serviceObjects.getService();
+                }
+            }
+            return service;
+        }
+
+        synchronized void release() {
+            released = true;
+            if (service != null) {
+                serviceObjects.ungetService(service);
+            }
+        }
+    }
+
     // Force the instantation of this bean
     public void applicationScopeInitialized(@Observes @Initialized(ApplicationScoped.class) Object init) {
     }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Default;
+import javax.enterprise.inject.spi.AnnotatedMethod;
+import javax.enterprise.inject.spi.AnnotatedParameter;
+import javax.enterprise.inject.spi.ObserverMethod;
+
+import org.ops4j.pax.cdi.api.event.ReferenceOnly;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.api.event.ServiceCdiEvent;
+import org.ops4j.pax.cdi.api.event.ServiceRemoved;
+import org.ops4j.pax.cdi.extension.impl.support.CompiledFilter;
+import org.ops4j.pax.cdi.extension.impl.support.Filters;
+import org.ops4j.pax.cdi.extension.impl.support.Types;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * An observer method for {@code ServiceAdded} or {@code ServiceRemoved} events, as collected by
+ * {@link OsgiExtension2}.
+ */
+class ServiceObserver {
+
+    /** attribute name and value without wildcards, escapes, whitespace or comparison operators */
+    private static final Pattern EQUALITY = Pattern.compile("\\(([^=~<>()*\\\\\\s]+)=([^=()*\\\\\\s][^()*\\\\\\s]*)\\)");
+
+    private final Class<?> service;
+    private final String objectClass;
+    private final boolean typed;
+    private final boolean cdiEvent;
+    private final boolean referenceOnly;
+    private final boolean added;
+    private final String filter;
+    private final Filter compiledFilter;
+    private final String[] equalityConstraint;
+    private final Annotation[] filterQualifiers;
+    private final boolean deliverable;
+
+    ServiceObserver(ObserverMethod<?> observerMethod, AnnotatedMethod<?> annotatedMethod) {
+        Set<Annotation> qualifiers = observerMethod.getObservedQualifiers();
+        Type observed = observerMethod.getObservedType();
+        Class<?> rawType = Types.getRawType(observed);
+        // observers of Object receive both the service and the ServiceCdiEvent
+        this.typed = rawType != ServiceCdiEvent.class;
+        this.cdiEvent = rawType == ServiceCdiEvent.class || rawType == Object.class;
+        if (rawType == ServiceCdiEvent.class) {
+            this.service = observed instanceof ParameterizedType
+                ? Types.getRawType(((ParameterizedType) observed).getActualTypeArguments()[0])
+                : Object.class;
+        }
+        else {
+            this.service = rawType;
+        }
+        this.referenceOnly = rawType == ServiceCdiEvent.class && isReferenceOnly(annotatedMethod);
+        this.added = qualifiers.stream().anyMatch(ServiceAdded.class::isInstance);
+
+        // the container delivers the service itself to all observers of a type of its class, so
+        // only observers which receive nothing but ServiceCdiEvents are restricted to an objectClass
+        this.objectClass = (typed || service == Object.class) ? null : service.getName();
+
+        List<String> filters = Filters.getSubFilters(qualifiers);
+        this.equalityConstraint = getEqualityConstraint(filters);
+        if (objectClass != null) {
+            filters.add(0, "(" + Constants.OBJECTCLASS + "=" + objectClass + ")");
+        }
+        this.filter = Filters.and(filters);
+        try {
+            this.compiledFilter = (filter == null) ? null : CompiledFilter.compile(filter);
+        }
+        catch (InvalidSyntaxException exc) {
+            throw new IllegalArgumentException("Invalid filter on observer method " + observerMethod, exc);
+        }
+
+        // the bridge only adds filter qualifiers to its events
+        List<Annotation> filterQualifierList = new ArrayList<>();
+        boolean onlyFilterQualifiers = true;
+        for (Annotation qualifier : qualifiers) {
+            if (qualifier instanceof ServiceAdded || qualifier instanceof ServiceRemoved
+                || qualifier instanceof Any || qualifier instanceof Default) {
+                continue;
+            }
+            if (Filters.getSubFilters(Collections.singleton(qualifier)).isEmpty()) {
+                onlyFilterQualifiers = false;
+            }
+            else {
+                filterQualifierList.add(qualifier);
+            }
+        }
+        this.filterQualifiers = filterQualifierList.toArray(new Annotation[filterQualifierList.size()]);
+        this.deliverable = onlyFilterQualifiers;
+    }
+
+    /**
+     * Returns the first simple {@code (name=value)} filter as name and value, or {@code null}.
+     */
+    private static String[] getEqualityConstraint(List<String> filters) {
+        for (String filter : filters) {
+            Matcher matcher = EQUALITY.matcher(filter);
+            if (matcher.matches()) {
+                return new String[] { matcher.group(1), matcher.group(2) };
+            }
+        }
+        return null;
+    }
+
+    private static boolean isReferenceOnly(AnnotatedMethod<?> annotatedMethod) {
+        for (AnnotatedParameter<?> parameter : annotatedMethod.getParameters()) {
+            if (parameter.isAnnotationPresent(Observes.class)) {
+                return parameter.isAnnotationPresent(ReferenceOnly.class);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the service type, or {@code Object} for observers of any service.
+     */
+    Class<?> getService() {
+        return service;
+    }
+
+    /**
+     * Returns the service type which must be registered as {@code objectClass}, or {@code null}
+     * if the observer may match services registered under any type.
+     */
+    String getObjectClass() {
+        return objectClass;
+    }
+
+    /**
+     * Returns {@code true} if the observer receives {@link ServiceCdiEvent}s.
+     */
+    boolean isCdiEvent() {
+        return cdiEvent;
+    }
+
+    /**
+     * Returns {@code true} if the observer receives the service object itself.
+     */
+    boolean isTyped() {
+        return typed;
+    }
+
+    boolean isReferenceOnly() {
+        return referenceOnly;
+    }
+
+    /**
+     * Returns {@code true} for {@code ServiceAdded} and {@code false} for {@code ServiceRemoved}
+     * observers.
+     */
+    boolean isAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the filter matching the services of this observer, or {@code null} for all services.
+     */
+    String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns {@code true} if the given service matches the {@code objectClass} and filter of this
+     * observer.
+     */
+    boolean matches(ServiceReference<?> reference) {
+        return compiledFilter == null || compiledFilter.match(reference);
+    }
+
+    /**
+     * Returns the attribute name and value of an equality term of the filter of this observer, or
+     * {@code null}. A service can only match the filter if it has this attribute value.
+     */
+    String[] getEqualityConstraint() {
+        return equalityConstraint;
+    }
+
+    /**
+     * Returns the qualifiers of this observer which have an associated filter.
+     */
+    Annotation[] getFilterQualifiers() {
+        return filterQualifiers;
+    }
+
+    /**
+     * Returns {@code false} if the observer has qualifiers which are never present on events fired
+     * by the bridge.
+     */
+    boolean isDeliverable() {
+        return deliverable;
+    }
+}
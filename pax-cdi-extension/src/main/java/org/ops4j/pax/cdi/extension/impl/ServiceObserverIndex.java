@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Index of service observers by registered service type and by the first equality constraint of
+ * their filter, used to select the candidate observers of a service event. Candidates still have
+ * to be matched against the full filter of the observer.
+ */
+class ServiceObserverIndex {
+
+    /**
+     * Observers of one service type.
+     */
+    private static class Bucket {
+
+        /** observers without equality constraint */
+        private final List<ServiceObserver> unconstrained = new ArrayList<>();
+
+        /** observers by attribute name and value */
+        private final Map<String, Map<String, List<ServiceObserver>>> constrained = new HashMap<>();
+
+        boolean isEmpty() {
+            return unconstrained.isEmpty() && constrained.isEmpty();
+        }
+
+        void add(ServiceObserver observer) {
+            String[] constraint = observer.getEqualityConstraint();
+            if (constraint == null) {
+                unconstrained.add(observer);
+            }
+            else {
+                constrained.computeIfAbsent(constraint[0], k -> new HashMap<>())
+                    .computeIfAbsent(constraint[1], k -> new ArrayList<>()).add(observer);
+            }
+        }
+
+        void collect(ServiceReference<?> reference, List<ServiceObserver> candidates) {
+            candidates.addAll(unconstrained);
+            for (Map.Entry<String, Map<String, List<ServiceObserver>>> entry : constrained.entrySet()) {
+                Object value = reference.getProperty(entry.getKey());
+                if (value instanceof String) {
+                    List<ServiceObserver> observers = entry.getValue().get(value);
+                    if (observers != null) {
+                        candidates.addAll(observers);
+                    }
+                }
+                else if (value != null) {
+                    // arrays, collections and non-string values use the LDAP matching rules
+                    for (List<ServiceObserver> observers : entry.getValue().values()) {
+                        candidates.addAll(observers);
+                    }
+                }
+            }
+        }
+    }
+
+    private final Map<String, Bucket> byObjectClass = new HashMap<>();
+    private final Bucket anyObjectClass = new Bucket();
+    private final boolean empty;
+
+    ServiceObserverIndex(List<ServiceObserver> observers) {
+        for (ServiceObserver observer : observers) {
+            if (observer.getObjectClass() == null) {
+                anyObjectClass.add(observer);
+            }
+            else {
+                byObjectClass.computeIfAbsent(observer.getObjectClass(), k -> new Bucket()).add(observer);
+            }
+        }
+        this.empty = observers.isEmpty();
+    }
+
+    /**
+     * Returns the names of the observed service types, or {@code null} if some observer may match
+     * services registered under any type.
+     */
+    Set<String> getObservedClassNames() {
+        return anyObjectClass.isEmpty() ? byObjectClass.keySet() : null;
+    }
+
+    /**
+     * Returns the observers which may match the given service.
+     */
+    List<ServiceObserver> getCandidates(ServiceReference<?> reference) {
+        if (empty) {
+            return Collections.emptyList();
+        }
+        List<ServiceObserver> candidates = new ArrayList<>();
+        Object objectClass = reference.getProperty(Constants.OBJECTCLASS);
+        if (objectClass instanceof String[]) {
+            for (String name : (String[]) objectClass) {
+                Bucket bucket = byObjectClass.get(name);
+                if (bucket != null) {
+                    bucket.collect(reference, candidates);
+                }
+            }
+        }
+        anyObjectClass.collect(reference, candidates);
+        return candidates;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl.component2;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the asynchronous tasks of the components of one bean bundle, such as late binding, one at
+ * a time and in the order they were scheduled.
+ * <p>
+ * The actors of all bean bundles share one pool of threads, whose threads terminate when idle.
+ * Its size is set by the framework property {@link #POOL_SIZE} and defaults to the number of
+ * processors. An actor runs at most {@value #BATCH_SIZE} tasks before yielding its thread to the
+ * other actors. When the framework property {@link #VIRTUAL_THREADS} is {@code true} and the JDK
+ * supports virtual threads, each run of an actor uses a new virtual thread instead. The pool is
+ * created by the first actor, so the properties are read once, and shut down when the extension
+ * bundle stops.
+ */
+public class ComponentActor implements Executor {
+
+    /**
+     * Framework property for the number of threads shared by all actors.
+     */
+    public static final String POOL_SIZE = ComponentActor.class.getName() + ".poolSize";
+
+    /**
+     * Framework property running the actors on virtual threads, if supported by the JDK.
+     */
+    public static final String VIRTUAL_THREADS = ComponentActor.class.getName() + ".virtualThreads";
+
+    static final int BATCH_SIZE = 32;
+
+    private static final long KEEP_ALIVE = TimeUnit.SECONDS.toMillis(60);
+
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Logger LOG = LoggerFactory.getLogger(ComponentActor.class);
+
+    private static ExecutorService pool;
+
+    /**
+     * Daemon threads for running the actors.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "pax-cdi-component-actor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * A scheduled task.
+     */
+    private static class Task {
+
+        private final Runnable runnable;
+        private final long scheduled = System.nanoTime();
+
+        Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    private final String name;
+    private final Executor executor;
+    private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+    private final Object lock = new Object();
+
+    /** guarded by {@link #lock} */
+    private boolean running;
+    private volatile Thread runThread;
+    private volatile boolean closed;
+
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final LongAccumulator maxQueueLength = new LongAccumulator(Math::max, 0);
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates the actor of the given bean bundle.
+     *
+     * @param bundleContext
+     *            bundle context of the bean bundle
+     */
+    public ComponentActor(BundleContext bundleContext) {
+        this(String.valueOf(bundleContext.getBundle()), getPool(bundleContext));
+    }
+
+    ComponentActor(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    private static synchronized ExecutorService getPool(BundleContext bundleContext) {
+        if (pool == null) {
+            if (Boolean.parseBoolean(bundleContext.getProperty(VIRTUAL_THREADS))) {
+                pool = createVirtualThreadPool();
+            }
+            if (pool == null) {
+                int poolSize = getPoolSize(bundleContext.getProperty(POOL_SIZE));
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new DaemonThreadFactory());
+                executor.allowCoreThreadTimeOut(true);
+                pool = executor;
+            }
+        }
+        return pool;
+    }
+
+    private static int getPoolSize(String value) {
+        int defaultSize = Runtime.getRuntime().availableProcessors();
+        if (value == null) {
+            return defaultSize;
+        }
+        try {
+            int poolSize = Integer.parseInt(value.trim());
+            if (poolSize > 0) {
+                return poolSize;
+            }
+        }
+        catch (NumberFormatException exc) {
+            // logged below
+        }
+        LOG.warn("invalid component actor pool size {}, using {}", value, defaultSize);
+        return defaultSize;
+    }
+
+    /**
+     * Shuts down the pool shared by all actors. The next actor created uses a new pool.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private static ExecutorService createVirtualThreadPool() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (ReflectiveOperationException exc) {
+            LOG.warn("virtual threads are not supported by this JDK, using a thread pool");
+            return null;
+        }
+    }
+
+    /**
+     * Schedules a task, unless this actor is closed.
+     */
+    @Override
+    public void execute(Runnable runnable) {
+        if (closed) {
+            LOG.debug("component actor of {} closed, discarding {}", name, runnable);
+            return;
+        }
+        tasks.add(new Task(runnable));
+        maxQueueLength.accumulate(queueLength.incrementAndGet());
+        schedule();
+    }
+
+    /**
+     * Discards all scheduled tasks and waits for the current task, unless called by the actor
+     * itself.
+     */
+    public void close() {
+        closed = true;
+        Task task;
+        while ((task = tasks.poll()) != null) {
+            queueLength.decrementAndGet();
+            LOG.debug("component actor of {} closed, discarding {}", name, task.runnable);
+        }
+        if (Thread.currentThread() == runThread) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        synchronized (lock) {
+            while (running) {
+                long timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    LOG.warn("component actor of {} not idle in time", name);
+                    return;
+                }
+                try {
+                    lock.wait(timeout);
+                }
+                catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getQueueLength() {
+        return queueLength.get();
+    }
+
+    public int getMaxQueueLength() {
+        return (int) maxQueueLength.get();
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * Returns the average latency from scheduling to the end of a task in nanoseconds.
+     */
+    public long getAverageLatency() {
+        long count = executed.get();
+        return (count == 0) ? 0 : totalLatency.get() / count;
+    }
+
+    /**
+     * Returns the maximum latency from scheduling to the end of a task in nanoseconds.
+     */
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    private void schedule() {
+        synchronized (lock) {
+            if (running || tasks.isEmpty()) {
+                return;
+            }
+            running = true;
+        }
+        try {
+            executor.execute(this::run);
+        }
+        catch (RuntimeException exc) {
+            synchronized (lock) {
+                running = false;
+                lock.notifyAll();
+            }
+            throw exc;
+        }
+    }
+
+    private void run() {
+        runThread = Thread.currentThread();
+        try {
+            Task task;
+            for (int i = 0; i < BATCH_SIZE && !closed && (task = tasks.poll()) != null; i++) {
+                queueLength.decrementAndGet();
+                run(task);
+            }
+        }
+        finally {
+            runThread = null;
+            synchronized (lock) {
+                running = false;
+                lock.notifyAll();
+            }
+        }
+        // remaining tasks and tasks scheduled after the last poll are run by a new run
+        if (!closed) {
+            schedule();
+        }
+    }
+
+    private void run(Task task) {
+        try {
+            task.runnable.run();
+        }
+        catch (RuntimeException exc) {
+            LOG.error("component actor of {} cannot run {}", name, task.runnable, exc);
+        }
+        finally {
+            long latency = System.nanoTime() - task.scheduled;
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulate(latency);
+            executed.incrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentActor [" + name + "]";
+    }
+}
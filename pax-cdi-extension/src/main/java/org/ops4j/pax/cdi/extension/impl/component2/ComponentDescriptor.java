@@ -29,6 +29,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 import javax.enterprise.context.Dependent;
 import javax.enterprise.context.spi.AlterableContext;
@@ -65,12 +67,22 @@ import org.ops4j.pax.cdi.extension.impl.support.IterableInstance;
 import org.ops4j.pax.cdi.extension.impl.support.PrivateRegistryWrapper;
 import org.ops4j.pax.cdi.extension.impl.support.SimpleBean;
 import org.ops4j.pax.cdi.extension.impl.support.Types;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.component.ComponentContext;
 
 public class ComponentDescriptor extends AbstractDescriptor {
 
+    /**
+     * Framework property enabling immutable {@code @Config} instances, converted once when the
+     * component is activated with its configuration instead of on every method call.
+     */
+    public static final String CONFIG_SNAPSHOTS = ComponentDescriptor.class.getName() + ".configSnapshots";
+
     private final Bean<Object> bean;
+    private final boolean configSnapshots;
+    private volatile ConcurrentMap<String, ConfigSnapshot> snapshots = new ConcurrentHashMap<>();
     private final Map<InjectionPoint, Supplier<Object>> instanceSuppliers = new HashMap<>();
     private final ThreadLocal<ComponentContext> context = new ThreadLocal<>();
     private final List<Bean<?>> producers = new ArrayList<>();
@@ -78,6 +90,9 @@ public class ComponentDescriptor extends AbstractDescriptor {
     public ComponentDescriptor(Bean<Object> bean, ComponentRegistry registry) {
         super(registry);
         this.bean = bean;
+        BundleContext bundleContext = registry.getBundleContext();
+        this.configSnapshots = bundleContext != null
+            && Boolean.parseBoolean(bundleContext.getProperty(CONFIG_SNAPSHOTS));
 
         boolean immediate = false;
         boolean hasService = false;
@@ -264,9 +279,35 @@ public class ComponentDescriptor extends AbstractDescriptor {
             throw new IllegalStateException("Can not obtain @Component instance");
         }
         Map<String, Object> cfg = (Map) cc.getProperties();
+        if (configSnapshots) {
+            return getConfigSnapshot(clazz, cfg != null ? cfg : new Hashtable<>());
+        }
         return Configurable.create(clazz, cfg != null ? cfg : new Hashtable<>());
     }
 
+    /**
+     * Returns the snapshot of the given configuration, reusing the one created for an earlier activation
+     * with the same properties. Factory configurations are kept apart by their <code>service.pid</code>.
+     */
+    private Object getConfigSnapshot(Class<?> clazz, Map<String, Object> cfg) {
+        String key = clazz.getName() + "/" + cfg.get(Constants.SERVICE_PID);
+        ConcurrentMap<String, ConfigSnapshot> current = snapshots;
+        ConfigSnapshot snapshot = current.get(key);
+        if (snapshot == null || !snapshot.properties.equals(cfg)) {
+            snapshot = new ConfigSnapshot(new HashMap<>(cfg), Configurable.snapshot(clazz, cfg));
+            current.put(key, snapshot);
+        }
+        return snapshot.value;
+    }
+
+    /**
+     * Drops the configuration snapshots, called by the component holder when
+     * {@code RegionConfigurationSupport} updates or deletes a configuration of this component.
+     */
+    void configurationChanged() {
+        snapshots = new ConcurrentHashMap<>();
+    }
+
     protected Object getService(final InjectionPoint injectionPoint, boolean isInstance, boolean dynamic) {
         final ComponentContext cc = context.get();
         if (cc == null) {
@@ -379,4 +420,13 @@ public class ComponentDescriptor extends AbstractDescriptor {
         return "Component[" + "bean=" + bean + ']';
     }
 
+    private static final class ConfigSnapshot {
+        final Map<String, Object> properties;
+        final Object value;
+
+        ConfigSnapshot(Map<String, Object> properties, Object value) {
+            this.properties = properties;
+            this.value = value;
+        }
+    }
 }
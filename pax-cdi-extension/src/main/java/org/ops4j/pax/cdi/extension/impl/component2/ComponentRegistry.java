@@ -19,17 +19,18 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.enterprise.inject.spi.AfterBeanDiscovery;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
@@ -59,6 +60,10 @@ import org.apache.felix.scr.impl.manager.ServiceFactoryComponentManager;
 import org.apache.felix.scr.impl.manager.SingleComponentManager;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.TargetedPID;
+import org.ops4j.pax.cdi.extension.impl.context.SingletonScopeContext;
+import org.ops4j.pax.cdi.extension.impl.osgi.Registry;
+import org.ops4j.pax.cdi.extension.impl.osgi.ServiceEventMultiplexer;
+import org.ops4j.pax.cdi.extension.impl.osgi.ServiceEventMultiplexer.Subscription;
 import org.ops4j.pax.cdi.extension.impl.support.Consumer;
 import org.ops4j.pax.cdi.extension.impl.support.PrivateRegistryWrapper;
 import org.osgi.framework.Bundle;
@@ -72,6 +77,7 @@ import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.component.ComponentException;
 import org.osgi.service.log.LogService;
+import org.osgi.util.promise.Promise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,31 +86,40 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
 
     private static final Logger LOG = LoggerFactory.getLogger(ComponentRegistry.class);
 
+    /**
+     * Class name filter of a reference, subscribed to the {@link ServiceEventMultiplexer}.
+     */
+    private static final Pattern CLASS_NAME_FILTER = Pattern.compile("\\(objectClass=([^()*\\\\]+)\\)");
+
     ConfigAdminTracker configAdminTracker;
 
     private final ThreadLocal<List<ServiceReference<?>>> circularInfos = new ThreadLocal<> ();
 
     private final BeanManager beanManager;
     private final BundleContext bundleContext;
-    private final Map<Bean<?>, AbstractDescriptor> descriptors = new HashMap<>();
+    private final Map<Bean<?>, AbstractDescriptor> descriptors = new ConcurrentHashMap<>();
 
-    private final List<ComponentHolder<?>> holders = new ArrayList<>();
-    private final Map<String, ComponentHolder<?>> holdersByName = new HashMap<>();
-    private final Map<String, Set<ComponentHolder<?>>> holdersByPid = new HashMap<>();
+    /** immutable snapshot of the component holders, published by {@link #start()} */
+    private volatile HolderIndex holderIndex = new HolderIndex();
 
     private final ScrConfiguration m_configuration = new ScrConfigurationImpl();
     private final Map<String, ListenerInfo> listenerMap = new HashMap<>();
     private final Map<ExtendedServiceListener, ServiceListener> privateListeners = new HashMap<>();
     private final AtomicInteger componentId = new AtomicInteger();
-    private final Map<ServiceReference<?>, List<Entry>> m_missingDependencies = new HashMap<>();
+    private final ConcurrentMap<ServiceReference<?>, List<Entry>> m_missingDependencies = new ConcurrentHashMap<>();
     private final ConcurrentMap<Long, RegionConfigurationSupport> bundleToRcsMap = new ConcurrentHashMap<>();
-    private final Executor m_componentActor = Executors.newSingleThreadExecutor();
+    private final ComponentActor m_componentActor;
+    private volatile SingletonScopeContext singletonScopeContext;
 
     private final AtomicBoolean started = new AtomicBoolean();
 
+    /** incremented after any change which may affect the runtime DTOs of the components */
+    private final AtomicLong changeCount = new AtomicLong();
+
     public ComponentRegistry(BeanManager beanManager, BundleContext bundleContext) {
         this.beanManager = beanManager;
         this.bundleContext = new PrivateRegistryWrapper(bundleContext);
+        this.m_componentActor = new ComponentActor(bundleContext);
     }
 
     public BeanManager getBeanManager() {
@@ -163,23 +178,13 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
             return;
         }
 
+        List<ComponentHolder<?>> holders = new ArrayList<>();
         for (AbstractDescriptor d : descriptors.values()) {
             d.validate(this);
             ComponentHolder<?> h = new CdiComponentHolder<>(this, d);
             holders.add(h);
         }
-
-        for (ComponentHolder<?> h : holders) {
-            if (holdersByName.put(h.getComponentMetadata().getName(), h) != null) {
-                throw new ComponentException("The component name '{0}" + h.getComponentMetadata().getName() + "' has already been registered.");
-            }
-        }
-        for (ComponentHolder<?> h : holders) {
-            for (String pid : h.getComponentMetadata().getConfigurationPid()) {
-                Set<ComponentHolder<?>> set = holdersByPid.computeIfAbsent(pid, k -> new HashSet<>());
-                set.add(h);
-            }
-        }
+        holderIndex = new HolderIndex(holders);
 
         ConfigAdminTracker tracker = null;
         for (ComponentHolder<?> holder : holders) {
@@ -198,15 +203,18 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
                 throw e;
             }
         }
+        changed();
     }
 
     public void stop() {
         int reason = bundleContext.getBundle().getState() == Bundle.STOPPING
                 ? ComponentConstants.DEACTIVATION_REASON_BUNDLE_STOPPED
                 : ComponentConstants.DEACTIVATION_REASON_DISPOSED;
-        for (ComponentHolder<?> h : holders) {
+        for (ComponentHolder<?> h : holderIndex.holders) {
             h.disposeComponents(reason);
         }
+        m_componentActor.close();
+        changed();
     }
 
     public ComponentDescriptor addComponent(Bean<Object> component) {
@@ -219,6 +227,31 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
         return bundleContext;
     }
 
+    public ComponentActor getComponentActor() {
+        return m_componentActor;
+    }
+
+    public SingletonScopeContext getSingletonScopeContext() {
+        return singletonScopeContext;
+    }
+
+    public void setSingletonScopeContext(SingletonScopeContext singletonScopeContext) {
+        this.singletonScopeContext = singletonScopeContext;
+    }
+
+    /**
+     * Returns a count which is incremented after any change which may affect the runtime DTOs of
+     * the components of this registry, such as configuration updates, activation and binding.
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    void changed() {
+        changeCount.incrementAndGet();
+        Registry.getInstance().changed();
+    }
+
     public Set<Bean<?>> getComponents() {
         return descriptors.keySet();
     }
@@ -240,7 +273,13 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
     @Override
     public void schedule(Runnable runnable) {
         if (isActive()) {
-            m_componentActor.execute(runnable);
+            m_componentActor.execute(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    changed();
+                }
+            });
         }
     }
 
@@ -259,8 +298,12 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
         if (serviceReference.getProperty(ComponentConstants.COMPONENT_NAME) == null || serviceReference.getProperty(ComponentConstants.COMPONENT_ID) == null) {
             return;
         }
-        List<Entry> dependencyManagers = m_missingDependencies.computeIfAbsent(serviceReference, k -> new ArrayList<>());
-        dependencyManagers.add(new Entry(dependencyManager, trackingCount));
+        // a list removed by missingServicePresent is no longer modified
+        m_missingDependencies.compute(serviceReference, (ref, dependencyManagers) -> {
+            List<Entry> entries = (dependencyManagers == null) ? new ArrayList<>() : dependencyManagers;
+            entries.add(new Entry(dependencyManager, trackingCount));
+            return entries;
+        });
     }
 
     @Override
@@ -269,9 +312,13 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
         if (dependencyManagers != null) {
             m_componentActor.execute(new Runnable() {
                 public void run() {
-                    for (Entry entry : dependencyManagers) {
-                        DependencyManager<?, T> dm = entry.getDm();
-                        dm.invokeBindMethodLate(serviceReference, entry.getTrackingCount());
+                    try {
+                        for (Entry entry : dependencyManagers) {
+                            DependencyManager<?, T> dm = entry.getDm();
+                            dm.invokeBindMethodLate(serviceReference, entry.getTrackingCount());
+                        }
+                    } finally {
+                        changed();
                     }
                 }
 
@@ -309,7 +356,7 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
             }
         };
         RegionConfigurationSupport rcs = registerRegionConfigurationSupport(trialRcs);
-        for (ComponentHolder<?> holder : holders) {
+        for (ComponentHolder<?> holder : holderIndex.holders) {
             rcs.configureComponentHolder(holder);
         }
         return rcs;
@@ -350,7 +397,13 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
                                    final ExtendedServiceListener<ExtendedServiceEvent> listener) {
         if (eventFilter != null && eventFilter.toString().contains(PrivateRegistryWrapper.PRIVATE)) {
             synchronized (privateListeners) {
-                ServiceListener l = event -> listener.serviceChanged(new ExtendedServiceEvent(event));
+                ServiceListener l = event -> {
+                    try {
+                        listener.serviceChanged(new ExtendedServiceEvent(event));
+                    } finally {
+                        changed();
+                    }
+                };
                 privateListeners.put(listener, l);
                 try {
                     bundleContext.addServiceListener(l, "(&" + classNameFilter + eventFilter.toString() + ")");
@@ -368,10 +421,16 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
             if (listenerInfo == null) {
                 listenerInfo = new ListenerInfo();
                 listenerMap.put(classNameFilter, listenerInfo);
-                try {
-                    bundleContext.addServiceListener(listenerInfo, classNameFilter);
-                } catch (InvalidSyntaxException e) {
-                    throw new IllegalArgumentException("invalid class name filter", e);
+                Matcher matcher = CLASS_NAME_FILTER.matcher(classNameFilter);
+                if (matcher.matches()) {
+                    listenerInfo.subscription = ServiceEventMultiplexer.subscribe(bundleContext,
+                        Collections.singleton(matcher.group(1)), listenerInfo);
+                } else {
+                    try {
+                        bundleContext.addServiceListener(listenerInfo, classNameFilter);
+                    } catch (InvalidSyntaxException e) {
+                        throw new IllegalArgumentException("invalid class name filter", e);
+                    }
                 }
             }
         }
@@ -391,7 +450,11 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
             if (listenerInfo != null) {
                 if (listenerInfo.remove(filter, listener)) {
                     listenerMap.remove(className);
-                    bundleContext.removeServiceListener(listenerInfo);
+                    if (listenerInfo.subscription != null) {
+                        listenerInfo.subscription.close();
+                    } else {
+                        bundleContext.removeServiceListener(listenerInfo);
+                    }
                 }
             }
         }
@@ -399,36 +462,31 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
 
     public Collection<ComponentHolder<?>> getComponentHoldersByPid(TargetedPID targetedPid) {
         String pid = targetedPid.getServicePid();
-        Set<ComponentHolder<?>> componentHoldersUsingPid = new HashSet<>();
-        synchronized (holdersByPid) {
-            Set<ComponentHolder<?>> set = holdersByPid.get(pid);
-            // only return the entry if non-null and not a reservation
-            if (set != null) {
-                for (ComponentHolder<?> holder : set) {
-                    if (targetedPid.matchesTarget(holder.getActivator().getBundleContext().getBundle())) {
-                        componentHoldersUsingPid.add(holder);
-                    }
-                }
-            }
+        List<ComponentHolder<?>> holders = holderIndex.byPid.get(pid);
+        if (holders == null) {
+            return Collections.emptyList();
         }
-        return componentHoldersUsingPid;
+        // all holders share the bundle of this registry
+        if (targetedPid.matchesTarget(bundleContext.getBundle())) {
+            return holders;
+        }
+        return Collections.emptyList();
     }
 
     public List<ComponentHolder<?>> getComponentHolders() {
-        synchronized (holdersByName) {
-            return new ArrayList<>(holdersByName.values());
-        }
+        return holderIndex.holders;
     }
 
     public ComponentHolder<?> getComponentHolder(String name) {
-        return holdersByName.get(name);
+        return holderIndex.byName.get(name);
     }
 
     public Collection<ComponentHolder<?>> getComponentHoldersByName(String name) {
+        HolderIndex index = holderIndex;
         if (name == null) {
-            return holders;
+            return index.holders;
         }
-        ComponentHolder<?> componentHolder = holdersByName.get(name);
+        ComponentHolder<?> componentHolder = index.byName.get(name);
         if (componentHolder != null) {
             return Collections.singletonList(componentHolder);
         }
@@ -488,9 +546,10 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
         log(level, message, arguments, null, 0L, ex);
     }
 
-    private static class ListenerInfo implements ServiceListener {
+    private class ListenerInfo implements ServiceListener {
 
         private Map<Filter, List<ExtendedServiceListener<ExtendedServiceEvent>>> filterMap = new HashMap<>();
+        private Subscription subscription;
 
         public void serviceChanged(ServiceEvent event) {
             ServiceReference<?> ref = event.getServiceReference();
@@ -524,6 +583,9 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
             if (endMatchEvent != null) {
                 endMatchEvent.activateManagers();
             }
+            if (extEvent != null || endMatchEvent != null) {
+                changed();
+            }
         }
 
         public synchronized void add(Filter filter, ExtendedServiceListener<ExtendedServiceEvent> listener) {
@@ -554,6 +616,45 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
         }
     }
 
+    /**
+     * The component holders, indexed by name and by configuration PID. The index is never
+     * modified, so lookups need no lock.
+     */
+    private static final class HolderIndex {
+
+        private final List<ComponentHolder<?>> holders;
+        private final Map<String, ComponentHolder<?>> byName;
+        private final Map<String, List<ComponentHolder<?>>> byPid;
+
+        HolderIndex() {
+            this.holders = Collections.emptyList();
+            this.byName = Collections.emptyMap();
+            this.byPid = Collections.emptyMap();
+        }
+
+        HolderIndex(List<ComponentHolder<?>> holders) {
+            Map<String, ComponentHolder<?>> byName = new HashMap<>();
+            Map<String, List<ComponentHolder<?>>> byPid = new HashMap<>();
+            for (ComponentHolder<?> h : holders) {
+                if (byName.put(h.getComponentMetadata().getName(), h) != null) {
+                    throw new ComponentException("The component name '{0}" + h.getComponentMetadata().getName() + "' has already been registered.");
+                }
+                for (String pid : h.getComponentMetadata().getConfigurationPid()) {
+                    List<ComponentHolder<?>> list = byPid.computeIfAbsent(pid, k -> new ArrayList<>());
+                    if (!list.contains(h)) {
+                        list.add(h);
+                    }
+                }
+            }
+            for (Map.Entry<String, List<ComponentHolder<?>>> entry : byPid.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            this.holders = Collections.unmodifiableList(new ArrayList<>(holders));
+            this.byName = Collections.unmodifiableMap(byName);
+            this.byPid = Collections.unmodifiableMap(byPid);
+        }
+    }
+
     private static class Entry {
         private final DependencyManager<?, ?> dm;
         private final int trackingCount;
@@ -604,6 +705,50 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
             return new CdiPrototypeComponentManager<>(this, componentMethods);
         }
 
+        @Override
+        public boolean configurationUpdated(TargetedPID pid, TargetedPID factoryPid, Dictionary<String, Object> props, long changeCount) {
+            configurationChanged();
+            try {
+                return super.configurationUpdated(pid, factoryPid, props, changeCount);
+            } finally {
+                changed(getActivator());
+            }
+        }
+
+        @Override
+        public void configurationDeleted(TargetedPID pid, TargetedPID factoryPid) {
+            configurationChanged();
+            try {
+                super.configurationDeleted(pid, factoryPid);
+            } finally {
+                changed(getActivator());
+            }
+        }
+
+        private void configurationChanged() {
+            if (getComponentMetadata() instanceof ComponentDescriptor) {
+                ((ComponentDescriptor) getComponentMetadata()).configurationChanged();
+            }
+        }
+
+        @Override
+        public Promise<Void> enableComponents(boolean async) {
+            try {
+                return super.enableComponents(async);
+            } finally {
+                changed(getActivator());
+            }
+        }
+
+        @Override
+        public Promise<Void> disableComponents(boolean async) {
+            try {
+                return super.disableComponents(async);
+            } finally {
+                changed(getActivator());
+            }
+        }
+
     }
 
     private static class EmptyMethods implements ComponentMethods, ReferenceMethods, ReferenceMethod {
@@ -705,12 +850,20 @@ public class ComponentRegistry implements ComponentActivator, SimpleLogger {
         componentContext.setImplementationObject( s );
         setter.accept(componentContext);
         componentContext.setImplementationAccessible( true );
+        changed(manager.getActivator());
         return s;
     }
 
     private static <S> void doDestroy(AbstractComponentManager<S> manager, ComponentContextImpl<S> componentContext) {
         AbstractDescriptor descriptor = (AbstractDescriptor) manager.getComponentMetadata();
         descriptor.deactivate(componentContext);
+        changed(manager.getActivator());
+    }
+
+    private static void changed(ComponentActivator activator) {
+        if (activator instanceof ComponentRegistry) {
+            ((ComponentRegistry) activator).changed();
+        }
     }
 
 
@@ -15,17 +15,18 @@
  */
 package org.ops4j.pax.cdi.extension.impl.context;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
 
 /**
- * Maps beans to scope entries and stores the creational context for bean references.
+ * Maps beans to scope entries and stores the creational context for bean references. The map is
+ * shared by all threads serving the same client bundle.
  *
  * @author Harald Wellmann
  *
  */
-public class BeanMap extends HashMap<Contextual<?>, SingletonScopeContextEntry<?>> {
+public class BeanMap extends ConcurrentHashMap<Contextual<?>, SingletonScopeContextEntry<?>> {
 
     private static final long serialVersionUID = 1L;
 
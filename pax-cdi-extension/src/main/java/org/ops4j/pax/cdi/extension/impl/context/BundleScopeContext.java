@@ -16,8 +16,8 @@
 package org.ops4j.pax.cdi.extension.impl.context;
 
 import java.lang.annotation.Annotation;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.enterprise.context.ContextNotActiveException;
 import javax.enterprise.context.spi.AlterableContext;
 import javax.enterprise.context.spi.Contextual;
@@ -30,6 +30,10 @@ import org.osgi.framework.Bundle;
 
 /**
  * Custom CDI context for OSGi service components.
+ * <p>
+ * Each client bundle has its own {@link BeanMap}. Lookups of existing instances do not lock, and
+ * each instance is created exactly once per client bundle, even if several threads of the same
+ * client request it concurrently.
  *
  * @author Harald Wellmann
  *
@@ -40,7 +44,7 @@ public class BundleScopeContext implements AlterableContext {
     private BeanManager beanManager;
 
     private ThreadLocal<Bundle> clientBundle;
-    private Map<Bundle, BeanMap> beanMaps;
+    private ConcurrentMap<Bundle, BeanMap> beanMaps;
 
     /**
      * Creates the bundle scope context for the current bean bundle.
@@ -51,7 +55,7 @@ public class BundleScopeContext implements AlterableContext {
     public BundleScopeContext(BeanManager beanManager) {
         this.beanManager = beanManager;
         this.clientBundle = new ThreadLocal<>();
-        this.beanMaps = new HashMap<>();
+        this.beanMaps = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -64,17 +68,28 @@ public class BundleScopeContext implements AlterableContext {
     public <T> T get(Contextual<T> component, CreationalContext<T> creationalContext) {
         BeanMap beanMap = getBeanMap(creationalContext);
 
-        SingletonScopeContextEntry serviceBean = beanMap.get(component);
-        if (serviceBean != null) {
-            return (T) serviceBean.getContextualInstance();
+        while (true) {
+            SingletonScopeContextEntry serviceBean = beanMap.get(component);
+            if (serviceBean == null) {
+                SingletonScopeContextEntry newBean = new SingletonScopeContextEntry(component,
+                    beanMap.getCreationalContext());
+                serviceBean = beanMap.putIfAbsent(component, newBean);
+                if (serviceBean == null) {
+                    try {
+                        return (T) newBean.create(creationalContext);
+                    }
+                    catch (RuntimeException | Error exc) {
+                        beanMap.remove(component, newBean);
+                        throw exc;
+                    }
+                }
+            }
+            if (serviceBean.awaitCreation()) {
+                return (T) serviceBean.getContextualInstance();
+            }
+            // creation failed in another thread, try again
+            beanMap.remove(component, serviceBean);
         }
-
-        T instance = component.create(creationalContext);
-        serviceBean = new SingletonScopeContextEntry(component, instance,
-            beanMap.getCreationalContext());
-        beanMap.put(component, serviceBean);
-
-        return instance;
     }
 
     @SuppressWarnings({ "unchecked" })
@@ -85,14 +100,17 @@ public class BundleScopeContext implements AlterableContext {
         }
         BeanMap beanMap = beanMaps.get(bundle);
         if (beanMap == null) {
-            beanMap = new BeanMap();
+            BeanMap newBeanMap = new BeanMap();
             if (creationalContext == null) {
-                beanMap.setCreationalContext(beanManager.createCreationalContext(null));
+                newBeanMap.setCreationalContext(beanManager.createCreationalContext(null));
             }
             else {
-                beanMap.setCreationalContext((CreationalContext<Object>) creationalContext);
+                newBeanMap.setCreationalContext((CreationalContext<Object>) creationalContext);
+            }
+            beanMap = beanMaps.putIfAbsent(bundle, newBeanMap);
+            if (beanMap == null) {
+                beanMap = newBeanMap;
             }
-            beanMaps.put(bundle, beanMap);
         }
         return beanMap;
     }
@@ -109,7 +127,7 @@ public class BundleScopeContext implements AlterableContext {
             throw new ContextNotActiveException();
         }
         SingletonScopeContextEntry serviceBean = beanMap.get(component);
-        if (serviceBean != null) {
+        if (serviceBean != null && serviceBean.isCreated()) {
             return (T) serviceBean.getContextualInstance();
         }
         return null;
@@ -127,7 +145,7 @@ public class BundleScopeContext implements AlterableContext {
             throw new ContextNotActiveException();
         }
         SingletonScopeContextEntry serviceBean = beanMap.remove(component);
-        if (serviceBean != null) {
+        if (serviceBean != null && serviceBean.awaitCreation()) {
             Object instance = serviceBean.getContextualInstance();
             CreationalContext cc = serviceBean.getCreationalContext();
             serviceBean.getBean().destroy(instance, cc);
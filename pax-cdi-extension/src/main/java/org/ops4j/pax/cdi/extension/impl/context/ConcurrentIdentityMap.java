@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl.context;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe map comparing keys by identity.
+ * <p>
+ * With weak keys, the map does not keep its keys reachable. Entries whose key has been garbage
+ * collected are removed on the next modification and handed to the reclaim callback. As with
+ * {@link java.util.WeakHashMap}, a value must not strongly reference its own key, otherwise the
+ * entry is never reclaimed.
+ *
+ * @param <V>
+ *            value type
+ */
+class ConcurrentIdentityMap<V> {
+
+    /**
+     * Key wrapper, comparing referents by identity.
+     */
+    private interface Key {
+
+        Object referent();
+    }
+
+    private static final class StrongKey implements Key {
+
+        private final Object referent;
+        private final int hash;
+
+        StrongKey(Object referent) {
+            this.referent = referent;
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public Object referent() {
+            return referent;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).referent() == referent;
+        }
+    }
+
+    private static final class WeakKey extends WeakReference<Object> implements Key {
+
+        private final int hash;
+
+        WeakKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public Object referent() {
+            return get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            Object referent = get();
+            return referent != null && obj instanceof Key && ((Key) obj).referent() == referent;
+        }
+    }
+
+    private final ConcurrentMap<Key, V> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue;
+    private final Consumer<V> reclaimer;
+
+    /**
+     * Creates a map with strong keys.
+     */
+    ConcurrentIdentityMap() {
+        this.queue = null;
+        this.reclaimer = null;
+    }
+
+    /**
+     * Creates a map with weak keys.
+     *
+     * @param reclaimer
+     *            receives the values of entries whose key has been garbage collected
+     */
+    ConcurrentIdentityMap(Consumer<V> reclaimer) {
+        this.queue = new ReferenceQueue<>();
+        this.reclaimer = reclaimer;
+    }
+
+    V put(Object key, V value) {
+        expunge();
+        return map.put(queue == null ? new StrongKey(key) : new WeakKey(key, queue), value);
+    }
+
+    V remove(Object key) {
+        expunge();
+        return map.remove(new StrongKey(key));
+    }
+
+    int size() {
+        expunge();
+        return map.size();
+    }
+
+    private void expunge() {
+        if (queue == null) {
+            return;
+        }
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            V value = map.remove(ref);
+            if (value != null) {
+                reclaimer.accept(value);
+            }
+        }
+    }
+}
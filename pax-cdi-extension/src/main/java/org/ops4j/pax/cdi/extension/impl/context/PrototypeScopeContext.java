@@ -16,8 +16,6 @@
 package org.ops4j.pax.cdi.extension.impl.context;
 
 import java.lang.annotation.Annotation;
-import java.util.IdentityHashMap;
-import java.util.Map;
 import javax.enterprise.context.spi.AlterableContext;
 import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
@@ -25,9 +23,15 @@ import javax.enterprise.inject.Typed;
 import javax.enterprise.inject.spi.BeanManager;
 
 import org.ops4j.pax.cdi.api.PrototypeScoped;
+import org.osgi.framework.BundleContext;
 
 /**
  * Custom CDI context for OSGi service components with prototype scope.
+ * <p>
+ * Instances are tracked by identity until they are destroyed. If the framework property
+ * {@link #RECLAIM_UNREFERENCED} is {@code true}, instances are tracked by weak references, and the
+ * creational context of an instance which was never destroyed is released once the instance has
+ * been garbage collected.
  *
  * @author Harald Wellmann
  *
@@ -35,7 +39,10 @@ import org.ops4j.pax.cdi.api.PrototypeScoped;
 @Typed()
 public class PrototypeScopeContext implements AlterableContext {
 
-    private Map<Object, CreationalContext<?>> instanceMap = new IdentityHashMap<>();
+    public static final String RECLAIM_UNREFERENCED = PrototypeScopeContext.class.getName()
+        + ".reclaimUnreferenced";
+
+    private ConcurrentIdentityMap<CreationalContext<?>> instanceMap;
     private BeanManager beanManager;
 
     private ThreadLocal<Object> service;
@@ -47,8 +54,38 @@ public class PrototypeScopeContext implements AlterableContext {
      *            bean manager of current bean bundle
      */
     public PrototypeScopeContext(BeanManager beanManager) {
+        this(beanManager, false);
+    }
+
+    /**
+     * Constructs a new prototype scope context, configured by the framework property
+     * {@link #RECLAIM_UNREFERENCED}.
+     *
+     * @param beanManager
+     *            bean manager of current bean bundle
+     * @param bundleContext
+     *            bundle context used to read the framework property
+     */
+    public PrototypeScopeContext(BeanManager beanManager, BundleContext bundleContext) {
+        this(beanManager, bundleContext != null
+            && Boolean.parseBoolean(bundleContext.getProperty(RECLAIM_UNREFERENCED)));
+    }
+
+    /**
+     * Constructs a new prototype scope context.
+     *
+     * @param beanManager
+     *            bean manager of current bean bundle
+     * @param reclaimUnreferenced
+     *            release the creational context of instances which are garbage collected without
+     *            having been destroyed
+     */
+    public PrototypeScopeContext(BeanManager beanManager, boolean reclaimUnreferenced) {
         this.beanManager = beanManager;
         this.service = new ThreadLocal<>();
+        this.instanceMap = reclaimUnreferenced
+            ? new ConcurrentIdentityMap<>(CreationalContext::release)
+            : new ConcurrentIdentityMap<>();
     }
 
     @Override
@@ -83,6 +120,16 @@ public class PrototypeScopeContext implements AlterableContext {
         return true;
     }
 
+    /**
+     * Returns the number of instances created by this context which have not been destroyed or
+     * reclaimed.
+     *
+     * @return number of tracked instances
+     */
+    public int getInstanceCount() {
+        return instanceMap.size();
+    }
+
     public CreationalContext<?> getCreationalContext() {
         return beanManager.createCreationalContext(null);
     }
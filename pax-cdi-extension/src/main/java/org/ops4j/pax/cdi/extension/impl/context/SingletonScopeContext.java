@@ -16,8 +16,9 @@
 package org.ops4j.pax.cdi.extension.impl.context;
 
 import java.lang.annotation.Annotation;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.enterprise.context.spi.AlterableContext;
 import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
@@ -28,6 +29,11 @@ import org.ops4j.pax.cdi.api.SingletonScoped;
 
 /**
  * Custom CDI context for OSGi service components with singleton scope.
+ * <p>
+ * Each instance is created exactly once, even if several threads request it concurrently. Threads
+ * losing the race wait for the instance created by the winner and release their own creational
+ * context. The number of such contended creations is available from
+ * {@link #getContendedCreations()} and from the runtime DTOs.
  *
  * @author Harald Wellmann
  *
@@ -35,7 +41,8 @@ import org.ops4j.pax.cdi.api.SingletonScoped;
 @Typed()
 public class SingletonScopeContext implements AlterableContext {
 
-    private Map<Contextual<?>, SingletonScopeContextEntry<?>> serviceBeans = new ConcurrentHashMap<>();
+    private ConcurrentMap<Contextual<?>, SingletonScopeContextEntry<?>> serviceBeans = new ConcurrentHashMap<>();
+    private final AtomicLong contendedCreations = new AtomicLong();
     private CreationalContext<Object> cc;
 
     /**
@@ -56,23 +63,43 @@ public class SingletonScopeContext implements AlterableContext {
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @Override
     public <T> T get(Contextual<T> component, CreationalContext<T> creationalContext) {
-        SingletonScopeContextEntry serviceBean = serviceBeans.get(component);
-        if (serviceBean != null) {
-            return (T) serviceBean.getContextualInstance();
+        while (true) {
+            SingletonScopeContextEntry serviceBean = serviceBeans.get(component);
+            if (serviceBean == null) {
+                SingletonScopeContextEntry newBean = new SingletonScopeContextEntry(component,
+                    creationalContext);
+                serviceBean = serviceBeans.putIfAbsent(component, newBean);
+                if (serviceBean == null) {
+                    try {
+                        return (T) newBean.create(creationalContext);
+                    }
+                    catch (RuntimeException | Error exc) {
+                        serviceBeans.remove(component, newBean);
+                        throw exc;
+                    }
+                }
+            }
+            boolean contended = !serviceBean.isCreated();
+            if (contended) {
+                contendedCreations.incrementAndGet();
+            }
+            if (serviceBean.awaitCreation()) {
+                if (contended && serviceBean.getCreationalContext() != creationalContext) {
+                    // the instance of another thread won, nothing depends on our context
+                    creationalContext.release();
+                }
+                return (T) serviceBean.getContextualInstance();
+            }
+            // creation failed in another thread, try again
+            serviceBeans.remove(component, serviceBean);
         }
-
-        T instance = component.create(creationalContext);
-        serviceBean = new SingletonScopeContextEntry(component, instance, creationalContext);
-        serviceBeans.put(component, serviceBean);
-
-        return instance;
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @Override
     public <T> T get(Contextual<T> component) {
         SingletonScopeContextEntry serviceBean = serviceBeans.get(component);
-        if (serviceBean != null) {
+        if (serviceBean != null && serviceBean.isCreated()) {
             return (T) serviceBean.getContextualInstance();
         }
         return null;
@@ -82,7 +109,7 @@ public class SingletonScopeContext implements AlterableContext {
     @Override
     public void destroy(Contextual<?> component) {
         SingletonScopeContextEntry serviceBean = serviceBeans.remove(component);
-        if (serviceBean != null) {
+        if (serviceBean != null && serviceBean.awaitCreation()) {
             Object instance = serviceBean.getContextualInstance();
             serviceBean.getBean().destroy(instance, serviceBean.getCreationalContext());
         }
@@ -93,6 +120,25 @@ public class SingletonScopeContext implements AlterableContext {
         return true;
     }
 
+    /**
+     * Returns the number of times a thread requested an instance which was still being created by
+     * another thread and had to wait for it.
+     *
+     * @return number of contended creations
+     */
+    public long getContendedCreations() {
+        return contendedCreations.get();
+    }
+
+    /**
+     * Returns the number of instances held, including instances being created.
+     *
+     * @return number of instances
+     */
+    public int getInstanceCount() {
+        return serviceBeans.size();
+    }
+
     @SuppressWarnings({ "unchecked" })
     public <S> CreationalContext<S> getCreationalContext() {
         return (CreationalContext<S>) cc;
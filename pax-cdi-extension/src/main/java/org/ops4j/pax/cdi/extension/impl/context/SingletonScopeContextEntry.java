@@ -21,6 +21,10 @@ import javax.enterprise.context.spi.CreationalContext;
 /**
  * An entry in the {@link SingletonScopeContext}, wrapping a managed bean, its contextual instance
  * and the creational context for this instance.
+ * <p>
+ * An entry may be published before its instance exists. The thread which published the entry
+ * creates the instance by {@link #create(CreationalContext)}, while other threads wait for the
+ * result in {@link #awaitCreation()}. Once the instance is created, reading it does not lock.
  *
  * @author Harald Wellmann
  *
@@ -28,9 +32,15 @@ import javax.enterprise.context.spi.CreationalContext;
  */
 public class SingletonScopeContextEntry<T> {
 
+    private static final int CREATING = 0;
+    private static final int CREATED = 1;
+    private static final int FAILED = 2;
+
     private Contextual<T> bean;
     private T contextualInstance;
     private CreationalContext<T> creationalContext;
+    private volatile int state;
+    private Thread creator;
 
     /**
      * Creates a context entry for the given bean, an intance of this bean and its creational
@@ -49,6 +59,23 @@ public class SingletonScopeContextEntry<T> {
         this.bean = bean;
         this.contextualInstance = contextualInstance;
         this.creationalContext = creationalContext;
+        this.state = CREATED;
+    }
+
+    /**
+     * Creates a context entry for the given bean whose instance is about to be created by the
+     * current thread.
+     *
+     * @param bean
+     *            bean with OSGi singleton scope
+     * @param creationalContext
+     *            creational context of instance
+     */
+    public SingletonScopeContextEntry(Contextual<T> bean, CreationalContext<T> creationalContext) {
+        this.bean = bean;
+        this.creationalContext = creationalContext;
+        this.creator = Thread.currentThread();
+        this.state = CREATING;
     }
 
     public Contextual<T> getBean() {
@@ -62,4 +89,70 @@ public class SingletonScopeContextEntry<T> {
     public CreationalContext<T> getCreationalContext() {
         return creationalContext;
     }
+
+    /**
+     * Checks if the instance of this entry has been created.
+     *
+     * @return true if the instance is available
+     */
+    public boolean isCreated() {
+        return state == CREATED;
+    }
+
+    /**
+     * Creates the instance of this entry and wakes up any waiting threads. Must only be called by
+     * the thread that constructed this entry.
+     *
+     * @param cc
+     *            creational context for creating the instance
+     * @return the new instance
+     */
+    public T create(CreationalContext<T> cc) {
+        boolean created = false;
+        try {
+            contextualInstance = bean.create(cc);
+            created = true;
+            return contextualInstance;
+        }
+        finally {
+            complete(created ? CREATED : FAILED);
+        }
+    }
+
+    /**
+     * Waits until the instance of this entry has been created by another thread.
+     *
+     * @return true if the instance was created, false if the creation failed
+     * @throws IllegalStateException
+     *             if the current thread is creating the instance of this entry
+     */
+    public boolean awaitCreation() {
+        if (state == CREATED) {
+            return true;
+        }
+        boolean interrupted = false;
+        synchronized (this) {
+            if (creator == Thread.currentThread()) {
+                throw new IllegalStateException("circular creation of " + bean);
+            }
+            while (state == CREATING) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException exc) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return state == CREATED;
+    }
+
+    private synchronized void complete(int newState) {
+        creator = null;
+        state = newState;
+        notifyAll();
+    }
 }
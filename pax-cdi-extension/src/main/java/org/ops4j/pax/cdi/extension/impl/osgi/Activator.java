@@ -19,6 +19,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.ops4j.pax.cdi.extension.api.runtime.CdiOsgiRuntime;
+import org.ops4j.pax.cdi.extension.impl.EventQueue;
+import org.ops4j.pax.cdi.extension.impl.component2.ComponentActor;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
@@ -46,6 +48,8 @@ public class Activator implements BundleActivator {
                 // Ignore
             }
         }
+        ComponentActor.shutdown();
+        EventQueue.shutdown();
     }
 
 }
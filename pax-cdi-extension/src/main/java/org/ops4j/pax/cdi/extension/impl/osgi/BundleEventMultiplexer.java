@@ -0,0 +1,285 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl.osgi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.util.tracker.BundleTracker;
+import org.osgi.util.tracker.BundleTrackerCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single bundle tracker shared by all CDI containers of a framework which observe bundle
+ * events.
+ * <p>
+ * The tracker is opened with the first subscription and closed with the last one. The tracker does
+ * not track any bundles, so every event of every bundle is received. An event is forwarded to the
+ * subscribers whose bundle context finds the bundle, so that bundle find hooks hiding a bundle
+ * from a subscribing bundle also hide its events. Events of uninstalled bundles are therefore
+ * not forwarded. The bundles already installed are only passed to a subscriber which asks for
+ * them when subscribing, with a {@code null} event, before the subscriber receives any event.
+ * <p>
+ * Events are forwarded without holding a lock, so a slow listener does not hold up the other
+ * subscribers or a subscription. Events received while a subscription replays the installed
+ * bundles are held back by that subscription and forwarded after the replay. A bundle installed
+ * during the replay may therefore be passed to the listener twice, with a {@code null} event
+ * and with its {@code INSTALLED} event.
+ */
+public final class BundleEventMultiplexer implements BundleTrackerCustomizer<Void> {
+
+    /**
+     * Receives bundle events.
+     */
+    public interface Listener {
+
+        /**
+         * Called for a bundle event, or with a {@code null} event for an installed bundle when
+         * subscribing.
+         *
+         * @param bundle
+         *            bundle
+         * @param event
+         *            bundle event, or {@code null}
+         */
+        void bundleChanged(Bundle bundle, BundleEvent event);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(BundleEventMultiplexer.class);
+
+    private static final int STATE_MASK = Bundle.INSTALLED | Bundle.UNINSTALLED | Bundle.STARTING
+        | Bundle.STOPPING | Bundle.RESOLVED | Bundle.ACTIVE;
+
+    /** multiplexers by system bundle */
+    private static final Map<Bundle, BundleEventMultiplexer> INSTANCES = new HashMap<>();
+
+    /**
+     * A subscription of a listener to bundle events.
+     */
+    public static final class Subscription {
+
+        private final BundleEventMultiplexer multiplexer;
+        private final BundleContext bundleContext;
+        private final Listener listener;
+        private volatile boolean closed;
+
+        /** events held back during the replay, {@code null} once the replay is done; guarded by itself */
+        private List<Object[]> pending;
+        private final Object lock = new Object();
+
+        private Subscription(BundleEventMultiplexer multiplexer, BundleContext bundleContext, Listener listener,
+            boolean replay) {
+            this.multiplexer = multiplexer;
+            this.bundleContext = bundleContext;
+            this.listener = listener;
+            this.pending = replay ? new ArrayList<>() : null;
+        }
+
+        private void replay() {
+            for (Bundle bundle : bundleContext.getBundles()) {
+                listener.bundleChanged(bundle, null);
+            }
+            while (true) {
+                List<Object[]> events;
+                synchronized (lock) {
+                    if (pending.isEmpty()) {
+                        pending = null;
+                        return;
+                    }
+                    events = pending;
+                    pending = new ArrayList<>();
+                }
+                for (Object[] event : events) {
+                    forward((Bundle) event[0], (BundleEvent) event[1]);
+                }
+            }
+        }
+
+        private void bundleChanged(Bundle bundle, BundleEvent event) {
+            synchronized (lock) {
+                if (pending != null) {
+                    pending.add(new Object[] { bundle, event });
+                    return;
+                }
+            }
+            forward(bundle, event);
+        }
+
+        private void forward(Bundle bundle, BundleEvent event) {
+            if (closed || !isVisible(bundle)) {
+                return;
+            }
+            try {
+                listener.bundleChanged(bundle, event);
+            }
+            catch (RuntimeException exc) {
+                LOG.error("bundle listener failed for event {} of bundle {}", event.getType(), bundle, exc);
+            }
+        }
+
+        private boolean isVisible(Bundle bundle) {
+            try {
+                return bundleContext.getBundle(bundle.getBundleId()) != null;
+            }
+            catch (IllegalStateException exc) {
+                // subscribing bundle stopped
+                return false;
+            }
+        }
+
+        /**
+         * Stops forwarding events to the listener. Calling this method more than once has no
+         * effect.
+         */
+        public void close() {
+            closed = true;
+            multiplexer.remove(this);
+        }
+    }
+
+    private final BundleTracker<Void> tracker;
+
+    private static final Subscription[] NONE = {};
+
+    /** copied on write while holding the monitor of the multiplexer */
+    private volatile Subscription[] subscriptions = NONE;
+
+    /** guarded by the monitor of the multiplexer */
+    private boolean closed;
+
+    private BundleEventMultiplexer(BundleContext systemContext) {
+        this.tracker = new BundleTracker<>(systemContext, STATE_MASK, this);
+    }
+
+    /**
+     * Subscribes a listener to the bundle events of the framework of the given bundle context.
+     *
+     * @param bundleContext
+     *            bundle context of the subscribing bundle
+     * @param listener
+     *            listener receiving the events
+     * @param replay
+     *            whether to pass the installed bundles to the listener
+     * @return subscription, to be closed when the listener is no longer needed
+     */
+    public static Subscription subscribe(BundleContext bundleContext, Listener listener, boolean replay) {
+        Bundle systemBundle = bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION);
+        while (true) {
+            BundleEventMultiplexer multiplexer;
+            synchronized (INSTANCES) {
+                multiplexer = INSTANCES.get(systemBundle);
+                if (multiplexer == null) {
+                    multiplexer = new BundleEventMultiplexer(systemBundle.getBundleContext());
+                    INSTANCES.put(systemBundle, multiplexer);
+                    multiplexer.tracker.open();
+                }
+            }
+            Subscription subscription = new Subscription(multiplexer, bundleContext, listener, replay);
+            synchronized (multiplexer) {
+                if (multiplexer.closed) {
+                    // closed by the last unsubscription in the meantime
+                    continue;
+                }
+                Subscription[] current = multiplexer.subscriptions;
+                Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = subscription;
+                multiplexer.subscriptions = updated;
+            }
+            if (replay) {
+                try {
+                    subscription.replay();
+                }
+                catch (RuntimeException | Error exc) {
+                    subscription.close();
+                    throw exc;
+                }
+            }
+            return subscription;
+        }
+    }
+
+    /**
+     * Returns the number of subscriptions to the multiplexer of the given framework.
+     *
+     * @param bundleContext
+     *            any bundle context of the framework
+     * @return number of subscriptions
+     */
+    public static int getSubscriptionCount(BundleContext bundleContext) {
+        Bundle systemBundle = bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION);
+        synchronized (INSTANCES) {
+            BundleEventMultiplexer multiplexer = INSTANCES.get(systemBundle);
+            return (multiplexer == null) ? 0 : multiplexer.subscriptions.length;
+        }
+    }
+
+    @Override
+    public Void addingBundle(Bundle bundle, BundleEvent event) {
+        if (event == null) {
+            // installed bundles when opening the tracker, replayed per subscription
+            return null;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.bundleChanged(bundle, event);
+        }
+        return null;
+    }
+
+    @Override
+    public void modifiedBundle(Bundle bundle, BundleEvent event, Void object) {
+        // no bundles are tracked
+    }
+
+    @Override
+    public void removedBundle(Bundle bundle, BundleEvent event, Void object) {
+        // no bundles are tracked
+    }
+
+    private void remove(Subscription subscription) {
+        synchronized (this) {
+            Subscription[] current = subscriptions;
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index < 0) {
+                return;
+            }
+            Subscription[] updated = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, updated.length - index);
+            subscriptions = updated;
+            if (updated.length > 0) {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (INSTANCES) {
+            INSTANCES.values().remove(this);
+        }
+        try {
+            tracker.close();
+        }
+        catch (IllegalStateException exc) {
+            // framework stopped, the listener is gone anyway
+        }
+    }
+}
@@ -22,7 +22,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.impl.manager.ComponentHolder;
 import org.apache.felix.scr.impl.manager.ComponentManager;
@@ -30,11 +34,17 @@ import org.apache.felix.scr.impl.manager.ReferenceManager;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
 import org.ops4j.pax.cdi.extension.api.runtime.CdiOsgiRuntime;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentActorDTO;
 import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentConfigurationDTO;
 import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentDescriptionDTO;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.EventQueueDTO;
 import org.ops4j.pax.cdi.extension.api.runtime.dto.ReferenceDTO;
 import org.ops4j.pax.cdi.extension.api.runtime.dto.SatisfiedReferenceDTO;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.SingletonScopeDTO;
 import org.ops4j.pax.cdi.extension.api.runtime.dto.UnsatisfiedReferenceDTO;
+import org.ops4j.pax.cdi.extension.impl.EventQueue;
+import org.ops4j.pax.cdi.extension.impl.component2.ComponentActor;
+import org.ops4j.pax.cdi.extension.impl.context.SingletonScopeContext;
 import org.ops4j.pax.cdi.extension.impl.component2.ComponentRegistry;
 import org.osgi.dto.DTO;
 import org.osgi.framework.Bundle;
@@ -44,12 +54,68 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.framework.dto.BundleDTO;
 import org.osgi.framework.dto.ServiceReferenceDTO;
 
+/**
+ * The runtime of all bean bundles.
+ * <p>
+ * Component description DTOs are built once per start of a bean bundle, and configuration DTOs
+ * are rebuilt only when the change count of their bean bundle has changed. The DTOs returned are
+ * shared snapshots.
+ */
 public class Registry implements CdiOsgiRuntime {
 
     private static final String[] EMPTY = {};
     private static final Registry INSTANCE = new Registry();
 
     private final List<ComponentRegistry> registries = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<Long, ComponentRegistry> registriesByBundleId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ComponentRegistry, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final List<EventQueue> eventQueues = new CopyOnWriteArrayList<>();
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * The description DTOs of the components of one bean bundle, and their cached configuration
+     * DTOs.
+     */
+    private static final class Snapshot {
+
+        private final List<ComponentHolder<?>> holders;
+        private final int bundleState;
+        private final long lastModified;
+        private final List<ComponentDescriptionDTO> descriptions;
+        private final Map<String, ComponentDescriptionDTO> descriptionsByName;
+        private final ConcurrentMap<String, Configurations> configurations = new ConcurrentHashMap<>();
+
+        Snapshot(List<ComponentHolder<?>> holders, Bundle bundle, List<ComponentDescriptionDTO> descriptions) {
+            this.holders = holders;
+            this.bundleState = bundle.getState();
+            this.lastModified = bundle.getLastModified();
+            this.descriptions = Collections.unmodifiableList(descriptions);
+            Map<String, ComponentDescriptionDTO> byName = new HashMap<>();
+            for (ComponentDescriptionDTO description : descriptions) {
+                byName.put(description.name, description);
+            }
+            this.descriptionsByName = byName;
+        }
+
+        boolean isCurrent(List<ComponentHolder<?>> currentHolders, Bundle bundle) {
+            return holders == currentHolders && bundleState == bundle.getState()
+                && lastModified == bundle.getLastModified();
+        }
+    }
+
+    /**
+     * The configuration DTOs of a component at a change count of its registry.
+     */
+    private static final class Configurations {
+
+        private final long changeCount;
+        private final List<ComponentConfigurationDTO> dtos;
+
+        Configurations(long changeCount, List<ComponentConfigurationDTO> dtos) {
+            this.changeCount = changeCount;
+            this.dtos = Collections.unmodifiableList(dtos);
+        }
+    }
 
     private Registry() {
     }
@@ -61,30 +127,118 @@ public class Registry implements CdiOsgiRuntime {
     public void register(ComponentRegistry componentRegistry) {
         if (!registries.contains(componentRegistry)) {
             registries.add(componentRegistry);
+            registriesByBundleId.put(componentRegistry.getBundleContext().getBundle().getBundleId(), componentRegistry);
+            changed();
         }
     }
 
     public void unregister(ComponentRegistry componentRegistry) {
-        registries.remove(componentRegistry);
+        if (registries.remove(componentRegistry)) {
+            registriesByBundleId.remove(componentRegistry.getBundleContext().getBundle().getBundleId(), componentRegistry);
+            snapshots.remove(componentRegistry);
+            changed();
+        }
+    }
+
+    public void register(EventQueue eventQueue) {
+        if (!eventQueues.contains(eventQueue)) {
+            eventQueues.add(eventQueue);
+        }
+    }
+
+    public void unregister(EventQueue eventQueue) {
+        eventQueues.remove(eventQueue);
+    }
+
+    /**
+     * Increments the change count, called after any change of a component registry.
+     */
+    public void changed() {
+        changeCount.incrementAndGet();
     }
 
     @Override
-    public Collection<ComponentDescriptionDTO> getComponentDescriptionDTOs(Bundle... bundles) {
-        Collection<ComponentDescriptionDTO> dtos = new ArrayList<>();
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    @Override
+    public Collection<EventQueueDTO> getEventQueueDTOs(Bundle... bundles) {
+        Collection<EventQueueDTO> dtos = new ArrayList<>();
+        for (EventQueue eventQueue : eventQueues) {
+            Bundle bundle = eventQueue.getBundle();
+            if (bundles.length == 0 || Arrays.asList(bundles).contains(bundle)) {
+                dtos.add(eventQueueToDTO(eventQueue));
+            }
+        }
+        return dtos;
+    }
+
+    @Override
+    public Collection<ComponentActorDTO> getComponentActorDTOs(Bundle... bundles) {
+        Collection<ComponentActorDTO> dtos = new ArrayList<>();
         for (ComponentRegistry registry : registries) {
             Bundle bundle = registry.getBundleContext().getBundle();
             if (bundles.length == 0 || Arrays.asList(bundles).contains(bundle)) {
-                for (ComponentHolder<?> holder : registry.getComponentHolders()) {
-                    dtos.add(holderToDescription(holder));
+                dtos.add(componentActorToDTO(bundle, registry.getComponentActor()));
+            }
+        }
+        return dtos;
+    }
+
+    @Override
+    public Collection<SingletonScopeDTO> getSingletonScopeDTOs(Bundle... bundles) {
+        Collection<SingletonScopeDTO> dtos = new ArrayList<>();
+        for (ComponentRegistry registry : registries) {
+            Bundle bundle = registry.getBundleContext().getBundle();
+            SingletonScopeContext context = registry.getSingletonScopeContext();
+            if (context != null && (bundles.length == 0 || Arrays.asList(bundles).contains(bundle))) {
+                dtos.add(singletonScopeToDTO(bundle, context));
+            }
+        }
+        return dtos;
+    }
+
+    @Override
+    public Collection<ComponentDescriptionDTO> getComponentDescriptionDTOs(Bundle... bundles) {
+        Collection<ComponentDescriptionDTO> dtos = new ArrayList<>();
+        if (bundles.length == 0) {
+            for (ComponentRegistry registry : registries) {
+                for (ComponentDescriptionDTO description : getSnapshot(registry).descriptions) {
+                    dtos.add(copy(description));
                 }
             }
         }
+        else {
+            for (Bundle bundle : bundles) {
+                dtos.addAll(getComponentDescriptionDTOs(bundle.getBundleId()));
+            }
+        }
+        return dtos;
+    }
+
+    @Override
+    public Collection<ComponentDescriptionDTO> getComponentDescriptionDTOs(long bundleId) {
+        ComponentRegistry registry = registriesByBundleId.get(bundleId);
+        if (registry == null) {
+            return Collections.emptyList();
+        }
+        List<ComponentDescriptionDTO> descriptions = getSnapshot(registry).descriptions;
+        List<ComponentDescriptionDTO> dtos = new ArrayList<>(descriptions.size());
+        for (ComponentDescriptionDTO description : descriptions) {
+            dtos.add(copy(description));
+        }
         return dtos;
     }
 
     @Override
     public ComponentDescriptionDTO getComponentDescriptionDTO(Bundle bundle, String name) {
-        return getComponentDescriptionDTO(bundle.getBundleId(), name);
+        ComponentRegistry registry = registriesByBundleId.get(bundle.getBundleId());
+        if (registry == null) {
+            return null;
+        }
+        ComponentDescriptionDTO description = getSnapshot(registry).descriptionsByName.get(name);
+        return (description == null) ? null : copy(description);
     }
 
     @Override
@@ -92,42 +246,93 @@ public class Registry implements CdiOsgiRuntime {
         if (description == null) {
             return Collections.emptyList();
         }
-        ComponentHolder<?> holder = getHolderFromDescription(description);
+        if (description.bundle == null) {
+            throw new IllegalArgumentException("No bundle supplied in ComponentDescriptionDTO named " + description.name);
+        }
+        ComponentRegistry registry = registriesByBundleId.get(description.bundle.id);
+        if (registry == null) {
+            return Collections.emptyList();
+        }
+        ComponentHolder<?> holder = registry.getComponentHolder(description.name);
         if (holder == null) {
             return Collections.emptyList();
         }
-        description = holderToDescription(holder);
-        List<? extends ComponentManager<?>> managers = holder.getComponents();
-        List<ComponentConfigurationDTO> result = new ArrayList<>(managers.size());
-        for (ComponentManager<?> manager : managers) {
-            result.add(managerToConfiguration(manager, description));
+        Snapshot snapshot = getSnapshot(registry);
+        // read before building, so that concurrent changes invalidate the result
+        long count = registry.getChangeCount();
+        Configurations configurations = snapshot.configurations.get(description.name);
+        if (configurations == null || configurations.changeCount != count) {
+            description = snapshot.descriptionsByName.get(description.name);
+            List<? extends ComponentManager<?>> managers = holder.getComponents();
+            List<ComponentConfigurationDTO> result = new ArrayList<>(managers.size());
+            for (ComponentManager<?> manager : managers) {
+                result.add(managerToConfiguration(manager, description));
+            }
+            configurations = new Configurations(count, result);
+            snapshot.configurations.put(description.name, configurations);
         }
-        return result;
+        List<ComponentConfigurationDTO> dtos = new ArrayList<>(configurations.dtos.size());
+        for (ComponentConfigurationDTO configuration : configurations.dtos) {
+            dtos.add(copy(configuration));
+        }
+        return dtos;
     }
 
-    private ComponentHolder<?> getHolderFromDescription(ComponentDescriptionDTO description) {
-        if (description.bundle == null) {
-            throw new IllegalArgumentException("No bundle supplied in ComponentDescriptionDTO named " + description.name);
-        }
-        long bundleId = description.bundle.id;
-        for (ComponentRegistry registry : registries) {
-            if (registry.getBundleContext().getBundle().getBundleId() == bundleId) {
-                return registry.getComponentHolder(description.name);
-            }
-        }
-        return null;
+    /**
+     * Copies a cached description, so that callers may modify the copy. The properties and
+     * arrays are copied, the bundle and reference DTOs are shared.
+     */
+    private static ComponentDescriptionDTO copy(ComponentDescriptionDTO cached) {
+        ComponentDescriptionDTO dto = new ComponentDescriptionDTO();
+        dto.activate = cached.activate;
+        dto.bundle = cached.bundle;
+        dto.configurationPid = cached.configurationPid.clone();
+        dto.configurationPolicy = cached.configurationPolicy;
+        dto.deactivate = cached.deactivate;
+        dto.defaultEnabled = cached.defaultEnabled;
+        dto.factory = cached.factory;
+        dto.immediate = cached.immediate;
+        dto.implementationClass = cached.implementationClass;
+        dto.modified = cached.modified;
+        dto.name = cached.name;
+        dto.properties = new HashMap<>(cached.properties);
+        dto.references = cached.references.clone();
+        dto.scope = cached.scope;
+        dto.serviceInterfaces = cached.serviceInterfaces.clone();
+        return dto;
     }
 
-    private ComponentDescriptionDTO getComponentDescriptionDTO(long bundleId, String name) {
-        for (ComponentRegistry registry : registries) {
-            if (registry.getBundleContext().getBundle().getBundleId() == bundleId) {
-                ComponentHolder<?> holder = registry.getComponentHolder(name);
-                if (holder != null) {
-                    return holderToDescription(holder);
-                }
+    /**
+     * Copies a cached configuration along with its description, so that callers may modify the
+     * copy. The properties and arrays are copied, the bundle and reference DTOs are shared.
+     */
+    private static ComponentConfigurationDTO copy(ComponentConfigurationDTO cached) {
+        ComponentConfigurationDTO dto = new ComponentConfigurationDTO();
+        dto.description = copy(cached.description);
+        dto.id = cached.id;
+        dto.properties = new HashMap<>(cached.properties);
+        dto.satisfiedReferences = cached.satisfiedReferences.clone();
+        dto.state = cached.state;
+        dto.unsatisfiedReferences = cached.unsatisfiedReferences.clone();
+        return dto;
+    }
+
+    private Snapshot getSnapshot(ComponentRegistry registry) {
+        Bundle bundle = registry.getBundleContext().getBundle();
+        List<ComponentHolder<?>> holders = registry.getComponentHolders();
+        Snapshot snapshot = snapshots.get(registry);
+        if (snapshot == null || !snapshot.isCurrent(holders, bundle)) {
+            List<ComponentDescriptionDTO> descriptions = new ArrayList<>(holders.size());
+            for (ComponentHolder<?> holder : holders) {
+                descriptions.add(holderToDescription(holder));
+            }
+            snapshot = new Snapshot(holders, bundle, descriptions);
+            snapshots.put(registry, snapshot);
+            if (!registries.contains(registry)) {
+                snapshots.remove(registry);
             }
         }
-        return null;
+        return snapshot;
     }
 
     private ComponentDescriptionDTO holderToDescription(ComponentHolder<?> holder) {
@@ -226,11 +431,45 @@ public class Registry implements CdiOsgiRuntime {
         return dtos;
     }
 
+    private EventQueueDTO eventQueueToDTO(EventQueue eventQueue) {
+        EventQueueDTO dto = new EventQueueDTO();
+        dto.bundle = bundleToDTO(eventQueue.getBundle());
+        dto.capacity = eventQueue.getCapacity();
+        dto.queueDepth = eventQueue.getQueueDepth();
+        dto.maxQueueDepth = eventQueue.getMaxQueueDepth();
+        dto.delivered = eventQueue.getDelivered();
+        dto.averageLatency = TimeUnit.NANOSECONDS.toMicros(eventQueue.getAverageLatency());
+        dto.maxLatency = TimeUnit.NANOSECONDS.toMicros(eventQueue.getMaxLatency());
+        return dto;
+    }
+
+    private ComponentActorDTO componentActorToDTO(Bundle bundle, ComponentActor actor) {
+        ComponentActorDTO dto = new ComponentActorDTO();
+        dto.bundle = bundleToDTO(bundle);
+        dto.queueLength = actor.getQueueLength();
+        dto.maxQueueLength = actor.getMaxQueueLength();
+        dto.executed = actor.getExecuted();
+        dto.averageLatency = TimeUnit.NANOSECONDS.toMicros(actor.getAverageLatency());
+        dto.maxLatency = TimeUnit.NANOSECONDS.toMicros(actor.getMaxLatency());
+        return dto;
+    }
+
+    private SingletonScopeDTO singletonScopeToDTO(Bundle bundle, SingletonScopeContext context) {
+        SingletonScopeDTO dto = new SingletonScopeDTO();
+        dto.bundle = bundleToDTO(bundle);
+        dto.instances = context.getInstanceCount();
+        dto.contendedCreations = context.getContendedCreations();
+        return dto;
+    }
+
     private BundleDTO bundleToDTO(BundleContext bundleContext) {
         if (bundleContext == null) {
             return null;
         }
-        Bundle bundle = bundleContext.getBundle();
+        return bundleToDTO(bundleContext.getBundle());
+    }
+
+    private BundleDTO bundleToDTO(Bundle bundle) {
         if (bundle == null) {
             return null;
         }
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl.osgi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.framework.AllServiceListener;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscriptions of CDI containers to service events, optionally through a single framework
+ * service listener shared by all containers of a framework.
+ * <p>
+ * By default, each subscription registers its own service listener with the bundle context of the
+ * subscribing bundle and an {@code objectClass} filter, so that the framework applies
+ * {@code EventListenerHook}s and {@code ServicePermission}s to the subscribing bundle.
+ * <p>
+ * With the framework property {@link #ENABLED} set to {@code true}, containers share one
+ * listener registered by the system bundle instead of registering one listener per container (and
+ * per component reference), each with its own filter to be evaluated by the framework. The
+ * multiplexer receives every service event once and forwards it to the subscribers of the event's
+ * {@code objectClass}es, using a class name index. Subscribers with no class names receive all
+ * service events. Events are only forwarded to a subscriber if the service classes are visible to
+ * the subscribing bundle, but the framework no longer knows the subscribing bundles: event listener
+ * hooks and service permissions are not applied to them. Only enable the shared listener in
+ * frameworks without such hooks and without security. The framework listener is registered with
+ * the first subscription and removed with the last one.
+ */
+public final class ServiceEventMultiplexer implements AllServiceListener {
+
+    /**
+     * Framework property for enabling the shared listener, defaults to {@code false}.
+     */
+    public static final String ENABLED = ServiceEventMultiplexer.class.getName() + ".enabled";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceEventMultiplexer.class);
+
+    /** multiplexers by system bundle */
+    private static final Map<Bundle, ServiceEventMultiplexer> INSTANCES = new HashMap<>();
+
+    private static final Subscription[] NONE = {};
+
+    /**
+     * Immutable snapshot of the subscriptions, replaced on every change.
+     */
+    private static final class Index {
+
+        private final Map<String, Subscription[]> byClassName;
+        private final Subscription[] any;
+
+        Index(Map<String, Subscription[]> byClassName, Subscription[] any) {
+            this.byClassName = byClassName;
+            this.any = any;
+        }
+    }
+
+    /**
+     * A subscription of a service listener to the events of some service classes.
+     */
+    public static final class Subscription {
+
+        private final ServiceEventMultiplexer multiplexer;
+        private final BundleContext bundleContext;
+        private final Set<String> classNames;
+        private final ServiceListener listener;
+        private volatile boolean closed;
+
+        private Subscription(ServiceEventMultiplexer multiplexer, BundleContext bundleContext,
+            Set<String> classNames, ServiceListener listener) {
+            this.multiplexer = multiplexer;
+            this.bundleContext = bundleContext;
+            this.classNames = classNames;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops forwarding events to the listener. Calling this method more than once has no
+         * effect.
+         */
+        public void close() {
+            closed = true;
+            if (multiplexer != null) {
+                multiplexer.remove(this);
+            }
+            else {
+                try {
+                    bundleContext.removeServiceListener(listener);
+                }
+                catch (IllegalStateException exc) {
+                    // bundle stopped, the listener is gone anyway
+                }
+            }
+        }
+
+        private boolean isAssignable(ServiceReference<?> reference, String[] objectClass) {
+            for (String className : objectClass) {
+                if (!reference.isAssignableTo(bundleContext.getBundle(), className)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final BundleContext systemContext;
+
+    /** subscriptions in subscription order, guarded by {@link #INSTANCES} */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private volatile Index index = new Index(Collections.emptyMap(), NONE);
+
+    private ServiceEventMultiplexer(BundleContext systemContext) {
+        this.systemContext = systemContext;
+    }
+
+    /**
+     * Subscribes a listener to the service events of the framework of the given bundle context.
+     *
+     * @param bundleContext
+     *            bundle context of the subscribing bundle
+     * @param classNames
+     *            service class names of interest, or {@code null} for all services
+     * @param listener
+     *            listener receiving the events
+     * @return subscription, to be closed when the listener is no longer needed
+     */
+    public static Subscription subscribe(BundleContext bundleContext, Collection<String> classNames,
+        ServiceListener listener) {
+        Set<String> names = (classNames == null) ? null
+            : Collections.unmodifiableSet(new LinkedHashSet<>(classNames));
+        if (!Boolean.parseBoolean(bundleContext.getProperty(ENABLED))) {
+            return subscribeDirectly(bundleContext, names, listener);
+        }
+        Bundle systemBundle = bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION);
+        synchronized (INSTANCES) {
+            ServiceEventMultiplexer multiplexer = INSTANCES.get(systemBundle);
+            if (multiplexer == null) {
+                multiplexer = new ServiceEventMultiplexer(systemBundle.getBundleContext());
+                multiplexer.systemContext.addServiceListener(multiplexer);
+                INSTANCES.put(systemBundle, multiplexer);
+            }
+            Subscription subscription = new Subscription(multiplexer, bundleContext, names, listener);
+            multiplexer.add(subscription);
+            return subscription;
+        }
+    }
+
+    private static Subscription subscribeDirectly(BundleContext bundleContext, Set<String> classNames,
+        ServiceListener listener) {
+        String filter = null;
+        if (classNames != null) {
+            StringBuilder sb = new StringBuilder("(|");
+            for (String className : classNames) {
+                sb.append('(').append(Constants.OBJECTCLASS).append('=').append(className).append(')');
+            }
+            filter = sb.append(')').toString();
+        }
+        try {
+            bundleContext.addServiceListener(listener, filter);
+        }
+        catch (InvalidSyntaxException exc) {
+            throw new IllegalArgumentException("invalid class name", exc);
+        }
+        return new Subscription(null, bundleContext, classNames, listener);
+    }
+
+    /**
+     * Returns the number of subscriptions to the multiplexer of the given framework.
+     *
+     * @param bundleContext
+     *            any bundle context of the framework
+     * @return number of subscriptions
+     */
+    public static int getSubscriptionCount(BundleContext bundleContext) {
+        Bundle systemBundle = bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION);
+        synchronized (INSTANCES) {
+            ServiceEventMultiplexer multiplexer = INSTANCES.get(systemBundle);
+            return (multiplexer == null) ? 0 : multiplexer.subscriptions.size();
+        }
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        Index current = index;
+        ServiceReference<?> reference = event.getServiceReference();
+        String[] objectClass = (String[]) reference.getProperty(Constants.OBJECTCLASS);
+        if (objectClass.length == 1) {
+            Subscription[] subscriptions = current.byClassName.get(objectClass[0]);
+            if (subscriptions != null) {
+                deliver(event, objectClass, Arrays.asList(subscriptions));
+            }
+        }
+        else {
+            // a subscription may be indexed under more than one of the service classes
+            Set<Subscription> subscriptions = null;
+            for (String className : objectClass) {
+                Subscription[] indexed = current.byClassName.get(className);
+                if (indexed != null) {
+                    if (subscriptions == null) {
+                        subscriptions = new LinkedHashSet<>();
+                    }
+                    Collections.addAll(subscriptions, indexed);
+                }
+            }
+            if (subscriptions != null) {
+                deliver(event, objectClass, subscriptions);
+            }
+        }
+        if (current.any.length > 0) {
+            deliver(event, objectClass, Arrays.asList(current.any));
+        }
+    }
+
+    private void deliver(ServiceEvent event, String[] objectClass, Collection<Subscription> subscriptions) {
+        ServiceReference<?> reference = event.getServiceReference();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.closed || !subscription.isAssignable(reference, objectClass)) {
+                continue;
+            }
+            try {
+                subscription.listener.serviceChanged(event);
+            }
+            catch (RuntimeException exc) {
+                LOG.error("service listener of bundle {} failed", subscription.bundleContext.getBundle(), exc);
+            }
+        }
+    }
+
+    private void add(Subscription subscription) {
+        subscriptions.add(subscription);
+        index = buildIndex(subscriptions);
+    }
+
+    private void remove(Subscription subscription) {
+        synchronized (INSTANCES) {
+            if (!subscriptions.remove(subscription)) {
+                return;
+            }
+            index = buildIndex(subscriptions);
+            if (subscriptions.isEmpty()) {
+                INSTANCES.values().remove(this);
+                try {
+                    systemContext.removeServiceListener(this);
+                }
+                catch (IllegalStateException exc) {
+                    // framework stopped, the listener is gone anyway
+                }
+            }
+        }
+    }
+
+    private static Index buildIndex(List<Subscription> subscriptions) {
+        Map<String, List<Subscription>> byClassName = new HashMap<>();
+        List<Subscription> any = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.classNames == null) {
+                any.add(subscription);
+            }
+            else {
+                for (String className : subscription.classNames) {
+                    byClassName.computeIfAbsent(className, k -> new ArrayList<>()).add(subscription);
+                }
+            }
+        }
+        Map<String, Subscription[]> arrays = new HashMap<>();
+        for (Map.Entry<String, List<Subscription>> entry : byClassName.entrySet()) {
+            arrays.put(entry.getKey(), entry.getValue().toArray(NONE));
+        }
+        return new Index(arrays, any.toArray(NONE));
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * A filter compiled into specialized matchers for the filters generated by pax-cdi, i.e. simple
+ * terms and conjunctions of simple terms. Equality, presence and {@code objectClass} terms are
+ * matched directly against the service properties, any other term is matched by a framework
+ * filter. Property values which would need type coercion, other than booleans, are matched by
+ * the framework filter of the whole expression.
+ * <p>
+ * Only {@link #match(ServiceReference)} is compiled, dictionaries and maps are matched by the
+ * framework filter. Identical filters are interned, so all components share one instance.
+ */
+public final class CompiledFilter implements Filter {
+
+    /** attribute name and value without escapes, whitespace or comparison operators */
+    private static final Pattern SIMPLE = Pattern.compile("\\(([^=~<>()*\\\\\\s]+)=([^=()\\\\\\s][^()\\\\\\s]*)\\)");
+
+    private static final int MAX_INTERNED = 4096;
+
+    private static final ConcurrentMap<String, CompiledFilter> INTERNED = new ConcurrentHashMap<>();
+
+    private static final int NO_MATCH = 0;
+    private static final int MATCH = 1;
+    private static final int UNDECIDED = 2;
+
+    /** term kinds, in order of evaluation */
+    private static final int OBJECT_CLASS = 0;
+    private static final int EQUALITY = 1;
+    private static final int PRESENCE = 2;
+    private static final int FRAMEWORK = 3;
+
+    private final Filter filter;
+    private final String filterString;
+    private final Term[] terms;
+
+    private CompiledFilter(Filter filter, Term[] terms) {
+        this.filter = filter;
+        this.filterString = filter.toString();
+        this.terms = terms;
+    }
+
+    /**
+     * Returns the compiled filter for the given filter string, shared with all other callers
+     * compiling the same string.
+     *
+     * @param filter
+     *            filter string
+     * @return compiled filter
+     * @throws InvalidSyntaxException
+     *             if the filter is invalid
+     */
+    public static CompiledFilter compile(String filter) throws InvalidSyntaxException {
+        CompiledFilter compiled = INTERNED.get(filter);
+        if (compiled == null) {
+            compiled = new CompiledFilter(FrameworkUtil.createFilter(filter), compileTerms(filter));
+            if (INTERNED.size() < MAX_INTERNED) {
+                CompiledFilter existing = INTERNED.putIfAbsent(filter, compiled);
+                if (existing != null) {
+                    compiled = existing;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    static int getInternedCount() {
+        return INTERNED.size();
+    }
+
+    /**
+     * Returns {@code true} if at least part of this filter is matched without the framework
+     * filter.
+     */
+    boolean isCompiled() {
+        return terms != null;
+    }
+
+    private static Term[] compileTerms(String filter) throws InvalidSyntaxException {
+        String trimmed = filter.trim();
+        if (trimmed.indexOf('\\') >= 0) {
+            return null;
+        }
+        Term term = compileSimpleTerm(trimmed);
+        if (term != null) {
+            return new Term[] { term };
+        }
+        if (!trimmed.startsWith("(&") || !trimmed.endsWith(")")) {
+            return null;
+        }
+        List<Term> terms = new ArrayList<>();
+        boolean compiled = false;
+        int depth = 0;
+        int start = -1;
+        for (int i = 2; i < trimmed.length() - 1; i++) {
+            char c = trimmed.charAt(i);
+            if (c == '(') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            }
+            else if (c == ')') {
+                if (--depth == 0) {
+                    String operand = trimmed.substring(start, i + 1);
+                    term = compileSimpleTerm(operand);
+                    if (term == null) {
+                        term = new Term(FRAMEWORK, null, null, FrameworkUtil.createFilter(operand));
+                    }
+                    else {
+                        compiled = true;
+                    }
+                    terms.add(term);
+                }
+            }
+            else if (depth == 0 && !Character.isWhitespace(c)) {
+                return null;
+            }
+        }
+        if (!compiled || depth != 0) {
+            return null;
+        }
+        // cheaper terms first, the sort is stable
+        Collections.sort(terms, (t1, t2) -> Integer.compare(t1.kind, t2.kind));
+        return terms.toArray(new Term[terms.size()]);
+    }
+
+    private static Term compileSimpleTerm(String term) {
+        Matcher matcher = SIMPLE.matcher(term);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String key = matcher.group(1);
+        String value = matcher.group(2);
+        if (value.equals("*")) {
+            return new Term(PRESENCE, key, null, null);
+        }
+        if (value.indexOf('*') >= 0) {
+            return null;
+        }
+        if (key.equalsIgnoreCase(Constants.OBJECTCLASS)) {
+            return new Term(OBJECT_CLASS, Constants.OBJECTCLASS, value, null);
+        }
+        return new Term(EQUALITY, key, value, null);
+    }
+
+    @Override
+    public boolean match(ServiceReference<?> reference) {
+        if (terms == null) {
+            return filter.match(reference);
+        }
+        for (Term term : terms) {
+            switch (term.match(reference)) {
+                case NO_MATCH:
+                    return false;
+                case UNDECIDED:
+                    return filter.match(reference);
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean match(Dictionary<String, ?> dictionary) {
+        return filter.match(dictionary);
+    }
+
+    @Override
+    public boolean matchCase(Dictionary<String, ?> dictionary) {
+        return filter.matchCase(dictionary);
+    }
+
+    @Override
+    public boolean matches(Map<String, ?> map) {
+        return filter.matches(map);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this || (obj instanceof Filter && filterString.equals(obj.toString()));
+    }
+
+    @Override
+    public int hashCode() {
+        return filterString.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return filterString;
+    }
+
+    /**
+     * A term of a conjunction. There is a single term class, so that matching does not need
+     * virtual calls.
+     */
+    private static final class Term {
+
+        private final int kind;
+        private final String key;
+        private final String value;
+        private final Boolean booleanValue;
+        private final Filter filter;
+
+        Term(int kind, String key, String value, Filter filter) {
+            this.kind = kind;
+            this.key = key;
+            this.value = value;
+            this.booleanValue = (value == null) ? null : Boolean.valueOf(value);
+            this.filter = filter;
+        }
+
+        /**
+         * Returns {@code MATCH}, {@code NO_MATCH} or {@code UNDECIDED} if the property type is
+         * not supported.
+         */
+        int match(ServiceReference<?> reference) {
+            if (kind == FRAMEWORK) {
+                return filter.match(reference) ? MATCH : NO_MATCH;
+            }
+            Object property = reference.getProperty(key);
+            if (property == null) {
+                return NO_MATCH;
+            }
+            if (kind == PRESENCE) {
+                return MATCH;
+            }
+            // exact class checks first, they are cheaper than interface checks
+            if (property instanceof String) {
+                return value.equals(property) ? MATCH : NO_MATCH;
+            }
+            if (property instanceof Boolean) {
+                return booleanValue.equals(property) ? MATCH : NO_MATCH;
+            }
+            if (property instanceof String[]) {
+                for (String element : (String[]) property) {
+                    if (value.equals(element)) {
+                        return MATCH;
+                    }
+                }
+                return NO_MATCH;
+            }
+            if (kind == OBJECT_CLASS) {
+                return UNDECIDED;
+            }
+            if (property instanceof Collection) {
+                int result = NO_MATCH;
+                for (Object element : (Collection<?>) property) {
+                    int elementResult = matchScalar(element);
+                    if (elementResult == MATCH) {
+                        return MATCH;
+                    }
+                    if (elementResult == UNDECIDED) {
+                        result = UNDECIDED;
+                    }
+                }
+                return result;
+            }
+            return matchScalar(property);
+        }
+
+        private int matchScalar(Object property) {
+            if (property instanceof String) {
+                return value.equals(property) ? MATCH : NO_MATCH;
+            }
+            if (property instanceof Boolean) {
+                return booleanValue.equals(property) ? MATCH : NO_MATCH;
+            }
+            return UNDECIDED;
+        }
+    }
+}
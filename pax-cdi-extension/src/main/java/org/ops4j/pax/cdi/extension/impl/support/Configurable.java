@@ -22,6 +22,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,6 +40,8 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Provides a way for creating type-safe configurations from a {@link Map} or {@link Dictionary}.
@@ -94,33 +97,140 @@ public final class Configurable {
     private static final Float DEFAULT_FLOAT = 0.0f;
     private static final Double DEFAULT_DOUBLE = 0.0;
 
+    private static final Object NULL = new Object();
+
+    private static final ClassValue<ConcurrentMap<Method, MethodPlan>> PLANS = new ClassValue<ConcurrentMap<Method, MethodPlan>>() {
+        @Override
+        protected ConcurrentMap<Method, MethodPlan> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     private Configurable() {
     }
 
+    /**
+     * The parts of a configuration method call which do not depend on the configuration, shared by all proxies of a
+     * configuration type.
+     */
+    static final class MethodPlan {
+        final String m_name;
+        final Type m_type;
+        final boolean m_scalar;
+        final Object m_defaultValue;
+
+        MethodPlan(Method method, ConfigHandler handler) throws Exception {
+            m_name = ConfigHandler.getPropertyName(method.getName());
+            m_type = method.getGenericReturnType();
+            m_scalar = isScalar(m_type);
+            // conversion of scalar defaults does not look at the configuration
+            m_defaultValue = m_scalar ? handler.getDefaultValue(method, m_name) : null;
+        }
+
+        static MethodPlan of(Method method, ConfigHandler handler) throws Exception {
+            ConcurrentMap<Method, MethodPlan> plans = PLANS.get(method.getDeclaringClass());
+            MethodPlan plan = plans.get(method);
+            if (plan == null) {
+                plan = new MethodPlan(method, handler);
+                MethodPlan existing = plans.putIfAbsent(method, plan);
+                if (existing != null) {
+                    plan = existing;
+                }
+            }
+            return plan;
+        }
+
+        private static boolean isScalar(Type type) {
+            if (!(type instanceof Class)) {
+                return false;
+            }
+            Class<?> cls = (Class<?>) type;
+            return cls.isPrimitive() || cls == String.class || cls == Boolean.class || cls == Class.class
+                || Number.class.isAssignableFrom(cls) || cls.isEnum();
+        }
+    }
+
     static class ConfigHandler implements InvocationHandler {
         private final ClassLoader m_cl;
         private final Map<?, ?> m_config;
+        private final boolean m_snapshot;
+        private final ConcurrentMap<Method, Object> m_values = new ConcurrentHashMap<>();
 
         ConfigHandler(ClassLoader cl, Map<?, ?> config) {
+            this(cl, config, false);
+        }
+
+        ConfigHandler(ClassLoader cl, Map<?, ?> config, boolean snapshot) {
             m_cl = cl;
             m_config = config;
+            m_snapshot = snapshot;
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            String name = getPropertyName(method.getName());
+            Object result = m_values.get(method);
+            if (result == null) {
+                result = resolve(method);
+                m_values.putIfAbsent(method, result);
+            }
+            if (result == NULL) {
+                return null;
+            }
+            if (result instanceof CopyOnRead) {
+                return ((CopyOnRead) result).copy();
+            }
+            return result;
+        }
 
-            Object result = convert(method.getGenericReturnType(), name, m_config.get(name), false /* useImplicitDefault */);
+        /**
+         * Converts the value of a method for caching, returning {@link Configurable#NULL} for <code>null</code>.
+         */
+        private Object resolve(Method method) throws Exception {
+            MethodPlan plan = MethodPlan.of(method, this);
+            Object value = m_config.get(plan.m_name);
+            Object result = convert(plan.m_type, plan.m_name, value, false /* useImplicitDefault */);
             if (result == null) {
-                Object defaultValue = getDefaultValue(method, name);
-                if (defaultValue != null) {
-                    return defaultValue;
+                result = plan.m_scalar ? plan.m_defaultValue : getDefaultValue(method, plan.m_name);
+            }
+            if (result == null) {
+                return NULL;
+            }
+            // arrays, collections and maps created by the conversion must not be modified by callers
+            if (result != value) {
+                if (result.getClass().isArray()) {
+                    return new CopyOnRead(result);
+                }
+                if (result instanceof Collection || result instanceof Map) {
+                    return unmodifiable(method.getReturnType(), result);
                 }
             }
-
             return result;
         }
 
+        /**
+         * Wraps a converted collection or map in an unmodifiable view when the return type allows it, and falls back
+         * to copying on each access for queues and concrete classes.
+         */
+        @SuppressWarnings("unchecked")
+        private static Object unmodifiable(Class<?> type, Object value) {
+            if (type == Collection.class || type == List.class) {
+                return Collections.unmodifiableList((List<Object>) value);
+            }
+            if (type == Set.class) {
+                return Collections.unmodifiableSet((Set<Object>) value);
+            }
+            if (type == SortedSet.class) {
+                return Collections.unmodifiableSortedSet((SortedSet<Object>) value);
+            }
+            if (type == Map.class) {
+                return Collections.unmodifiableMap((Map<Object, Object>) value);
+            }
+            if (type == SortedMap.class) {
+                return Collections.unmodifiableSortedMap((SortedMap<Object, Object>) value);
+            }
+            return new CopyOnRead(value);
+        }
+
         @SuppressWarnings("unchecked")
         private Object convert(ParameterizedType type, String key, Object value) throws Exception {
             Class<?> resultType = (Class<?>) type.getRawType();
@@ -146,7 +256,7 @@ public final class Configurable {
                     throw new RuntimeException("Unknown collection interface: " + resultType);
                 }
 
-                Collection<Object> result = (Collection<Object>) resultType.newInstance();
+                Collection<Object> result = (Collection<Object>) resultType.getDeclaredConstructor().newInstance();
                 if (input != null) {
                     Type componentType = type.getActualTypeArguments()[0];
                     for (Object i : input) {
@@ -168,7 +278,7 @@ public final class Configurable {
                     throw new RuntimeException("Unknown map interface: " + resultType);
                 }
 
-                Map<Object, Object> result = (Map<Object, Object>) resultType.newInstance();
+                Map<Object, Object> result = (Map<Object, Object>) resultType.getDeclaredConstructor().newInstance();
                 Type keyType = type.getActualTypeArguments()[0];
                 Type valueType = type.getActualTypeArguments()[1];
 
@@ -279,7 +389,7 @@ public final class Configurable {
             }
             else if (resultType.isInterface()) {
                 Map<?, ?> map = toMap(key, value);
-                return create(resultType, map);
+                return m_snapshot ? snapshot(resultType, map) : create(resultType, map);
             }
 
             throw new RuntimeException("Unhandled type: " + type);
@@ -406,7 +516,7 @@ public final class Configurable {
             return result;
         }
 
-        private String getPropertyName(String id) {
+        private static String getPropertyName(String id) {
             StringBuilder sb = new StringBuilder(id);
             if (id.startsWith("get")) {
                 sb.delete(0, 3);
@@ -422,6 +532,99 @@ public final class Configurable {
         }
     }
 
+    /**
+     * A cached array, or a collection or map of a type without an unmodifiable view, which is copied on each access.
+     */
+    static final class CopyOnRead {
+        private final Object m_value;
+
+        CopyOnRead(Object value) {
+            m_value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        Object copy() throws Exception {
+            if (m_value instanceof Collection) {
+                Collection<Object> copy = (Collection<Object>) m_value.getClass().getDeclaredConstructor().newInstance();
+                copy.addAll((Collection<?>) m_value);
+                return copy;
+            }
+            if (m_value instanceof Map) {
+                Map<Object, Object> copy = (Map<Object, Object>) m_value.getClass().getDeclaredConstructor().newInstance();
+                copy.putAll((Map<?, ?>) m_value);
+                return copy;
+            }
+            int length = Array.getLength(m_value);
+            Object copy = Array.newInstance(m_value.getClass().getComponentType(), length);
+            System.arraycopy(m_value, 0, copy, 0, length);
+            return copy;
+        }
+    }
+
+    /**
+     * Converts all values of a configuration type in advance into an array indexed like the members of the type, so
+     * that later calls only look up the member index and read the array.
+     * <p>
+     * The accessors still go through a JDK proxy, as this bundle does not generate classes. Annotation members have
+     * no parameters and unique names, and {@link Method#getName()} returns interned strings, so the index is found by
+     * comparing names by identity instead of hashing the method.
+     * </p>
+     */
+    static class SnapshotHandler implements InvocationHandler {
+        private static final ClassValue<String[]> MEMBERS = new ClassValue<String[]>() {
+            @Override
+            protected String[] computeValue(Class<?> type) {
+                Method[] methods = type.getDeclaredMethods();
+                String[] names = new String[methods.length];
+                for (int i = 0; i < methods.length; i++) {
+                    names[i] = methods[i].getName();
+                }
+                return names;
+            }
+        };
+
+        private final ConfigHandler m_handler;
+        private final String[] m_names;
+        private final Object[] m_values;
+
+        SnapshotHandler(Class<?> type, ConfigHandler handler) {
+            m_handler = handler;
+            m_names = MEMBERS.get(type);
+            m_values = new Object[m_names.length];
+            for (int i = 0; i < m_names.length; i++) {
+                try {
+                    m_values[i] = handler.resolve(type.getDeclaredMethod(m_names[i]));
+                }
+                catch (RuntimeException | Error exc) {
+                    throw exc;
+                }
+                catch (Exception exc) {
+                    throw new UndeclaredThrowableException(exc);
+                }
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (args == null) {
+                String name = method.getName();
+                for (int i = 0; i < m_names.length; i++) {
+                    if (m_names[i] == name) {
+                        Object result = m_values[i];
+                        if (result == NULL) {
+                            return null;
+                        }
+                        if (result instanceof CopyOnRead) {
+                            return ((CopyOnRead) result).copy();
+                        }
+                        return result;
+                    }
+                }
+            }
+            return m_handler.invoke(proxy, method, args);
+        }
+    }
+
     /**
      * Creates a configuration for a given type backed by a given dictionary.
      * 
@@ -435,19 +638,50 @@ public final class Configurable {
             Object key = e.nextElement();
             map.put(key, config.get(key));
         }
-        return create(type, map);
+        return wrap(type, map);
     }
 
     /**
      * Creates a configuration for a given type backed by a given map.
+     * <p>
+     * The map is copied, so later changes to it are not seen by the returned instance. Each value is converted on
+     * first access and cached. Arrays are copied on each access, collections and maps are returned as unmodifiable
+     * views.
+     * </p>
      * 
      * @param type the configuration class, cannot be <code>null</code>;
      * @param config the configuration to wrap, cannot be <code>null</code>.
      * @return an instance of the given type that wraps the given configuration.
      */
     public static <T> T create(Class<T> type, Map<?, ?> config) {
+        return wrap(type, new HashMap<>(config));
+    }
+
+    private static <T> T wrap(Class<T> type, Map<?, ?> config) {
         ClassLoader cl = type.getClassLoader();
         Object result = Proxy.newProxyInstance(cl, new Class<?>[] { type }, new ConfigHandler(cl, config));
         return type.cast(result);
     }
+
+    /**
+     * Creates an immutable configuration for a given annotation type from a given map.
+     * <p>
+     * Unlike {@link #create(Class, Map)}, all values are converted when the snapshot is created instead of on first
+     * access, so conversion errors are reported immediately.
+     * </p>
+     * 
+     * @param type the configuration annotation type, cannot be <code>null</code>;
+     * @param config the configuration to convert, cannot be <code>null</code>.
+     * @return an instance of the given type holding the converted configuration.
+     * @throws IllegalArgumentException if the given type is not an annotation type.
+     */
+    public static <T> T snapshot(Class<T> type, Map<?, ?> config) {
+        if (!type.isAnnotation()) {
+            throw new IllegalArgumentException("Configuration snapshots require an annotation type: " + type.getName());
+        }
+        ClassLoader cl = type.getClassLoader();
+        ConfigHandler handler = new ConfigHandler(cl, config, true);
+        Object result = Proxy.newProxyInstance(cl, new Class<?>[] { type }, new SnapshotHandler(type, handler));
+        return type.cast(result);
+    }
 }
@@ -19,13 +19,21 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -35,6 +43,7 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.PrototypeServiceFactory;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceListener;
@@ -42,13 +51,30 @@ import org.osgi.framework.ServiceObjects;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 
+/**
+ * A bundle context with a private service registry for the services registered with the
+ * {@value #PRIVATE} property, which are only visible through this context. All other calls are
+ * delegated to the bundle context of the bean bundle.
+ * <p>
+ * Private registrations and listeners are indexed by the service class name, taken from the
+ * registration or from a leading {@code objectClass} term of the filter. Filters are shared
+ * {@link CompiledFilter}s.
+ */
 public class PrivateRegistryWrapper implements BundleContext {
 
     public static final String PRIVATE = "org.ops4j.pax.cdi.private";
 
+    /**
+     * Matches a filter with a top-level {@code objectClass} equality term in first position.
+     */
+    private static final Pattern CLASS_NAME_FILTER = Pattern.compile("^\\((?:&\\()?objectClass=([^()*\\\\]+)\\)");
+
     private final BundleContext delegate;
     private final List<PrivateServiceRegistration<?>> registrations = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, List<PrivateServiceRegistration<?>>> registrationsByClass = new ConcurrentHashMap<>();
+    /** listeners whose filter does not name a service class */
     private final List<ListenerInfo> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, List<ListenerInfo>> listenersByClass = new ConcurrentHashMap<>();
 
     private final AtomicLong privateServiceId = new AtomicLong(0);
 
@@ -118,31 +144,74 @@ public class PrivateRegistryWrapper implements BundleContext {
         }
     }
 
+    private Filter getFilter(String filter) throws InvalidSyntaxException {
+        return CompiledFilter.compile(filter);
+    }
+
+    private static String getClassName(String filter) {
+        Matcher matcher = CLASS_NAME_FILTER.matcher(filter);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
     private void addPrivateServiceListener(ServiceListener listener, String filter) throws InvalidSyntaxException {
-        Filter flt = delegate.createFilter(filter);
-        listeners.add(new ListenerInfo(listener, flt));
+        ListenerInfo listenerInfo = new ListenerInfo(listener, getFilter(filter));
+        String className = getClassName(filter);
+        if (className == null) {
+            listeners.add(listenerInfo);
+        } else {
+            listenersByClass.computeIfAbsent(className, k -> new CopyOnWriteArrayList<>()).add(listenerInfo);
+        }
     }
 
     private void removePrivateServiceListener(ServiceListener listener) {
         listeners.removeIf(listenerInfo -> listenerInfo.listener == listener);
+        for (List<ListenerInfo> infos : listenersByClass.values()) {
+            infos.removeIf(listenerInfo -> listenerInfo.listener == listener);
+        }
     }
 
-    private <S> ServiceRegistration<S> registerPrivate(String[] clazzes, Object svc, Dictionary<String, ?> properties) {
-        PrivateServiceRegistration<S> reg = new PrivateServiceRegistration<>(clazzes, svc, properties);
-        registrations.add(reg);
-        ServiceEvent event = new ServiceEvent(ServiceEvent.REGISTERED, reg);
+    private void firePrivateServiceEvent(int type, PrivateServiceRegistration<?> reg) {
+        ServiceEvent event = new ServiceEvent(type, reg);
+        Collection<ListenerInfo> infos;
+        if (reg.clazzes.length == 1) {
+            infos = listenersByClass.getOrDefault(reg.clazzes[0], Collections.emptyList());
+        } else {
+            // a listener may be indexed under more than one of the service classes
+            infos = new LinkedHashSet<>();
+            for (String clazz : reg.clazzes) {
+                infos.addAll(listenersByClass.getOrDefault(clazz, Collections.emptyList()));
+            }
+        }
+        for (ListenerInfo li : infos) {
+            if (li.filter.match(reg)) {
+                li.listener.serviceChanged(event);
+            }
+        }
         for (ListenerInfo li : listeners) {
             if (li.filter.match(reg)) {
                 li.listener.serviceChanged(event);
             }
         }
+    }
+
+    private <S> ServiceRegistration<S> registerPrivate(String[] clazzes, Object svc, Dictionary<String, ?> properties) {
+        PrivateServiceRegistration<S> reg = new PrivateServiceRegistration<>(clazzes, svc, properties);
+        registrations.add(reg);
+        for (String clazz : clazzes) {
+            registrationsByClass.computeIfAbsent(clazz, k -> new CopyOnWriteArrayList<>()).add(reg);
+        }
+        firePrivateServiceEvent(ServiceEvent.REGISTERED, reg);
         return reg;
     }
 
     private ServiceReference<?>[] getPrivateServiceReferences(String clazz, String filter) throws InvalidSyntaxException {
-        Filter flt = delegate.createFilter(clazz != null ? "(&(objectClass=" + clazz + ")" + filter + ")" : filter);
+        Filter flt = getFilter(filter);
+        String className = (clazz != null) ? clazz : getClassName(filter);
+        List<PrivateServiceRegistration<?>> candidates = (className != null)
+            ? registrationsByClass.getOrDefault(className, Collections.emptyList())
+            : registrations;
         List<ServiceReference<?>> refs = new ArrayList<>();
-        for (PrivateServiceRegistration<?> reg : registrations) {
+        for (PrivateServiceRegistration<?> reg : candidates) {
             if (flt.match(reg)) {
                 refs.add(reg);
             }
@@ -151,25 +220,25 @@ public class PrivateRegistryWrapper implements BundleContext {
     }
 
     private <S> S getPrivateService(ServiceReference<S> reference) {
-        PrivateServiceRegistration<S> reg = (PrivateServiceRegistration<S>) reference;
-        if (reg.service instanceof ServiceFactory) {
-            return (S) ((ServiceFactory) reg.service).getService(getBundle(), reg);
-        }
-        return (S) reg.service;
+        return ((PrivateServiceRegistration<S>) reference).getService(getBundle());
     }
 
     private <S> void unregisterPrivate(PrivateServiceRegistration<S> reg) {
-        registrations.remove(reg);
-        ServiceEvent event = new ServiceEvent(ServiceEvent.UNREGISTERING, reg);
-        for (ListenerInfo li : listeners) {
-            if (li.filter.match(reg)) {
-                li.listener.serviceChanged(event);
+        if (!registrations.remove(reg)) {
+            return;
+        }
+        for (String clazz : reg.clazzes) {
+            List<PrivateServiceRegistration<?>> regs = registrationsByClass.get(clazz);
+            if (regs != null) {
+                regs.remove(reg);
             }
         }
+        firePrivateServiceEvent(ServiceEvent.UNREGISTERING, reg);
+        reg.unregistered();
     }
 
     private boolean ungetPrivateService(ServiceReference<?> reference) {
-        return false;
+        return ((PrivateServiceRegistration<?>) reference).ungetService(getBundle());
     }
 
     @Override
@@ -274,7 +343,7 @@ public class PrivateRegistryWrapper implements BundleContext {
 
     @Override
     public Filter createFilter(String filter) throws InvalidSyntaxException {
-        return delegate.createFilter(filter);
+        return CompiledFilter.compile(filter);
     }
 
     @Override
@@ -284,9 +353,15 @@ public class PrivateRegistryWrapper implements BundleContext {
 
     class PrivateServiceRegistration<S> implements ServiceRegistration<S>, ServiceReference<S> {
 
+        private final String[] clazzes;
         private final Hashtable<String, ?> properties;
         private final Object service;
 
+        /** service object and use count per using bundle, guarded by this */
+        private final Map<Bundle, Usage<S>> usages = new HashMap<>();
+        /** set while holding the monitor, read without */
+        private volatile boolean unregistered;
+
         PrivateServiceRegistration(String[] clazzes, Object svc, Dictionary<String, ?> properties) {
             Hashtable<String, Object> props = new Hashtable<>();
             for (Enumeration<String> elem = properties.keys(); elem.hasMoreElements(); ) {
@@ -294,6 +369,7 @@ public class PrivateRegistryWrapper implements BundleContext {
                 props.put(key, properties.get(key));
             }
             props.put(Constants.OBJECTCLASS, clazzes);
+            this.clazzes = clazzes;
             props.put(Constants.SERVICE_ID, privateServiceId.decrementAndGet());
             this.properties = props;
             this.service = svc;
@@ -304,6 +380,91 @@ public class PrivateRegistryWrapper implements BundleContext {
             return this;
         }
 
+        /**
+         * Returns the service object for the given bundle. A service factory is asked for one
+         * object per bundle, which is kept until the bundle has released it as often as it got
+         * it. The factory is called without holding the monitor of the registration, so an object
+         * created by a concurrent call may win, and the other one is released.
+         * <p>
+         * A prototype service factory is asked for a new object on each call, as each call stands
+         * for another component of the bean bundle. {@code ungetService} does not tell which
+         * object has been released, so these objects are released once the bundle uses none of
+         * them.
+         */
+        S getService(Bundle bundle) {
+            boolean prototype = service instanceof PrototypeServiceFactory;
+            if (!prototype) {
+                synchronized (this) {
+                    Usage<S> usage = usages.get(bundle);
+                    if (usage != null) {
+                        usage.count++;
+                        return usage.services.get(0);
+                    }
+                }
+            }
+            S created = (service instanceof ServiceFactory)
+                ? ((ServiceFactory<S>) service).getService(bundle, this)
+                : (S) service;
+            if (created == null) {
+                return null;
+            }
+            S result = null;
+            synchronized (this) {
+                if (!unregistered) {
+                    Usage<S> usage = usages.computeIfAbsent(bundle, b -> new Usage<>());
+                    if (prototype || usage.services.isEmpty()) {
+                        usage.services.add(created);
+                    }
+                    usage.count++;
+                    result = prototype ? created : usage.services.get(0);
+                }
+            }
+            if (result != created) {
+                // unregistered or created concurrently for the same bundle
+                release(bundle, Collections.singletonList(created));
+            }
+            return result;
+        }
+
+        boolean ungetService(Bundle bundle) {
+            Usage<S> usage;
+            synchronized (this) {
+                usage = usages.get(bundle);
+                if (usage == null) {
+                    return false;
+                }
+                if (--usage.count > 0) {
+                    return true;
+                }
+                usages.remove(bundle);
+            }
+            release(bundle, usage.services);
+            return true;
+        }
+
+        /**
+         * Releases the service objects of a service factory when the service is unregistered.
+         */
+        void unregistered() {
+            Map<Bundle, Usage<S>> released;
+            synchronized (this) {
+                unregistered = true;
+                released = new HashMap<>(usages);
+                usages.clear();
+            }
+            for (Map.Entry<Bundle, Usage<S>> entry : released.entrySet()) {
+                release(entry.getKey(), entry.getValue().services);
+            }
+        }
+
+        private void release(Bundle bundle, List<S> factoryServices) {
+            if (service instanceof ServiceFactory) {
+                for (S factoryService : factoryServices) {
+                    ((ServiceFactory<S>) service).ungetService(bundle, this, factoryService);
+                }
+            }
+        }
+
         @Override
         public void setProperties(Dictionary<String, ?> properties) {
             throw new UnsupportedOperationException();
@@ -316,7 +477,16 @@ public class PrivateRegistryWrapper implements BundleContext {
 
         @Override
         public Object getProperty(String key) {
-            return properties.get(key);
+            Object value = properties.get(key);
+            if (value == null) {
+                // property keys are case insensitive
+                for (Map.Entry<String, ?> entry : properties.entrySet()) {
+                    if (entry.getKey().equalsIgnoreCase(key)) {
+                        return entry.getValue();
+                    }
+                }
+            }
+            return value;
         }
 
         @Override
@@ -327,12 +497,12 @@ public class PrivateRegistryWrapper implements BundleContext {
 
         @Override
         public Bundle getBundle() {
-            throw new UnsupportedOperationException();
+            return unregistered ? null : PrivateRegistryWrapper.this.getBundle();
         }
 
         @Override
-        public Bundle[] getUsingBundles() {
-            throw new UnsupportedOperationException();
+        public synchronized Bundle[] getUsingBundles() {
+            return usages.isEmpty() ? null : usages.keySet().toArray(new Bundle[usages.size()]);
         }
 
         @Override
@@ -377,4 +547,13 @@ public class PrivateRegistryWrapper implements BundleContext {
 
     }
 
+    /**
+     * The service objects of a private registration used by one bundle.
+     */
+    private static final class Usage<S> {
+
+        /** one object, or one per call for a prototype service factory */
+        final List<S> services = new ArrayList<>(1);
+        int count;
+    }
 }
@@ -165,7 +165,11 @@ public abstract class AbstractTest {
     }
 
     protected WeldContainer createCdi(String id, Class... classes) {
-        BundleContextHolder.setBundleContext(getBundleContext());
+        return createCdi(getBundleContext(), id, classes);
+    }
+
+    protected WeldContainer createCdi(BundleContext bundleContext, String id, Class... classes) {
+        BundleContextHolder.setBundleContext(bundleContext);
         WeldContainer weld = new Weld()
                 .containerId(id)
                 .disableDiscovery()
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import javax.enterprise.event.Observes;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.event.BundleCdiEvent;
+import org.ops4j.pax.cdi.api.event.BundleStarted;
+import org.ops4j.pax.cdi.extension.impl.BundleEventBridge;
+import org.ops4j.pax.cdi.extension.impl.osgi.BundleEventMultiplexer;
+import org.ops4j.pax.cdi.spi.BeanBundles;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.hooks.bundle.FindHook;
+
+public class BundleEventSharedTest extends AbstractTest {
+
+    @Test
+    public void test() throws Exception {
+        ClassLoader cl = new ClassLoader() { };
+        Bundle beanBundle = getBundleContext().installBundle("test:bean-bundle", bundle("bean-bundle"));
+        BeanBundles.addBundle(cl, beanBundle);
+        try {
+            beanBundle.start();
+
+            createCdi(NoBundleObserver.class);
+            Assert.assertEquals(0, BundleEventMultiplexer.getSubscriptionCount(getBundleContext()));
+
+            createCdi(BundleObserver.class);
+            createCdi(BundleObserver.class);
+            Assert.assertEquals(2, BundleEventMultiplexer.getSubscriptionCount(getBundleContext()));
+            // no replay of the installed bundles by default
+            Assert.assertTrue(BundleObserver.events.isEmpty());
+
+            System.setProperty(BundleEventBridge.REPLAY, "true");
+            try {
+                createCdi(BundleObserver.class);
+            }
+            finally {
+                System.clearProperty(BundleEventBridge.REPLAY);
+            }
+            Assert.assertEquals(Collections.singletonList("installed"), BundleObserver.events);
+            BundleObserver.events.clear();
+
+            beanBundle.stop();
+            beanBundle.start();
+            Assert.assertEquals(3, BundleObserver.started.size());
+            for (BundleCdiEvent event : BundleObserver.started) {
+                Assert.assertSame(beanBundle, event.getBundle());
+            }
+        }
+        finally {
+            BeanBundles.removeBundle(cl, beanBundle);
+        }
+    }
+
+    @Test
+    public void findHook() throws Exception {
+        ClassLoader visibleCl = new ClassLoader() { };
+        ClassLoader hiddenCl = new ClassLoader() { };
+        Bundle observerBundle = getBundleContext().installBundle("test:observer-bundle", bundle("observer-bundle"));
+        Bundle visible = getBundleContext().installBundle("test:visible-bundle", bundle("visible-bundle"));
+        Bundle hidden = getBundleContext().installBundle("test:hidden-bundle", bundle("hidden-bundle"));
+        BeanBundles.addBundle(visibleCl, visible);
+        BeanBundles.addBundle(hiddenCl, hidden);
+        FindHook hook = (context, bundles) -> {
+            if (context.getBundle().equals(observerBundle)) {
+                bundles.remove(hidden);
+            }
+        };
+        getBundleContext().registerService(FindHook.class, hook, null);
+        try {
+            observerBundle.start();
+            createCdi(observerBundle.getBundleContext(), "observer", HookedBundleObserver.class);
+
+            visible.start();
+            hidden.start();
+            Assert.assertEquals(Collections.singletonList(visible), HookedBundleObserver.started);
+        }
+        finally {
+            BeanBundles.removeBundle(visibleCl, visible);
+            BeanBundles.removeBundle(hiddenCl, hidden);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void replayPrecedesLiveEvents() throws Exception {
+        List<BundleEvent> events = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Bundle> installed = new AtomicReference<>();
+        BundleEventMultiplexer.Listener listener = (bundle, event) -> {
+            if (event == null && installed.get() == null) {
+                // another thread installing a bundle during the replay is not blocked
+                Thread thread = new Thread(() -> {
+                    try {
+                        installed.set(getBundleContext().installBundle("test:replay-bundle", bundle("replay-bundle")));
+                    }
+                    catch (Exception exc) {
+                        throw new IllegalStateException(exc);
+                    }
+                });
+                thread.start();
+                try {
+                    thread.join();
+                }
+                catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add(event);
+        };
+        BundleEventMultiplexer.Subscription subscription = BundleEventMultiplexer.subscribe(getBundleContext(), listener, true);
+        try {
+            Assert.assertNotNull(installed.get());
+            // the held back event follows the replayed bundles
+            int live = 0;
+            while (events.get(live) == null) {
+                live++;
+            }
+            Assert.assertTrue(live > 0);
+            Assert.assertEquals(BundleEvent.INSTALLED, events.get(live).getType());
+            Assert.assertSame(installed.get(), events.get(live).getBundle());
+        }
+        finally {
+            subscription.close();
+        }
+    }
+
+    private static ByteArrayInputStream bundle(String symbolicName) throws IOException {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Bundle-ManifestVersion", "2");
+        attributes.putValue("Bundle-SymbolicName", symbolicName);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JarOutputStream(baos, manifest).close();
+        return new ByteArrayInputStream(baos.toByteArray());
+    }
+
+    public static class BundleObserver {
+
+        static final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        static final List<BundleCdiEvent> started = Collections.synchronizedList(new ArrayList<>());
+
+        public void bundleChanged(@Observes BundleCdiEvent event) {
+            if (event.getBundleEvent() == null) {
+                events.add("installed");
+            }
+        }
+
+        public void bundleStarted(@Observes @BundleStarted BundleCdiEvent event) {
+            started.add(event);
+        }
+    }
+
+    public static class HookedBundleObserver {
+
+        static final List<Bundle> started = Collections.synchronizedList(new ArrayList<>());
+
+        public void bundleStarted(@Observes @BundleStarted BundleCdiEvent event) {
+            started.add(event.getBundle());
+        }
+    }
+
+    public static class NoBundleObserver {
+
+        public void observe(@Observes String event) {
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.extension.impl.component2.ComponentActor;
+
+public class ComponentActorTest extends AbstractTest {
+
+    private static final int ACTORS = 20;
+    private static final int TASKS = 100;
+
+    @Test
+    public void test() throws Exception {
+        List<ComponentActor> actors = new ArrayList<>();
+        List<List<Integer>> results = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(ACTORS * TASKS);
+        for (int i = 0; i < ACTORS; i++) {
+            ComponentActor actor = new ComponentActor(getBundleContext());
+            List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+            AtomicBoolean running = new AtomicBoolean();
+            for (int j = 0; j < TASKS; j++) {
+                int task = j;
+                actor.execute(() -> {
+                    // tasks of one actor never overlap
+                    Assert.assertTrue(running.compareAndSet(false, true));
+                    result.add(task);
+                    running.set(false);
+                    done.countDown();
+                });
+            }
+            actors.add(actor);
+            results.add(result);
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        List<Integer> expected = new ArrayList<>();
+        for (int j = 0; j < TASKS; j++) {
+            expected.add(j);
+        }
+        for (int i = 0; i < ACTORS; i++) {
+            Assert.assertEquals(expected, results.get(i));
+            ComponentActor actor = actors.get(i);
+            actor.close();
+            Assert.assertEquals(TASKS, actor.getExecuted());
+            Assert.assertEquals(0, actor.getQueueLength());
+            Assert.assertTrue(actor.getMaxQueueLength() >= 1);
+            Assert.assertTrue(actor.getMaxLatency() >= actor.getAverageLatency());
+        }
+
+        // threads are shared by all actors
+        int threads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("pax-cdi-component-actor-")) {
+                threads++;
+            }
+        }
+        Assert.assertTrue(threads <= Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        ComponentActor actor = new ComponentActor(getBundleContext());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicBoolean discarded = new AtomicBoolean(true);
+        actor.execute(() -> {
+            started.countDown();
+            try {
+                gate.await();
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        actor.execute(() -> discarded.set(false));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Thread opener = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+            gate.countDown();
+        });
+        opener.start();
+        // waits for the running task, discards the other
+        actor.close();
+        Assert.assertEquals(0, gate.getCount());
+        Assert.assertTrue(actor.isClosed());
+        actor.execute(() -> discarded.set(false));
+        Thread.sleep(100);
+        Assert.assertTrue(discarded.get());
+        Assert.assertEquals(1, actor.getExecuted());
+        Assert.assertEquals(0, actor.getQueueLength());
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        ComponentActor actor = new ComponentActor(getBundleContext());
+        CountDownLatch done = new CountDownLatch(2);
+        actor.execute(done::countDown);
+        ComponentActor.shutdown();
+
+        // a new actor runs on a new pool
+        new ComponentActor(getBundleContext()).execute(done::countDown);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void invalidPoolSize() throws Exception {
+        ComponentActor.shutdown();
+        System.setProperty(ComponentActor.POOL_SIZE, "none");
+        try {
+            // the default size is used instead
+            ComponentActor actor = new ComponentActor(getBundleContext());
+            CountDownLatch done = new CountDownLatch(1);
+            actor.execute(done::countDown);
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+            actor.close();
+        }
+        finally {
+            System.clearProperty(ComponentActor.POOL_SIZE);
+            ComponentActor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.Component;
+import org.ops4j.pax.cdi.api.Config;
+import org.ops4j.pax.cdi.api.Greedy;
+import org.ops4j.pax.cdi.api.Immediate;
+import org.ops4j.pax.cdi.api.Optional;
+import org.ops4j.pax.cdi.api.Service;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentDescriptionDTO;
+import org.ops4j.pax.cdi.extension.impl.osgi.Registry;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.ComponentConstants;
+
+public class ComponentRegistryStressTest extends AbstractTest {
+
+    private static final long DURATION = TimeUnit.SECONDS.toMillis(2);
+
+    @Test
+    public void test() throws Exception {
+        startConfigAdmin();
+        createCdi(Hello.class, Middle.class, Provider.class);
+        Bundle bundle = getBundleContext().getBundle();
+        ServiceReference<MyService> provider = getBundleContext().getServiceReference(MyService.class);
+        Assert.assertNotNull(provider.getProperty(ComponentConstants.COMPONENT_NAME));
+        Assert.assertNotNull(provider.getProperty(ComponentConstants.COMPONENT_ID));
+        long deadline = System.currentTimeMillis() + DURATION;
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        // config updates reactivate Middle and Provider and rebind Hello
+        tasks.add(() -> {
+            int count = 0;
+            while (System.currentTimeMillis() < deadline) {
+                getConfiguration(MyConfig.class).update(dictionary("host", "host" + count++));
+            }
+            return count;
+        });
+        // greedy references bind late to new services, component services which cannot be
+        // obtained are registered as missing dependencies
+        tasks.add(() -> {
+            int count = 0;
+            while (System.currentTimeMillis() < deadline) {
+                ServiceRegistration<MyService> registration = register(MyService.class, () -> "Hello", count++);
+                registration.unregister();
+                registration = getBundleContext().registerService(MyService.class, new UnavailableService(),
+                    componentProperties(count++));
+                registration.unregister();
+            }
+            return count;
+        });
+        for (int i = 0; i < 2; i++) {
+            tasks.add(() -> {
+                int count = 0;
+                while (System.currentTimeMillis() < deadline) {
+                    Collection<ComponentDescriptionDTO> descriptions = Registry.getInstance().getComponentDescriptionDTOs(bundle);
+                    Assert.assertEquals(3, descriptions.size());
+                    for (ComponentDescriptionDTO description : descriptions) {
+                        Assert.assertNotNull(Registry.getInstance().getComponentConfigurationDTOs(description));
+                        Assert.assertNotNull(Registry.getInstance().getComponentDescriptionDTO(bundle, description.name));
+                    }
+                    count++;
+                }
+                return count;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                Assert.assertTrue(future.get() > 0);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(3, Registry.getInstance().getComponentDescriptionDTOs(bundle).size());
+    }
+
+    private Dictionary<String, Object> componentProperties(int ranking) {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(ComponentConstants.COMPONENT_NAME, "unavailable");
+        properties.put(ComponentConstants.COMPONENT_ID, (long) ranking);
+        properties.put(Constants.SERVICE_RANKING, ranking);
+        return properties;
+    }
+
+    @interface MyConfig {
+
+        String host() default "0.0.0.0";
+    }
+
+    public interface MyService {
+
+        String hello();
+    }
+
+    @Component
+    public static class Middle {
+
+        @Inject @Optional @Config @Greedy
+        MyConfig config;
+
+        public String host() {
+            return config.host();
+        }
+    }
+
+    @Service @Component
+    public static class Provider implements MyService {
+
+        @Inject @Component
+        Middle middle;
+
+        @Override
+        public String hello() {
+            return "Hello from " + middle.host();
+        }
+    }
+
+    /**
+     * A component service of another bundle which is being activated, as seen by SCR.
+     */
+    static class UnavailableService implements ServiceFactory<MyService> {
+
+        @Override
+        public MyService getService(Bundle bundle, ServiceRegistration<MyService> registration) {
+            return null;
+        }
+
+        @Override
+        public void ungetService(Bundle bundle, ServiceRegistration<MyService> registration, MyService service) {
+        }
+    }
+
+    @Immediate @Component
+    public static class Hello {
+
+        @Inject @Component
+        Middle middle;
+
+        @Inject @Optional @Greedy @Service
+        MyService service;
+    }
+}
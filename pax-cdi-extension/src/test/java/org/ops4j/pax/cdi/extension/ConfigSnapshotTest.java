@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.Component;
+import org.ops4j.pax.cdi.api.Config;
+import org.ops4j.pax.cdi.api.Immediate;
+import org.ops4j.pax.cdi.extension.impl.component2.ComponentDescriptor;
+
+public class ConfigSnapshotTest extends AbstractTest {
+
+    @Before
+    public void enableSnapshots() {
+        System.setProperty(ComponentDescriptor.CONFIG_SNAPSHOTS, "true");
+    }
+
+    @After
+    public void disableSnapshots() {
+        System.clearProperty(ComponentDescriptor.CONFIG_SNAPSHOTS);
+    }
+
+    @Test(timeout = 10000)
+    public void test() throws Exception {
+        startConfigAdmin();
+
+        synchronized (Hello.INSTANCE) {
+            createCdi(Hello.class);
+
+            Hashtable<String, Object> props = new Hashtable<>();
+            props.put("host", "localhost");
+            props.put("aliases", "a, b");
+            getConfiguration(MyConfig.class).update(props);
+
+            Hello.INSTANCE.wait();
+
+            MyConfig config = Hello.INSTANCE.get().config;
+            Assert.assertEquals("SnapshotHandler",
+                Proxy.getInvocationHandler(config).getClass().getSimpleName());
+            Assert.assertEquals("localhost", config.host());
+            Assert.assertEquals(8234, config.port());
+            Assert.assertArrayEquals(new String[] { "a", "b" }, config.aliases());
+
+            config.aliases()[0] = "c";
+            Assert.assertArrayEquals(new String[] { "a", "b" }, config.aliases());
+
+            // updated configuration gives a new snapshot
+            props.put("port", "9000");
+            getConfiguration(MyConfig.class).update(props);
+
+            while (Hello.INSTANCE.get() == null || Hello.INSTANCE.get().config == config) {
+                Hello.INSTANCE.wait();
+            }
+
+            Assert.assertEquals(8234, config.port());
+            Assert.assertEquals(9000, Hello.INSTANCE.get().config.port());
+        }
+    }
+
+    @interface MyConfig {
+
+        String host() default "0.0.0.0";
+        int port() default 8234;
+        String[] aliases() default {};
+
+    }
+
+    @Immediate @Component
+    public static class Hello {
+
+        static final AtomicReference<Hello> INSTANCE = new AtomicReference<>();
+
+        @Inject @Config
+        MyConfig config;
+
+        @PostConstruct
+        public void init() {
+            INSTANCE.set(this);
+            synchronized (INSTANCE) {
+                INSTANCE.notifyAll();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.extension.impl.support.Configurable;
+
+public class ConfigurableTest {
+
+    @Test
+    public void convertedValuesAreCached() {
+        Map<String, Object> props = new HashMap<>();
+        props.put("name", "foo");
+        props.put("port", "8080");
+        props.put("ports", "1, 2, 3");
+        props.put("tags.a", "x");
+        props.put("nested.host", "localhost");
+        props.put("aliases", "a, b");
+        MyConfig config = Configurable.create(MyConfig.class, props);
+
+        Assert.assertEquals("foo", config.getName());
+        Assert.assertEquals(8080, config.port());
+        Assert.assertEquals(0L, config.timeout());
+        Assert.assertNull(config.missing());
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), config.ports());
+        try {
+            config.ports().clear();
+            Assert.fail("Cached collections must not be modifiable");
+        }
+        catch (UnsupportedOperationException expected) {
+        }
+        Assert.assertEquals(Arrays.asList(1, 2, 3), config.ports());
+
+        Assert.assertEquals("x", config.tags().get("a"));
+        try {
+            config.tags().clear();
+            Assert.fail("Cached maps must not be modifiable");
+        }
+        catch (UnsupportedOperationException expected) {
+        }
+        Assert.assertEquals("x", config.tags().get("a"));
+
+        Assert.assertArrayEquals(new String[] { "a", "b" }, config.aliases());
+        config.aliases()[0] = "c";
+        Assert.assertArrayEquals(new String[] { "a", "b" }, config.aliases());
+
+        Assert.assertSame(config.nested(), config.nested());
+        Assert.assertEquals("localhost", config.nested().host());
+
+        // a second proxy of the same type uses its own values
+        props.put("port", "9090");
+        MyConfig other = Configurable.create(MyConfig.class, props);
+        Assert.assertEquals(8080, config.port());
+
+        // the map is copied, so values which were not read yet do not change either
+        props.put("port", "7070");
+        Assert.assertEquals(9090, other.port());
+    }
+
+    public interface MyConfig {
+
+        String getName();
+        int port();
+        long timeout();
+        String missing();
+        List<Integer> ports();
+        Map<String, String> tags();
+        String[] aliases();
+        Nested nested();
+    }
+
+    public interface Nested {
+
+        String host();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.extension.impl.support.CompiledFilter;
+import org.ops4j.pax.cdi.extension.impl.support.PrivateRegistryWrapper;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+public class FilterCompiledTest extends AbstractTest {
+
+    private static final List<String> FILTERS = Arrays.asList(
+        "(objectClass=java.lang.Runnable)",
+        "(objectClass=java.lang.Object)",
+        "(name=a)",
+        "(NAME=a)",
+        "(name=*)",
+        "(missing=*)",
+        "(name=a*)",
+        "(tags=red)",
+        "(list=blue)",
+        "(count=3)",
+        "(count>=2)",
+        "(" + PrivateRegistryWrapper.PRIVATE + "=true)",
+        "(" + PrivateRegistryWrapper.PRIVATE + "=TRUE)",
+        "(&(objectClass=java.lang.Runnable)(name=a))",
+        "(&(name=a)(objectClass=java.lang.Runnable)(" + PrivateRegistryWrapper.PRIVATE + "=true))",
+        "(&(objectClass=java.lang.Runnable)(|(name=b)(tags=green)))",
+        "(&(objectClass=java.lang.Runnable)(!(name=a)))",
+        "(&(name=a)(count=3))",
+        "(&(name=a)(count=4))",
+        "(|(name=a)(name=b))",
+        "(name=a b)",
+        "(name=\\61)");
+
+    @Test
+    public void test() throws Exception {
+        Runnable service = () -> { };
+        Dictionary<String, Object> props = new Hashtable<>();
+        props.put("name", "a");
+        props.put("tags", new String[] { "red", "green" });
+        props.put("list", Arrays.asList("blue", 4));
+        props.put("count", 3);
+        props.put(PrivateRegistryWrapper.PRIVATE, true);
+        ServiceRegistration<Runnable> first = register(Runnable.class, service, props);
+        ServiceRegistration<Runnable> second = register(Runnable.class, service, dictionary("name", "b"));
+        try {
+            for (ServiceReference<?> ref : Arrays.asList(first.getReference(), second.getReference())) {
+                for (String filter : FILTERS) {
+                    Filter expected = FrameworkUtil.createFilter(filter);
+                    Filter compiled = CompiledFilter.compile(filter);
+                    Assert.assertEquals(filter + " on " + ref.getProperty("name"),
+                        expected.match(ref), compiled.match(ref));
+                    Assert.assertEquals(expected.toString(), compiled.toString());
+                    Assert.assertEquals(expected, compiled);
+                    Assert.assertEquals(compiled, expected);
+                }
+            }
+        }
+        finally {
+            first.unregister();
+            second.unregister();
+        }
+    }
+
+    @Test
+    public void testInterned() throws Exception {
+        String filter = "(&(objectClass=java.lang.Runnable)(name=" + testName.getMethodName() + "))";
+        Assert.assertSame(CompiledFilter.compile(filter), CompiledFilter.compile(new String(filter)));
+
+        PrivateRegistryWrapper first = new PrivateRegistryWrapper(getBundleContext());
+        PrivateRegistryWrapper second = new PrivateRegistryWrapper(getBundleContext());
+        Assert.assertSame(first.createFilter(filter), second.createFilter(filter));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.extension.impl.support.PrivateRegistryWrapper;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.PrototypeServiceFactory;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Checks the per bundle use counting of private services and the release of the objects of a
+ * private service factory.
+ */
+public class PrivateRegistryTest extends AbstractTest {
+
+    @Test
+    public void balancedUnget() {
+        PrivateRegistryWrapper context = new PrivateRegistryWrapper(getBundleContext());
+        CountingFactory factory = new CountingFactory();
+        ServiceReference<MyService> reference = register(context, factory).getReference();
+
+        MyService first = context.getService(reference);
+        MyService second = context.getService(reference);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, factory.created.get());
+        Assert.assertArrayEquals(new Bundle[] { context.getBundle() }, reference.getUsingBundles());
+
+        // the object is released once the bundle has released it as often as it got it
+        Assert.assertTrue(context.ungetService(reference));
+        Assert.assertEquals(0, factory.released.get());
+        Assert.assertNotNull(reference.getUsingBundles());
+
+        Assert.assertTrue(context.ungetService(reference));
+        Assert.assertEquals(1, factory.released.get());
+        Assert.assertNull(reference.getUsingBundles());
+        Assert.assertFalse(context.ungetService(reference));
+
+        // the next call gets a new object
+        Assert.assertNotSame(first, context.getService(reference));
+        Assert.assertEquals(2, factory.created.get());
+    }
+
+    @Test
+    public void prototypeObjectPerCall() {
+        PrivateRegistryWrapper context = new PrivateRegistryWrapper(getBundleContext());
+        CountingFactory factory = new CountingPrototypeFactory();
+        ServiceReference<MyService> reference = register(context, factory).getReference();
+
+        // each call stands for another component of the bean bundle
+        MyService first = context.getService(reference);
+        MyService second = context.getService(reference);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, factory.created.get());
+
+        Assert.assertTrue(context.ungetService(reference));
+        Assert.assertEquals(0, factory.released.get());
+        Assert.assertTrue(context.ungetService(reference));
+        Assert.assertEquals(2, factory.released.get());
+        Assert.assertNull(reference.getUsingBundles());
+    }
+
+    @Test
+    public void unregister() {
+        PrivateRegistryWrapper context = new PrivateRegistryWrapper(getBundleContext());
+        CountingFactory factory = new CountingFactory();
+        ServiceRegistration<MyService> registration = register(context, factory);
+        ServiceReference<MyService> reference = registration.getReference();
+
+        Assert.assertNotNull(context.getService(reference));
+        registration.unregister();
+        Assert.assertEquals(1, factory.released.get());
+        Assert.assertNull(reference.getBundle());
+        Assert.assertFalse(context.ungetService(reference));
+
+        // an object created after unregistration is released immediately
+        Assert.assertNull(context.getService(reference));
+        Assert.assertEquals(factory.created.get(), factory.released.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ServiceRegistration<MyService> register(PrivateRegistryWrapper context, CountingFactory factory) {
+        return (ServiceRegistration<MyService>) context.registerService(new String[] { MyService.class.getName() },
+            factory, dictionary(PrivateRegistryWrapper.PRIVATE, true));
+    }
+
+    static class CountingFactory implements ServiceFactory<MyService> {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger released = new AtomicInteger();
+
+        @Override
+        public MyService getService(Bundle bundle, ServiceRegistration<MyService> registration) {
+            int id = created.incrementAndGet();
+            return () -> "Hello " + id;
+        }
+
+        @Override
+        public void ungetService(Bundle bundle, ServiceRegistration<MyService> registration, MyService service) {
+            released.incrementAndGet();
+        }
+    }
+
+    static class CountingPrototypeFactory extends CountingFactory implements PrototypeServiceFactory<MyService> {
+    }
+
+    public interface MyService {
+
+        String hello();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.Component;
+import org.ops4j.pax.cdi.api.Greedy;
+import org.ops4j.pax.cdi.api.Immediate;
+import org.ops4j.pax.cdi.api.Optional;
+import org.ops4j.pax.cdi.api.Service;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentActorDTO;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentConfigurationDTO;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.ComponentDescriptionDTO;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.SingletonScopeDTO;
+import org.ops4j.pax.cdi.extension.impl.osgi.Registry;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceRegistration;
+
+public class RuntimeSnapshotTest extends AbstractTest {
+
+    @Test
+    public void test() throws Exception {
+        Registry runtime = Registry.getInstance();
+        long initial = runtime.getChangeCount();
+        createCdi(Hello.class);
+        Bundle bundle = getBundleContext().getBundle();
+        Assert.assertTrue(runtime.getChangeCount() > initial);
+
+        List<ComponentDescriptionDTO> descriptions = new ArrayList<>(runtime.getComponentDescriptionDTOs(bundle));
+        Assert.assertEquals(1, descriptions.size());
+        ComponentDescriptionDTO description = descriptions.get(0);
+        assertCopy(description, runtime.getComponentDescriptionDTOs(bundle).iterator().next());
+        assertCopy(description, runtime.getComponentDescriptionDTOs(bundle.getBundleId()).iterator().next());
+        assertCopy(description, runtime.getComponentDescriptionDTO(bundle, description.name));
+        Assert.assertTrue(runtime.getComponentDescriptionDTOs(bundle.getBundleId() + 1000).isEmpty());
+
+        // unchanged configurations are cached
+        long count = runtime.getChangeCount();
+        ComponentConfigurationDTO configuration = runtime.getComponentConfigurationDTOs(description).iterator().next();
+        Assert.assertEquals(count, runtime.getChangeCount());
+        ComponentConfigurationDTO copy = runtime.getComponentConfigurationDTOs(description).iterator().next();
+        Assert.assertNotSame(configuration, copy);
+        Assert.assertSame(configuration.satisfiedReferences[0], copy.satisfiedReferences[0]);
+        assertCopy(description, configuration.description);
+
+        // copies may be modified
+        copy.properties.clear();
+        copy.satisfiedReferences = null;
+        Assert.assertFalse(runtime.getComponentConfigurationDTOs(description).iterator().next().properties.isEmpty());
+        Assert.assertEquals(0, configuration.satisfiedReferences[0].boundServices.length);
+
+        // binding a service changes the configuration
+        ServiceRegistration<MyService> registration = register(MyService.class, () -> "Hello");
+        Assert.assertTrue(runtime.getChangeCount() > count);
+        ComponentConfigurationDTO updated = runtime.getComponentConfigurationDTOs(description).iterator().next();
+        Assert.assertNotSame(configuration.satisfiedReferences[0], updated.satisfiedReferences[0]);
+        Assert.assertEquals(1, updated.satisfiedReferences[0].boundServices.length);
+        assertCopy(description, runtime.getComponentDescriptionDTOs(bundle).iterator().next());
+
+        registration.unregister();
+        Assert.assertEquals(0, runtime.getComponentConfigurationDTOs(description).iterator().next()
+            .satisfiedReferences[0].boundServices.length);
+
+        List<ComponentActorDTO> actors = new ArrayList<>(runtime.getComponentActorDTOs(bundle));
+        Assert.assertEquals(1, actors.size());
+        Assert.assertEquals(bundle.getBundleId(), actors.get(0).bundle.id);
+        Assert.assertTrue(actors.get(0).maxLatency >= actors.get(0).averageLatency);
+
+        List<SingletonScopeDTO> scopes = new ArrayList<>(runtime.getSingletonScopeDTOs(bundle));
+        Assert.assertEquals(1, scopes.size());
+        Assert.assertEquals(bundle.getBundleId(), scopes.get(0).bundle.id);
+        Assert.assertEquals(0, scopes.get(0).contendedCreations);
+    }
+
+    /**
+     * Checks that a description is a copy of the same cached description.
+     */
+    private static void assertCopy(ComponentDescriptionDTO expected, ComponentDescriptionDTO actual) {
+        Assert.assertNotSame(expected, actual);
+        Assert.assertEquals(expected.name, actual.name);
+        Assert.assertEquals(expected.properties, actual.properties);
+        Assert.assertSame(expected.references[0], actual.references[0]);
+    }
+
+    public interface MyService {
+
+        String hello();
+    }
+
+    @Immediate @Component
+    public static class Hello {
+
+        @Inject @Optional @Greedy @Service
+        MyService service;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.context.spi.Contextual;
+import javax.enterprise.context.spi.CreationalContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.extension.impl.context.BundleScopeContext;
+import org.osgi.framework.Bundle;
+
+public class ScopeBundleConcurrentTest extends AbstractTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    public void test() throws Exception {
+        final BundleScopeContext context = new BundleScopeContext(null);
+        final Bundle client = getBundleContext().getBundle();
+        final SlowContextual contextual = new SlowContextual();
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws Exception {
+                        context.setClientBundle(client);
+                        try {
+                            barrier.await();
+                            return context.get(contextual, new SimpleCreationalContext());
+                        }
+                        finally {
+                            context.setClientBundle(null);
+                        }
+                    }
+                }));
+            }
+            Object first = futures.get(0).get();
+            Assert.assertNotNull(first);
+            for (Future<Object> future : futures) {
+                Assert.assertSame(first, future.get());
+            }
+            Assert.assertEquals(1, contextual.created.get());
+
+            context.setClientBundle(client);
+            Assert.assertSame(first, context.get(contextual));
+            context.destroy(contextual);
+            Assert.assertNull(context.get(contextual));
+            Assert.assertEquals(1, contextual.destroyed.get());
+            context.setClientBundle(null);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static class SlowContextual implements Contextual<Object> {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+
+        @Override
+        public Object create(CreationalContext<Object> creationalContext) {
+            created.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+            return new Object();
+        }
+
+        @Override
+        public void destroy(Object instance, CreationalContext<Object> creationalContext) {
+            destroyed.incrementAndGet();
+        }
+    }
+
+    static class SimpleCreationalContext implements CreationalContext<Object> {
+
+        @Override
+        public void push(Object incompleteInstance) {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.context.spi.Contextual;
+import javax.enterprise.context.spi.CreationalContext;
+
+import org.jboss.weld.environment.se.WeldContainer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.extension.ScopeBundleConcurrentTest.SimpleCreationalContext;
+import org.ops4j.pax.cdi.extension.ScopeSingletonConcurrentTest.Hello;
+import org.ops4j.pax.cdi.extension.impl.context.PrototypeScopeContext;
+
+public class ScopePrototypeSoakTest extends AbstractTest {
+
+    private static final int THREADS = 8;
+    private static final int CYCLES = 250_000;
+    private static final long MAX_HEAP_GROWTH = 16 * 1024 * 1024;
+
+    @Test
+    public void getAndDestroy() throws Exception {
+        WeldContainer weld = createCdi(Hello.class);
+        final PrototypeScopeContext context = new PrototypeScopeContext(weld.getBeanManager(), false);
+        final CountingContextual contextual = new CountingContextual();
+
+        runCycles(context, contextual, CYCLES / 10);
+        long before = usedHeap();
+        for (int round = 2; round <= 11; round++) {
+            runCycles(context, contextual, CYCLES / 10);
+            Assert.assertEquals(0, context.getInstanceCount());
+            Assert.assertEquals(round * THREADS * (CYCLES / 10), contextual.created.get());
+            Assert.assertEquals(contextual.created.get(), contextual.destroyed.get());
+        }
+        long after = usedHeap();
+        LOG.info("heap before {} bytes, after {} bytes", before, after);
+        Assert.assertTrue("heap grew by " + (after - before), after - before < MAX_HEAP_GROWTH);
+    }
+
+    @Test
+    public void reclaimUnreferenced() throws Exception {
+        WeldContainer weld = createCdi(Hello.class);
+        PrototypeScopeContext context = new PrototypeScopeContext(weld.getBeanManager(), true);
+        CountingContextual contextual = new CountingContextual();
+        AtomicInteger released = new AtomicInteger();
+
+        for (int i = 0; i < 10_000; i++) {
+            context.get(contextual, new CountingCreationalContext(released));
+        }
+        for (int i = 0; i < 50 && context.getInstanceCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(0, context.getInstanceCount());
+        Assert.assertEquals(10_000, released.get());
+        Assert.assertEquals(0, contextual.destroyed.get());
+    }
+
+    private void runCycles(final PrototypeScopeContext context, final CountingContextual contextual,
+        final int cycles) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < cycles; i++) {
+                        Object instance = context.get(contextual, new SimpleCreationalContext());
+                        context.setService(instance);
+                        try {
+                            context.destroy(contextual);
+                        }
+                        finally {
+                            context.setService(null);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static class CountingContextual implements Contextual<Object> {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+
+        @Override
+        public Object create(CreationalContext<Object> creationalContext) {
+            created.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        public void destroy(Object instance, CreationalContext<Object> creationalContext) {
+            destroyed.incrementAndGet();
+        }
+    }
+
+    static class CountingCreationalContext implements CreationalContext<Object> {
+
+        private final AtomicInteger released;
+
+        CountingCreationalContext(AtomicInteger released) {
+            this.released = released;
+        }
+
+        @Override
+        public void push(Object incompleteInstance) {
+        }
+
+        @Override
+        public void release() {
+            released.incrementAndGet();
+        }
+    }
+}
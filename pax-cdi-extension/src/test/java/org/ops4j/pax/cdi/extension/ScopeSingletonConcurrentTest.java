@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.weld.environment.se.WeldContainer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.extension.ScopeBundleConcurrentTest.SimpleCreationalContext;
+import org.ops4j.pax.cdi.extension.ScopeBundleConcurrentTest.SlowContextual;
+import org.ops4j.pax.cdi.extension.impl.context.SingletonScopeContext;
+
+public class ScopeSingletonConcurrentTest extends AbstractTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    public void test() throws Exception {
+        WeldContainer weld = createCdi(Hello.class);
+        final SingletonScopeContext context = new SingletonScopeContext(weld.getBeanManager());
+        final SlowContextual contextual = new SlowContextual();
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        final AtomicInteger released = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return context.get(contextual, new SimpleCreationalContext() {
+
+                        @Override
+                        public void release() {
+                            released.incrementAndGet();
+                        }
+                    });
+                }));
+            }
+            Object first = futures.get(0).get();
+            Assert.assertNotNull(first);
+            for (Future<Object> future : futures) {
+                Assert.assertSame(first, future.get());
+            }
+            Assert.assertEquals(1, contextual.created.get());
+            Assert.assertTrue(context.getContendedCreations() > 0);
+            Assert.assertTrue(context.getContendedCreations() < THREADS);
+            // each thread waiting for the instance of another one releases its context
+            Assert.assertEquals(context.getContendedCreations(), released.get());
+            Assert.assertEquals(1, context.getInstanceCount());
+
+            Assert.assertSame(first, context.get(contextual));
+            context.destroy(contextual);
+            Assert.assertNull(context.get(contextual));
+            Assert.assertEquals(1, contextual.destroyed.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static class Hello {
+    }
+}
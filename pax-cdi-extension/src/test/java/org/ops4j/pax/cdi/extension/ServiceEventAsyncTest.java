@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.event.Observes;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.api.event.ServiceCdiEvent;
+import org.ops4j.pax.cdi.api.event.ServiceRemoved;
+import org.ops4j.pax.cdi.extension.api.runtime.dto.EventQueueDTO;
+import org.ops4j.pax.cdi.extension.impl.EventQueue;
+import org.ops4j.pax.cdi.extension.impl.osgi.Registry;
+import org.osgi.framework.ServiceRegistration;
+
+public class ServiceEventAsyncTest extends AbstractTest {
+
+    private static final int SERVICES = 3;
+
+    @Test
+    public void test() throws Exception {
+        System.setProperty(EventQueue.ASYNC, "true");
+        try {
+            createCdi(ServiceEventReceiver.class);
+        }
+        finally {
+            System.clearProperty(EventQueue.ASYNC);
+        }
+
+        // the first delivery blocks until the gate is opened, but registration must not
+        List<ServiceRegistration<MyService>> registrations = new ArrayList<>();
+        for (int i = 1; i <= SERVICES; i++) {
+            registrations.add(register(MyService.class, () -> "Hello", dictionary("id", i)));
+        }
+        for (ServiceRegistration<MyService> registration : registrations) {
+            registration.unregister();
+        }
+        Assert.assertTrue(ServiceEventReceiver.events.isEmpty());
+
+        ServiceEventReceiver.gate.countDown();
+        Assert.assertTrue(ServiceEventReceiver.done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("added 1", "added 2", "added 3", "removed 1", "removed 2", "removed 3"),
+            ServiceEventReceiver.events);
+        Assert.assertNotEquals(Thread.currentThread(), ServiceEventReceiver.thread);
+
+        // the queue counts a delivery after the observer has returned
+        EventQueueDTO dto = getEventQueueDTO();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (dto.delivered < 2 * SERVICES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            dto = getEventQueueDTO();
+        }
+        Assert.assertEquals(0, dto.queueDepth);
+        Assert.assertEquals(2 * SERVICES, dto.delivered);
+        Assert.assertTrue(dto.maxQueueDepth >= 2 * SERVICES - 1);
+        Assert.assertTrue(dto.maxLatency >= dto.averageLatency);
+    }
+
+    @Test
+    public void invalidCapacity() {
+        System.setProperty(EventQueue.ASYNC, "true");
+        System.setProperty(EventQueue.CAPACITY, "0");
+        try {
+            createCdi(ServiceEventReceiver.class);
+        }
+        finally {
+            System.clearProperty(EventQueue.ASYNC);
+            System.clearProperty(EventQueue.CAPACITY);
+        }
+        Assert.assertEquals(1024, getEventQueueDTO().capacity);
+    }
+
+    private EventQueueDTO getEventQueueDTO() {
+        Collection<EventQueueDTO> dtos = Registry.getInstance().getEventQueueDTOs(getBundleContext().getBundle());
+        Assert.assertEquals(1, dtos.size());
+        return dtos.iterator().next();
+    }
+
+    public static class ServiceEventReceiver {
+
+        static final CountDownLatch gate = new CountDownLatch(1);
+        static final CountDownLatch done = new CountDownLatch(2 * SERVICES);
+        static final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        static volatile Thread thread;
+
+        public void added(@Observes @ServiceAdded ServiceCdiEvent<MyService> event) throws InterruptedException {
+            record("added", event);
+        }
+
+        public void removed(@Observes @ServiceRemoved ServiceCdiEvent<MyService> event) throws InterruptedException {
+            record("removed", event);
+        }
+
+        private void record(String type, ServiceCdiEvent<MyService> event) throws InterruptedException {
+            gate.await();
+            thread = Thread.currentThread();
+            events.add(type + " " + event.getReference().getProperty("id"));
+            done.countDown();
+        }
+    }
+
+    public interface MyService {
+
+        String hello();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.event.Observes;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.tinybundles.core.TinyBundles;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.hooks.service.EventListenerHook;
+
+/**
+ * Checks that service events hidden from the bean bundle by an {@link EventListenerHook} are not
+ * delivered to its observers.
+ */
+public class ServiceEventHookTest extends AbstractTest {
+
+    @Test
+    public void test() throws BundleException {
+        // hooks are not applied to the listeners of the system bundle
+        Bundle beanBundle = getBundleContext().installBundle("bean-bundle",
+            TinyBundles.bundle().set(Constants.BUNDLE_SYMBOLICNAME, "bean-bundle").build());
+        beanBundle.start();
+        EventListenerHook hook = (event, listeners) -> {
+            if (event.getServiceReference().getProperty("hidden") != null) {
+                listeners.keySet().removeIf(context -> context.getBundle().equals(beanBundle));
+            }
+        };
+        getBundleContext().registerService(EventListenerHook.class, hook, null);
+        createCdi(beanBundle.getBundleContext(), UUID.randomUUID().toString(), ServiceEventReceiver.class);
+
+        register(MyService.class, () -> "visible");
+        register(MyService.class, () -> "hidden", dictionary("hidden", "true"));
+
+        Assert.assertEquals(1, ServiceEventReceiver.added.get());
+    }
+
+    public static class ServiceEventReceiver {
+
+        static AtomicInteger added = new AtomicInteger();
+
+        public void added(@Observes @ServiceAdded MyService service) {
+            added.incrementAndGet();
+        }
+    }
+
+    public interface MyService {
+
+        String hello();
+    }
+}
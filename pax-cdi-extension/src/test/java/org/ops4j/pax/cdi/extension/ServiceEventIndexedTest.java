@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.event.Observes;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.Filter;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.api.event.ServiceCdiEvent;
+
+/**
+ * Checks that observers selected by attribute values receive exactly the matching events for
+ * string, multi-valued and non-string service properties, and that observers of the service
+ * itself receive services by their class rather than by their registered types.
+ */
+public class ServiceEventIndexedTest extends AbstractTest {
+
+    @Test
+    public void test() {
+        createCdi(Receiver.class);
+
+        register(MyService.class, () -> "a", dictionary("name", "alpha")).unregister();
+        register(MyService.class, () -> "b", dictionary("name", "beta")).unregister();
+        register(MyService.class, () -> "c", dictionary("name", new String[] { "gamma", "alpha" })).unregister();
+        register(MyService.class, () -> "d", dictionary("name", Arrays.asList("beta"))).unregister();
+        register(MyService.class, () -> "e", dictionary("port", 8080)).unregister();
+        register(MyService.class, () -> "f", dictionary("port", "08080")).unregister();
+        register(OtherService.class, () -> "g", dictionary("name", "alpha")).unregister();
+
+        Assert.assertEquals(2, Receiver.count("alpha"));
+        Assert.assertEquals(2, Receiver.count("beta"));
+        Assert.assertEquals(1, Receiver.count("port"));
+        Assert.assertEquals(6, Receiver.count("any"));
+        Assert.assertEquals(1, Receiver.count("other"));
+    }
+
+    @Test
+    public void typed() {
+        createCdi(TypedReceiver.class);
+
+        register(MyService.class, new BothServices(), dictionary("name", "delta")).unregister();
+        register(MyService.class, new BothServices(), dictionary("name", "epsilon")).unregister();
+
+        Assert.assertEquals(1, TypedReceiver.count("my"));
+        Assert.assertEquals(2, TypedReceiver.count("other"));
+        Assert.assertEquals(0, TypedReceiver.count("otherEvent"));
+    }
+
+    public static class Receiver {
+
+        static final Map<String, AtomicInteger> COUNTS = new ConcurrentHashMap<>();
+
+        static int count(String key) {
+            AtomicInteger count = COUNTS.get(key);
+            return count == null ? 0 : count.get();
+        }
+
+        private static void increment(String key) {
+            COUNTS.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        public void alpha(@Observes @ServiceAdded @Filter("(name=alpha)") MyService service) {
+            increment("alpha");
+        }
+
+        public void beta(@Observes @ServiceAdded @Filter("name=beta") ServiceCdiEvent<? extends MyService> event) {
+            increment("beta");
+        }
+
+        public void port(@Observes @ServiceAdded @Filter("(port=8080)") MyService service) {
+            increment("port");
+        }
+
+        public void any(@Observes @ServiceAdded MyService service) {
+            increment("any");
+        }
+
+        public void other(@Observes @ServiceAdded @Filter("(name=alpha)") OtherService service) {
+            increment("other");
+        }
+    }
+
+    public static class TypedReceiver {
+
+        static final Map<String, AtomicInteger> COUNTS = new ConcurrentHashMap<>();
+
+        static int count(String key) {
+            AtomicInteger count = COUNTS.get(key);
+            return count == null ? 0 : count.get();
+        }
+
+        private static void increment(String key) {
+            COUNTS.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        public void my(@Observes @ServiceAdded @Filter("(name=delta)") MyService service) {
+            increment("my");
+        }
+
+        public void other(@Observes @ServiceAdded OtherService service) {
+            increment("other");
+        }
+
+        public void otherEvent(@Observes @ServiceAdded ServiceCdiEvent<OtherService> event) {
+            increment("otherEvent");
+        }
+    }
+
+    public static class BothServices implements MyService, OtherService {
+
+        @Override
+        public String hello() {
+            return "both";
+        }
+    }
+
+    public interface MyService {
+        String hello();
+    }
+
+    public interface OtherService {
+        String hello();
+    }
+
+}
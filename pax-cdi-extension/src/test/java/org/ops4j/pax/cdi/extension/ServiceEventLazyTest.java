@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.EventMetadata;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.event.ReferenceOnly;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.api.event.ServiceCdiEvent;
+import org.ops4j.pax.cdi.api.event.ServiceRemoved;
+import org.ops4j.pax.cdi.extension.impl.ServiceEventBridge;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceRegistration;
+
+public class ServiceEventLazyTest extends AbstractTest {
+
+    @Test
+    public void referenceOnly() {
+        createCdi(ReferenceOnlyReceiver.class);
+
+        CountingFactory factory = new CountingFactory();
+        ServiceRegistration<?> registration = getBundleContext().registerService(
+            MyService.class.getName(), factory, null);
+        registration.unregister();
+
+        Assert.assertEquals(1, ReferenceOnlyReceiver.added.get());
+        Assert.assertEquals(1, ReferenceOnlyReceiver.removed.get());
+        // only the removed observer asked for the service
+        Assert.assertEquals(1, factory.created.get());
+        Assert.assertEquals(1, factory.released.get());
+    }
+
+    @Test
+    public void lazyServices() {
+        System.setProperty(ServiceEventBridge.LAZY_SERVICES, "true");
+        try {
+            createCdi(Receiver.class);
+        }
+        finally {
+            System.clearProperty(ServiceEventBridge.LAZY_SERVICES);
+        }
+
+        CountingFactory factory = new CountingFactory();
+        getBundleContext().registerService(MyService.class.getName(), factory, null).unregister();
+
+        Assert.assertEquals(1, Receiver.added.get());
+        Assert.assertEquals(0, factory.created.get());
+    }
+
+    @Test
+    public void eventMetadata() {
+        createCdi(MetadataReceiver.class);
+
+        CountingFactory factory = new CountingFactory();
+        getBundleContext().registerService(MyService.class.getName(), factory, null);
+
+        Assert.assertEquals(1, MetadataReceiver.added.get());
+        Assert.assertEquals(0, factory.created.get());
+    }
+
+    public static class ReferenceOnlyReceiver {
+
+        static AtomicInteger added = new AtomicInteger();
+        static AtomicInteger removed = new AtomicInteger();
+
+        public void added(@Observes @ServiceAdded @ReferenceOnly ServiceCdiEvent<? extends MyService> event) {
+            Assert.assertNotNull(event.getReference());
+            added.incrementAndGet();
+        }
+
+        public void removed(@Observes @ServiceRemoved @ReferenceOnly ServiceCdiEvent<? extends MyService> event) {
+            Assert.assertEquals("Hello", event.getService().hello());
+            removed.incrementAndGet();
+        }
+    }
+
+    public static class Receiver {
+
+        static AtomicInteger added = new AtomicInteger();
+
+        public void added(@Observes @ServiceAdded ServiceCdiEvent<? extends MyService> event) {
+            added.incrementAndGet();
+        }
+    }
+
+    public static class MetadataReceiver {
+
+        static AtomicInteger added = new AtomicInteger();
+
+        public void added(@Observes @ServiceAdded @ReferenceOnly ServiceCdiEvent<MyService> event,
+            EventMetadata metadata) {
+            // the event is fired through the container, not passed to the observer method
+            Assert.assertNotNull(metadata);
+            Assert.assertTrue(metadata.getQualifiers().stream().anyMatch(ServiceAdded.class::isInstance));
+            added.incrementAndGet();
+        }
+    }
+
+    static class CountingFactory implements ServiceFactory<MyService> {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger released = new AtomicInteger();
+
+        @Override
+        public MyService getService(Bundle bundle, ServiceRegistration<MyService> registration) {
+            created.incrementAndGet();
+            return () -> "Hello";
+        }
+
+        @Override
+        public void ungetService(Bundle bundle, ServiceRegistration<MyService> registration, MyService service) {
+            released.incrementAndGet();
+        }
+    }
+
+    public interface MyService {
+        String hello();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.event.Observes;
+
+import org.jboss.weld.environment.se.WeldContainer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.cdi.api.event.ServiceAdded;
+import org.ops4j.pax.cdi.api.event.ServiceRemoved;
+import org.ops4j.pax.cdi.extension.impl.osgi.ServiceEventMultiplexer;
+import org.osgi.framework.ServiceRegistration;
+
+public class ServiceEventMultiplexedTest extends AbstractTest {
+
+    private static final int CONTAINERS = 3;
+
+    @Before
+    public void enableMultiplexer() {
+        System.setProperty(ServiceEventMultiplexer.ENABLED, "true");
+    }
+
+    @After
+    public void disableMultiplexer() {
+        System.clearProperty(ServiceEventMultiplexer.ENABLED);
+    }
+
+    @Test
+    public void test() {
+        for (int i = 0; i < CONTAINERS; i++) {
+            createCdi(ServiceEventReceiver.class);
+        }
+        Assert.assertEquals(CONTAINERS, ServiceEventMultiplexer.getSubscriptionCount(getBundleContext()));
+
+        ServiceRegistration<MyService> registration = register(MyService.class, () -> "Hello");
+        register(OtherService.class, () -> "Other");
+        Assert.assertEquals(CONTAINERS, ServiceEventReceiver.added.get());
+
+        registration.unregister();
+        Assert.assertEquals(CONTAINERS, ServiceEventReceiver.removed.get());
+
+        for (WeldContainer weld : welds) {
+            weld.close();
+        }
+        welds.clear();
+        Assert.assertEquals(0, ServiceEventMultiplexer.getSubscriptionCount(getBundleContext()));
+
+        register(MyService.class, () -> "Hello again");
+        Assert.assertEquals(CONTAINERS, ServiceEventReceiver.added.get());
+    }
+
+    public static class ServiceEventReceiver {
+
+        static AtomicInteger added = new AtomicInteger();
+        static AtomicInteger removed = new AtomicInteger();
+
+        public void added(@Observes @ServiceAdded MyService service) {
+            added.incrementAndGet();
+        }
+
+        public void removed(@Observes @ServiceRemoved MyService service) {
+            removed.incrementAndGet();
+        }
+    }
+
+    public interface MyService {
+
+        String hello();
+    }
+
+    public interface OtherService {
+
+        String hello();
+    }
+}
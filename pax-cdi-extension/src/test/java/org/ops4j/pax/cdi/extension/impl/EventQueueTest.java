@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import static org.mockito.Mockito.mock;
+
+public class EventQueueTest {
+
+    @Test
+    public void interruptedSubmitIsDiscarded() {
+        EventQueue queue = new EventQueue(mock(Bundle.class), 1);
+        AtomicBoolean delivered = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+
+        Thread.currentThread().interrupt();
+        queue.submit(() -> delivered.set(true), () -> released.set(true));
+
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertTrue(released.get());
+        Assert.assertFalse(delivered.get());
+        Assert.assertEquals(0, queue.getQueueDepth());
+        queue.close();
+    }
+
+    @Test
+    public void deliversAfterShutdown() throws InterruptedException {
+        EventQueue queue = new EventQueue(mock(Bundle.class), 1);
+        CountDownLatch first = new CountDownLatch(1);
+        queue.submit(first::countDown, () -> { });
+        Assert.assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        // the next event uses a new pool
+        EventQueue.shutdown();
+        CountDownLatch second = new CountDownLatch(1);
+        queue.submit(second::countDown, () -> { });
+        Assert.assertTrue(second.await(5, TimeUnit.SECONDS));
+        queue.close();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.extension.impl.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that weakly held keys are reclaimed. The long running variant is
+ * {@code ScopePrototypeSoakTest}, run with {@code -Psoak}.
+ */
+public class ConcurrentIdentityMapTest {
+
+    private static final int INSTANCES = 1000;
+
+    @Test
+    public void identity() {
+        ConcurrentIdentityMap<String> map = new ConcurrentIdentityMap<>();
+        String key = new String("key");
+        map.put(key, "value");
+        Assert.assertNull(map.remove(new String("key")));
+        Assert.assertEquals("value", map.remove(key));
+        Assert.assertEquals(0, map.size());
+    }
+
+    @Test
+    public void reclaimUnreferenced() throws InterruptedException {
+        AtomicInteger reclaimed = new AtomicInteger();
+        ConcurrentIdentityMap<Integer> map = new ConcurrentIdentityMap<>(value -> reclaimed.incrementAndGet());
+        List<Object> referenced = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            Object key = new Object();
+            if (i % 2 == 0) {
+                referenced.add(key);
+            }
+            map.put(key, i);
+        }
+
+        for (int i = 0; i < 50 && map.size() > referenced.size(); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(referenced.size(), map.size());
+        Assert.assertEquals(INSTANCES - referenced.size(), reclaimed.get());
+
+        // entries removed explicitly are not reclaimed
+        for (Object key : referenced) {
+            Assert.assertNotNull(map.remove(key));
+        }
+        Assert.assertEquals(0, map.size());
+        Assert.assertEquals(INSTANCES - referenced.size(), reclaimed.get());
+    }
+
+    @Test
+    public void strongKeysAreKept() throws InterruptedException {
+        ConcurrentIdentityMap<Integer> map = new ConcurrentIdentityMap<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            map.put(new Object(), i);
+        }
+        System.gc();
+        Thread.sleep(20);
+        Assert.assertEquals(INSTANCES, map.size());
+    }
+}
@@ -16,6 +16,7 @@
 package org.ops4j.pax.cdi.sample1.client;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.Instance;
@@ -44,7 +45,8 @@ public class IceCreamClient {
     @Service @Dynamic
     private Instance<IceCreamService> iceCreamServices;
 
-    private List<String> events = new ArrayList<>();
+    // events may be delivered asynchronously
+    private List<String> events = Collections.synchronizedList(new ArrayList<>());
 
     // we may be in trouble when this even is sent to us before reaching pax-cdi extension...
 
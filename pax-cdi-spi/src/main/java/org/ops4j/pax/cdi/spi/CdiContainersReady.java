@@ -0,0 +1,31 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.spi;
+
+/**
+ * Marker service registered by the Pax CDI extender when containers are started asynchronously.
+ * The service is present whenever all CDI containers of the currently tracked bean bundles have
+ * completed their startup, and it is unregistered while any container is still booting.
+ * <p>
+ * The service property {@link #CONTAINERS} holds the number of tracked containers.
+ */
+public interface CdiContainersReady {
+
+    /**
+     * Service property holding the number of started containers (Integer).
+     */
+    String CONTAINERS = "containers";
+}
@@ -18,9 +18,9 @@ package org.ops4j.pax.cdi.spi.scan;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Dictionary;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.ops4j.pax.cdi.spi.BeanBundles;
 import org.osgi.framework.Bundle;
@@ -29,11 +29,12 @@ import org.osgi.framework.Bundle;
 public class BeanBundleFilter implements BundleFilter {
 
     private BeanDescriptorParser parser;
+    /** read by the fork-join workers of a parallel scan */
     private Map<Bundle, BeanDescriptor> descriptorMap;
 
     public BeanBundleFilter(BeanDescriptorParser parser) {
         this.parser = parser;
-        this.descriptorMap = new HashMap<>();
+        this.descriptorMap = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.spi.scan;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk index of the bean classes found by {@link BeanScanner} for a given bundle. The index is
+ * stored in the data area of the bean bundle and is keyed by bundle id, symbolic name, version,
+ * last modification time, the attached fragments, the bundles wired through package imports and
+ * required bundles, and the bean descriptor (discovery mode and a digest of {@code beans.xml}).
+ * When the key matches, the scanner reuses the stored class names and skips parsing the bytecode
+ * of the bundle. The wired bundles are part of the key, as the scanner also returns the classes of
+ * imported bean bundles.
+ * <p>
+ * The index can be disabled by setting the framework property
+ * {@code org.ops4j.pax.cdi.spi.scan.BeanScanIndex.enabled} to {@code false}.
+ */
+public class BeanScanIndex {
+
+    public static final String ENABLED = BeanScanIndex.class.getName() + ".enabled";
+
+    private static Logger log = LoggerFactory.getLogger(BeanScanIndex.class);
+
+    private static final String INDEX_FILE = "org.ops4j.pax.cdi.scan.idx";
+
+    private static final String FORMAT = "pax-cdi-scan-1";
+
+    private Bundle bundle;
+    private File file;
+
+    private BeanScanIndex(Bundle bundle, File file) {
+        this.bundle = bundle;
+        this.file = file;
+    }
+
+    /**
+     * Returns the scan index for the given bundle.
+     *
+     * @param bundle
+     *            bean bundle
+     * @return scan index, or null if the index is disabled or the bundle has no data area
+     */
+    public static BeanScanIndex forBundle(Bundle bundle) {
+        BundleContext bc = bundle.getBundleContext();
+        if (bc == null) {
+            return null;
+        }
+        String enabled = bc.getProperty(ENABLED);
+        if (enabled != null && !Boolean.parseBoolean(enabled)) {
+            return null;
+        }
+        File file = bc.getDataFile(INDEX_FILE);
+        if (file == null) {
+            return null;
+        }
+        return new BeanScanIndex(bundle, file);
+    }
+
+    /**
+     * Computes the index key for the current state of the bundle.
+     *
+     * @param descriptor
+     *            bean descriptor of the bundle
+     * @return index key, or null if the bean descriptor cannot be read
+     */
+    public String computeKey(BeanDescriptor descriptor) {
+        String digest = digest(descriptor.getUrl());
+        if (digest == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(FORMAT);
+        key.append(';').append(bundle.getBundleId());
+        key.append(';').append(bundle.getSymbolicName());
+        key.append(';').append(bundle.getVersion());
+        key.append(';').append(bundle.getLastModified());
+        BundleWiring wiring = bundle.adapt(BundleWiring.class);
+        if (wiring != null) {
+            appendFragments(key, wiring);
+            appendProviders(key, wiring);
+        }
+        key.append(';').append(descriptor.getBeanDiscoveryMode());
+        key.append(';').append(digest);
+        return key.toString();
+    }
+
+    /**
+     * Loads the bean class names stored for the given key.
+     *
+     * @param key
+     *            index key
+     * @return bean class names, or null if there is no index or the key does not match
+     */
+    public Set<String> load(String key) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!key.equals(reader.readLine())) {
+                log.debug("scan index of bundle {} is out of date", bundle);
+                return null;
+            }
+            Set<String> classNames = new HashSet<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    classNames.add(line);
+                }
+            }
+            log.debug("using scan index of bundle {} with {} classes", bundle, classNames.size());
+            return classNames;
+        }
+        catch (IOException exc) {
+            log.warn("cannot read scan index " + file, exc);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given bean class names under the given key, replacing any previous index.
+     *
+     * @param key
+     *            index key
+     * @param classNames
+     *            bean class names
+     */
+    public void store(String key, Set<String> classNames) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
+            writer.write(key);
+            writer.write('\n');
+            for (String className : classNames) {
+                writer.write(className);
+                writer.write('\n');
+            }
+        }
+        catch (IOException exc) {
+            log.warn("cannot write scan index " + tmpFile, exc);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                log.warn("cannot write scan index {}", file);
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static void appendFragments(StringBuilder key, BundleWiring wiring) {
+        List<BundleWire> wires = wiring.getProvidedWires(BundleRevision.HOST_NAMESPACE);
+        if (wires == null) {
+            return;
+        }
+        for (BundleWire wire : wires) {
+            Bundle fragment = wire.getRequirer().getBundle();
+            key.append(";fragment:").append(fragment.getBundleId());
+            key.append(':').append(fragment.getVersion());
+            key.append(':').append(fragment.getLastModified());
+        }
+    }
+
+    /*
+     * Appends the bundles providing imported packages or required bundles. A provider which is
+     * updated, or a new provider after a refresh, changes the key.
+     */
+    private void appendProviders(StringBuilder key, BundleWiring wiring) {
+        Set<String> providers = new TreeSet<>();
+        addProviders(providers, wiring.getRequiredWires(BundleRevision.PACKAGE_NAMESPACE));
+        addProviders(providers, wiring.getRequiredWires(BundleRevision.BUNDLE_NAMESPACE));
+        for (String provider : providers) {
+            key.append(";provider:").append(provider);
+        }
+    }
+
+    private void addProviders(Set<String> providers, List<BundleWire> wires) {
+        if (wires == null) {
+            return;
+        }
+        for (BundleWire wire : wires) {
+            Bundle provider = wire.getProvider().getBundle();
+            if (provider != null && provider != bundle) {
+                providers.add(provider.getBundleId() + ":" + provider.getLastModified());
+            }
+        }
+    }
+
+    private static String digest(URL url) {
+        if (url == null || !url.getPath().endsWith(".xml")) {
+            return String.valueOf(url);
+        }
+        try (InputStream is = url.openStream()) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                md.update(buffer, 0, n);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (IOException | NoSuchAlgorithmException exc) {
+            log.debug("cannot compute digest of " + url, exc);
+            return null;
+        }
+    }
+}
@@ -16,10 +16,15 @@
 package org.ops4j.pax.cdi.spi.scan;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.ConversationScoped;
 import javax.enterprise.context.Dependent;
@@ -32,12 +37,16 @@ import javax.enterprise.inject.Stereotype;
 import org.apache.xbean.finder.AnnotationFinder;
 import org.apache.xbean.finder.AnnotationFinder.AnnotationInfo;
 import org.apache.xbean.finder.AnnotationFinder.ClassInfo;
+import org.apache.xbean.finder.archive.Archive;
 import org.ops4j.pax.cdi.api.BundleScoped;
 import org.ops4j.pax.cdi.api.Component;
 import org.ops4j.pax.cdi.api.PrototypeScoped;
 import org.ops4j.pax.cdi.api.Service;
 import org.ops4j.pax.cdi.api.SingletonScoped;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Scans a bundle for candidate managed bean classes. The scanner only looks at bundle entries but
@@ -48,18 +57,34 @@ import org.osgi.framework.Bundle;
  * The scanner returns all classes contained in the given bundle, including embedded archives and
  * directories from the bundle classpath, and all classes visible from required bundle wires
  * (package imports or required bundles), provided that the exporting bundle is a bean bundle.
+ * <p>
+ * By default, the bytecode is parsed on the calling thread. When the framework property
+ * {@code org.ops4j.pax.cdi.spi.scan.BeanScanner.parallelism} is set to a value greater than 1,
+ * the archive is split into chunks of {@code org.ops4j.pax.cdi.spi.scan.BeanScanner.chunkSize}
+ * classes which are parsed on a fork-join pool shared by all scanners. The pool is sized by the
+ * first parallel scan, a different parallelism only takes effect after {@link #shutdown()}.
  *
  * @author Harald Wellmann
  *
  */
 public class BeanScanner {
 
+    public static final String PARALLELISM = BeanScanner.class.getName() + ".parallelism";
+
+    public static final String CHUNK_SIZE = BeanScanner.class.getName() + ".chunkSize";
+
+    private static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private static Logger log = LoggerFactory.getLogger(BeanScanner.class);
+
     private static Set<String> beanDefiningAnnotations;
 
+    private static ForkJoinPool scanPool;
+
+    private Bundle bundle;
     private BeanBundleFilter filter;
     private BundleArchive archive;
     private Set<String> beanClasses = new HashSet<>();
-    private BeanAnnotationFinder finder;
 
     static {
         beanDefiningAnnotations = new HashSet<String>();
@@ -74,6 +99,7 @@ public class BeanScanner {
     }
 
     public BeanScanner(Bundle bundle, BeanDescriptorParser parser) {
+        this.bundle = bundle;
         this.filter = new BeanBundleFilter(parser);
         this.archive = new BundleArchive(bundle, filter);
     }
@@ -98,22 +124,60 @@ public class BeanScanner {
     }
 
     /**
-     * Scans the given bundle and all imports for bean classes.
+     * Scans the given bundle and all imports for bean classes. If the bundle has an up-to-date
+     * {@link BeanScanIndex}, the bean classes are taken from the index without parsing any
+     * bytecode.
      */
     public void scan() {
-        finder = new BeanAnnotationFinder(archive);
-        for (String className : finder.getAnnotatedClassNames()) {
-            if (isBeanClass(className)) {
-                beanClasses.add(className);
+        BeanScanIndex index = BeanScanIndex.forBundle(bundle);
+        String key = null;
+        if (index != null) {
+            key = index.computeKey(filter.findDescriptor(bundle));
+        }
+        if (key != null) {
+            Set<String> indexedClasses = index.load(key);
+            if (indexedClasses != null) {
+                beanClasses.addAll(indexedClasses);
+                return;
+            }
+        }
+        int parallelism = getIntProperty(PARALLELISM, 1);
+        if (parallelism > 1) {
+            scanParallel(getScanPool(parallelism), getIntProperty(CHUNK_SIZE, DEFAULT_CHUNK_SIZE));
+        }
+        else {
+            beanClasses.addAll(findBeanClasses(new BeanAnnotationFinder(archive)));
+        }
+        if (key != null) {
+            index.store(key, beanClasses);
+        }
+    }
+
+    private void scanParallel(ForkJoinPool pool, int chunkSize) {
+        List<ForkJoinTask<List<String>>> tasks = new ArrayList<>();
+        for (Archive chunk : archive.split(chunkSize)) {
+            tasks.add(pool.submit(() -> findBeanClasses(new BeanAnnotationFinder(chunk))));
+        }
+        for (ForkJoinTask<List<String>> task : tasks) {
+            beanClasses.addAll(task.join());
+        }
+    }
+
+    private List<String> findBeanClasses(BeanAnnotationFinder annotationFinder) {
+        List<String> classNames = new ArrayList<>();
+        for (String className : annotationFinder.getAnnotatedClassNames()) {
+            if (isBeanClass(annotationFinder, className)) {
+                classNames.add(className);
             }
         }
+        return classNames;
     }
 
-    private boolean isBeanClass(String className) {
+    private boolean isBeanClass(BeanAnnotationFinder annotationFinder, String className) {
         Bundle provider = archive.getProvider(className);
         BeanDescriptor descriptor = filter.findDescriptor(provider);
         if (descriptor.getBeanDiscoveryMode().equals(BeanDiscoveryMode.ANNOTATED)) {
-            ClassInfo classInfo = finder.getClassInfo(className);
+            ClassInfo classInfo = annotationFinder.getClassInfo(className);
             return isBeanAnnotatedClass(classInfo);
         }
         return true;
@@ -131,4 +195,58 @@ public class BeanScanner {
     private boolean isBeanAnnotation(AnnotationInfo annotationInfo) {
         return beanDefiningAnnotations.contains(annotationInfo.getName());
     }
+
+    private int getIntProperty(String key, int defaultValue) {
+        BundleContext bc = bundle.getBundleContext();
+        String value = (bc == null) ? null : bc.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result > 0) {
+                return result;
+            }
+        }
+        catch (NumberFormatException exc) {
+            // logged below
+        }
+        log.warn("invalid value {} of property {}, using {}", value, key, defaultValue);
+        return defaultValue;
+    }
+
+    /**
+     * Returns the fork-join pool shared by all scanners, creating it on first use. The pool size
+     * is determined by the scanner creating the pool, a different size is logged and ignored.
+     *
+     * @param parallelism
+     *            number of worker threads
+     * @return shared pool
+     */
+    private static synchronized ForkJoinPool getScanPool(int parallelism) {
+        if (scanPool == null) {
+            scanPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                    .newThread(pool);
+                thread.setName("pax-cdi-scan-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        else if (scanPool.getParallelism() != parallelism) {
+            log.warn("scan pool has parallelism {}, ignoring {} until the pool is shut down",
+                scanPool.getParallelism(), parallelism);
+        }
+        return scanPool;
+    }
+
+    /**
+     * Shuts down the fork-join pool shared by all scanners, if any. The next parallel scan creates
+     * a new pool.
+     */
+    public static synchronized void shutdown() {
+        if (scanPool != null) {
+            scanPool.shutdown();
+            scanPool = null;
+        }
+    }
 }
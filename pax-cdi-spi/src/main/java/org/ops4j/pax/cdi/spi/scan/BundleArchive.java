@@ -18,8 +18,10 @@ package org.ops4j.pax.cdi.spi.scan;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.xbean.finder.archive.Archive;
@@ -96,6 +98,30 @@ public class BundleArchive implements Archive {
         }
     }
 
+    private class ChunkArchive implements Archive {
+
+        private List<Entry> chunkEntries;
+
+        ChunkArchive(List<Entry> chunkEntries) {
+            this.chunkEntries = chunkEntries;
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return chunkEntries.iterator();
+        }
+
+        @Override
+        public InputStream getBytecode(String className) throws IOException, ClassNotFoundException {
+            return BundleArchive.this.getBytecode(className);
+        }
+
+        @Override
+        public Class<?> loadClass(String className) throws ClassNotFoundException {
+            return BundleArchive.this.loadClass(className);
+        }
+    }
+
     public BundleArchive(Bundle bundle) {
         this(bundle, new DefaultBundleFilter());
     }
@@ -136,6 +162,32 @@ public class BundleArchive implements Archive {
         return bundle.loadClass(className);
     }
 
+    /**
+     * Lists the entries of this archive and splits them into archives with at most the given
+     * number of entries each. The chunks delegate bytecode access and class loading to this
+     * archive and can be scanned concurrently.
+     *
+     * @param chunkSize
+     *            maximum number of entries per chunk
+     * @return list of chunk archives
+     */
+    public List<Archive> split(int chunkSize) {
+        List<Archive> chunks = new ArrayList<>();
+        List<Entry> chunk = new ArrayList<>(chunkSize);
+        Iterator<Entry> it = iterator();
+        while (it.hasNext()) {
+            chunk.add(it.next());
+            if (chunk.size() == chunkSize) {
+                chunks.add(new ChunkArchive(chunk));
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(new ChunkArchive(chunk));
+        }
+        return chunks;
+    }
+
     public Bundle getProvider(String className) {
         BundleArchiveEntry entry = (BundleArchiveEntry) entries.get(className);
         if (entry == null) {
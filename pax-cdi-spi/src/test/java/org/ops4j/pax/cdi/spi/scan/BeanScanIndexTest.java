@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.spi.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BeanScanIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Bundle bundle;
+    private BundleContext bundleContext;
+    private BundleWiring wiring;
+    private BeanDescriptor descriptor;
+
+    @Before
+    public void setUp() throws IOException {
+        bundle = mock(Bundle.class);
+        bundleContext = mock(BundleContext.class);
+        wiring = mock(BundleWiring.class);
+        when(bundle.getBundleId()).thenReturn(7L);
+        when(bundle.getSymbolicName()).thenReturn("beans");
+        when(bundle.getVersion()).thenReturn(Version.emptyVersion);
+        when(bundle.getLastModified()).thenReturn(1000L);
+        when(bundle.getBundleContext()).thenReturn(bundleContext);
+        when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+        when(bundleContext.getDataFile("org.ops4j.pax.cdi.scan.idx"))
+            .thenReturn(new File(folder.getRoot(), "index"));
+        descriptor = new DefaultBeanDescriptor(beansXml("<beans/>"), BeanDiscoveryMode.ALL, "1.1");
+    }
+
+    @Test
+    public void storeAndLoad() {
+        BeanScanIndex index = BeanScanIndex.forBundle(bundle);
+        String key = index.computeKey(descriptor);
+        Assert.assertNull(index.load(key));
+
+        Set<String> classNames = new HashSet<>(Arrays.asList("a.First", "b.Second"));
+        index.store(key, classNames);
+        Assert.assertEquals(classNames, index.load(key));
+        Assert.assertNull(index.load(key + ";other"));
+    }
+
+    @Test
+    public void disabled() {
+        when(bundleContext.getProperty(BeanScanIndex.ENABLED)).thenReturn("false");
+        Assert.assertNull(BeanScanIndex.forBundle(bundle));
+    }
+
+    @Test
+    public void keyIsStable() {
+        BeanScanIndex index = BeanScanIndex.forBundle(bundle);
+        Assert.assertEquals(index.computeKey(descriptor), index.computeKey(descriptor));
+    }
+
+    @Test
+    public void keyChangesWithBundle() {
+        BeanScanIndex index = BeanScanIndex.forBundle(bundle);
+        String key = index.computeKey(descriptor);
+        when(bundle.getLastModified()).thenReturn(2000L);
+        Assert.assertNotEquals(key, index.computeKey(descriptor));
+    }
+
+    @Test
+    public void keyChangesWithDescriptor() throws IOException {
+        BeanScanIndex index = BeanScanIndex.forBundle(bundle);
+        String key = index.computeKey(descriptor);
+        BeanDescriptor changed = new DefaultBeanDescriptor(beansXml("<beans></beans>"),
+            BeanDiscoveryMode.ALL, "1.1");
+        Assert.assertNotEquals(key, index.computeKey(changed));
+    }
+
+    @Test
+    public void keyChangesWithProviders() {
+        BeanScanIndex index = BeanScanIndex.forBundle(bundle);
+        Bundle provider = mock(Bundle.class);
+        when(provider.getBundleId()).thenReturn(3L);
+        when(provider.getLastModified()).thenReturn(1000L);
+        BundleWire wire = wire(provider);
+        when(wiring.getRequiredWires(BundleRevision.PACKAGE_NAMESPACE))
+            .thenReturn(Collections.singletonList(wire));
+        String key = index.computeKey(descriptor);
+
+        // an updated imported bean bundle may have other bean classes
+        when(provider.getLastModified()).thenReturn(2000L);
+        String updated = index.computeKey(descriptor);
+        Assert.assertNotEquals(key, updated);
+
+        // a required bundle with the same revision is only listed once
+        when(wiring.getRequiredWires(BundleRevision.BUNDLE_NAMESPACE))
+            .thenReturn(Collections.singletonList(wire));
+        Assert.assertEquals(updated, index.computeKey(descriptor));
+    }
+
+    @Test
+    public void unreadableDescriptorHasNoKey() throws IOException {
+        BeanScanIndex index = BeanScanIndex.forBundle(bundle);
+        URL missing = new File(folder.getRoot(), "missing/beans.xml").toURI().toURL();
+        Assert.assertNull(index.computeKey(new DefaultBeanDescriptor(missing,
+            BeanDiscoveryMode.ALL, "1.1")));
+    }
+
+    private URL beansXml(String content) throws IOException {
+        File file = new File(folder.newFolder(), "beans.xml");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.toURI().toURL();
+    }
+
+    private static BundleWire wire(Bundle provider) {
+        BundleRevision revision = mock(BundleRevision.class);
+        when(revision.getBundle()).thenReturn(provider);
+        BundleWire wire = mock(BundleWire.class);
+        when(wire.getProvider()).thenReturn(revision);
+        return wire;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.weld.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.inject.spi.DeploymentException;
+
+import org.jboss.weld.manager.api.ExecutorServices;
+
+/**
+ * Weld {@code ExecutorServices} backed by a thread pool which is shared by all Weld containers
+ * created by this adapter. Weld cleans up its services when a container is shut down, which would
+ * shut down the pool, so {@link #cleanup()} is a no-op and the pool is only shut down by
+ * {@link #shutdownPool()} when the adapter is stopped.
+ * <p>
+ * Tasks run with the context class loader of the submitting thread, i.e. the context class loader
+ * of the container being deployed.
+ */
+class SharedExecutorServices implements ExecutorServices {
+
+    private final int threadPoolSize;
+    private final ExecutorService executor;
+
+    SharedExecutorServices(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+        this.executor = Executors.newFixedThreadPool(threadPoolSize, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "pax-cdi-weld-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public ExecutorService getTaskExecutor() {
+        return executor;
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAllAndCheckForExceptions(
+        Collection<? extends Callable<T>> tasks) {
+        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (final Callable<T> task : tasks) {
+            wrapped.add(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader prevTccl = thread.getContextClassLoader();
+                thread.setContextClassLoader(cl);
+                try {
+                    return task.call();
+                }
+                finally {
+                    thread.setContextClassLoader(prevTccl);
+                }
+            });
+        }
+        try {
+            return checkForExceptions(executor.invokeAll(wrapped));
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new DeploymentException(exc);
+        }
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAllAndCheckForExceptions(TaskFactory<T> factory) {
+        return invokeAllAndCheckForExceptions(factory.createTasks(threadPoolSize));
+    }
+
+    private <T> List<Future<T>> checkForExceptions(List<Future<T>> futures) {
+        for (Future<T> future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new DeploymentException(exc);
+            }
+            catch (ExecutionException exc) {
+                Throwable cause = exc.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new DeploymentException(cause);
+            }
+        }
+        return futures;
+    }
+
+    @Override
+    public void cleanup() {
+        // shared by all containers, see shutdownPool()
+    }
+
+    void shutdownPool() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "SharedExecutorServices [threadPoolSize=" + threadPoolSize + "]";
+    }
+}
@@ -33,6 +33,7 @@ import org.jboss.weld.config.ConfigurationKey;
 import org.jboss.weld.configuration.spi.ExternalConfiguration;
 import org.jboss.weld.configuration.spi.helpers.ExternalConfigurationBuilder;
 import org.jboss.weld.manager.BeanManagerImpl;
+import org.jboss.weld.manager.api.ExecutorServices;
 import org.jboss.weld.serialization.spi.ProxyServices;
 import org.ops4j.pax.cdi.spi.AbstractCdiContainer;
 import org.ops4j.pax.cdi.spi.CdiClassLoaderBuilderCustomizer;
@@ -42,20 +43,34 @@ import org.ops4j.pax.cdi.spi.util.Exceptions;
 import org.ops4j.pax.cdi.weld.impl.bda.BundleDeployment;
 import org.ops4j.pax.cdi.weld.impl.util.OsgiProxyService;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * {@code CdiContainer} implementation wrapping a JBoss Weld container, represented by a
  * {@link WeldBootstrap}.
+ * <p>
+ * Weld's concurrent deployment is disabled by default. It can be enabled for all bean bundles by
+ * the framework property {@code org.ops4j.pax.cdi.weld.impl.WeldCdiContainer.concurrentDeployment}
+ * and for a single bean bundle by the manifest header {@code Pax-CDI-Weld-Concurrent-Deployment},
+ * which takes precedence. Concurrent deployments run on the thread pool shared by all containers
+ * of the {@link WeldCdiContainerFactory}.
  *
  * @author Harald Wellmann
  *
  */
 public class WeldCdiContainer extends AbstractCdiContainer {
 
+    public static final String CONCURRENT_DEPLOYMENT = WeldCdiContainer.class.getName()
+        + ".concurrentDeployment";
+
+    public static final String CONCURRENT_DEPLOYMENT_HEADER = "Pax-CDI-Weld-Concurrent-Deployment";
+
     private Logger log = LoggerFactory.getLogger(WeldCdiContainer.class);
 
+    private WeldCdiContainerFactory factory;
+
     /**
      * Helper for accessing Instance and Event of CDI container.
      */
@@ -65,6 +80,8 @@ public class WeldCdiContainer extends AbstractCdiContainer {
 
     private BeanManagerImpl manager;
 
+    private OsgiProxyService proxyServices;
+
     private Object environment;
 
     private AtomicInteger pauses = new AtomicInteger();
@@ -72,6 +89,8 @@ public class WeldCdiContainer extends AbstractCdiContainer {
     /**
      * Construct a CDI container for the given extended bundle.
      *
+     * @param factory
+     *            factory creating this container
      * @param ownBundle
      *            bundle containing this class
      * @param bundle
@@ -79,9 +98,10 @@ public class WeldCdiContainer extends AbstractCdiContainer {
      * @param extensionBundles
      *            CDI extension bundles to be loaded by OpenWebBeans
      */
-    public WeldCdiContainer(Bundle ownBundle, Bundle bundle,
+    public WeldCdiContainer(WeldCdiContainerFactory factory, Bundle ownBundle, Bundle bundle,
         Collection<Bundle> extensionBundles) {
         super(bundle, extensionBundles, Collections.singletonList(ownBundle));
+        this.factory = factory;
         log.debug("creating Weld CDI container for bundle {}", bundle);
     }
 
@@ -113,20 +133,26 @@ public class WeldCdiContainer extends AbstractCdiContainer {
         pause();
         String contextId = getBundle().getSymbolicName() + ":" + getBundle().getBundleId();
 
+        boolean concurrentDeployment = isConcurrentDeployment();
         ExternalConfigurationBuilder configurationBuilder = new ExternalConfigurationBuilder()
             // Use relaxed construction by default
             .add(ConfigurationKey.RELAXED_CONSTRUCTION.get(), true)
-            .add(ConfigurationKey.CONCURRENT_DEPLOYMENT.get(), false);
+            .add(ConfigurationKey.CONCURRENT_DEPLOYMENT.get(), concurrentDeployment);
         deployment.getServices()
             .add(ExternalConfiguration.class, configurationBuilder.build());
+        if (concurrentDeployment) {
+            log.debug("using concurrent deployment for bundle {}", getBundle());
+            deployment.getServices()
+                .add(ExecutorServices.class, factory.getExecutorServices());
+        }
 
         bootstrap.startContainer(contextId, OsgiEnvironment.getInstance(), deployment);
         // Add the ProxyServices service: we rely on the BeanManager to use its annotated
         // types cache to discover type closures which is required for proxied beans
         // whose type closures span multiple bundles
-        deployment.getServices()
-            .add(ProxyServices.class, new OsgiProxyService(
-                bootstrap.getManager(beanDeploymentArchive), getContextClassLoader()));
+        proxyServices = new OsgiProxyService(
+            bootstrap.getManager(beanDeploymentArchive), getContextClassLoader());
+        deployment.getServices().add(ProxyServices.class, proxyServices);
 
         bootstrap.startInitialization();
         bootstrap.deployBeans();
@@ -135,6 +161,15 @@ public class WeldCdiContainer extends AbstractCdiContainer {
         resume();
     }
 
+    private boolean isConcurrentDeployment() {
+        String value = getBundle().getHeaders().get(CONCURRENT_DEPLOYMENT_HEADER);
+        if (value == null) {
+            BundleContext bc = getBundle().getBundleContext();
+            value = (bc == null) ? null : bc.getProperty(CONCURRENT_DEPLOYMENT);
+        }
+        return Boolean.parseBoolean(value == null ? null : value.trim());
+    }
+
     @Override
     public void pause() {
         pauses.incrementAndGet();
@@ -170,6 +205,7 @@ public class WeldCdiContainer extends AbstractCdiContainer {
                 public Object call() throws Exception {
                     manager.fireEvent(environment, DestroyedLiteral.APPLICATION);
                     bootstrap.shutdown();
+                    log.debug("proxy class loading for bundle {}: {}", getBundle(), proxyServices);
                     return null;
                 }
             });
@@ -217,6 +253,9 @@ public class WeldCdiContainer extends AbstractCdiContainer {
         if (wrappedClass.isAssignableFrom(BeanManagerImpl.class)) {
             return wrappedClass.cast(manager);
         }
+        if (wrappedClass.isAssignableFrom(OsgiProxyService.class)) {
+            return wrappedClass.cast(proxyServices);
+        }
         if (wrappedClass.isAssignableFrom(CdiClassLoaderBuilderCustomizer.class)) {
             return wrappedClass.cast(this);
         }
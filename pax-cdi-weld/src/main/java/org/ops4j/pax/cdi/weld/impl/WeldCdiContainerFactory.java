@@ -31,16 +31,25 @@ import org.slf4j.LoggerFactory;
 
 /**
  * {@link CdiContainerFactory} implementation based on Weld.
+ * <p>
+ * Containers with concurrent deployment enabled share a single thread pool, created on demand.
+ * Its size is given by the framework property
+ * {@code org.ops4j.pax.cdi.weld.impl.WeldCdiContainerFactory.threadPoolSize} (default: number of
+ * processors).
  *
  * @author Harald Wellmann
  *
  */
 public class WeldCdiContainerFactory implements CdiContainerFactory {
 
+    public static final String THREAD_POOL_SIZE = WeldCdiContainerFactory.class.getName()
+        + ".threadPoolSize";
+
     private Logger log = LoggerFactory.getLogger(WeldCdiContainerFactory.class);
 
     private Map<Long, CdiContainer> containers = new HashMap<Long, CdiContainer>();
     private BundleContext bundleContext;
+    private SharedExecutorServices executorServices;
 
     /**
      * Called by the OSGi framework when this bundle is started. Sets the singleton provider.
@@ -56,8 +65,12 @@ public class WeldCdiContainerFactory implements CdiContainerFactory {
     /**
      * Called by the OSGi framework when this bundle is stopped. Resets the singleton provider.
      */
-    public void deactivate() {
+    public synchronized void deactivate() {
         SingletonProvider.reset();
+        if (executorServices != null) {
+            executorServices.shutdownPool();
+            executorServices = null;
+        }
     }
 
     @Override
@@ -67,7 +80,7 @@ public class WeldCdiContainerFactory implements CdiContainerFactory {
 
     @Override
     public CdiContainer createContainer(Bundle bundle, Collection<Bundle> extensions) {
-        WeldCdiContainer container = new WeldCdiContainer(bundleContext.getBundle(),
+        WeldCdiContainer container = new WeldCdiContainer(this, bundleContext.getBundle(),
             bundle, extensions);
         containers.put(bundle.getBundleId(), container);
         log.debug("Weld Container created");
@@ -84,6 +97,30 @@ public class WeldCdiContainerFactory implements CdiContainerFactory {
         return Collections.unmodifiableCollection(containers.values());
     }
 
+    /**
+     * Returns the executor services shared by all containers using concurrent deployment,
+     * creating them on first use.
+     *
+     * @return shared executor services
+     */
+    synchronized SharedExecutorServices getExecutorServices() {
+        if (executorServices == null) {
+            int threadPoolSize = Runtime.getRuntime().availableProcessors();
+            String value = bundleContext.getProperty(THREAD_POOL_SIZE);
+            if (value != null) {
+                try {
+                    threadPoolSize = Math.max(1, Integer.parseInt(value.trim()));
+                }
+                catch (NumberFormatException exc) {
+                    log.warn("invalid value for {}: {}", THREAD_POOL_SIZE, value);
+                }
+            }
+            log.debug("creating shared Weld thread pool with {} threads", threadPoolSize);
+            executorServices = new SharedExecutorServices(threadPoolSize);
+        }
+        return executorServices;
+    }
+
     @Override
     public void removeContainer(Bundle bundle) {
         containers.remove(bundle.getBundleId());
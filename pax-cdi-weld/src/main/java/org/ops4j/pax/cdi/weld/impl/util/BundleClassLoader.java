@@ -21,12 +21,18 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Enumeration;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleReference;
 
 /**
  * Class loader that uses the a bundle in order to implement class loader functionality.
+ * <p>
+ * The class loader is parallel capable, so concurrent loads of different classes only wait for
+ * each other when they load the same class. Classes found are cached by name, so loading them
+ * again does not go through the parent and the bundle.
  *
  * @author Alin Dreghiciu
  * @since 0.1.0, December 29, 2007
@@ -35,6 +41,10 @@ public class BundleClassLoader extends ClassLoader implements BundleReference {
 
     private static final EmptyEnumeration<URL> EMPTY_URL_ENUMERATION = new EmptyEnumeration<URL>();
 
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     private static final class EmptyEnumeration<T>
             implements Enumeration<T> {
 
@@ -52,6 +62,11 @@ public class BundleClassLoader extends ClassLoader implements BundleReference {
      */
     private final Bundle m_bundle;
 
+    /**
+     * Classes found, by name.
+     */
+    private final ConcurrentMap<String, Class<?>> m_classes = new ConcurrentHashMap<String, Class<?>>();
+
     /**
      * Creates a bundle class loader with no parent.
      *
@@ -159,25 +174,46 @@ public class BundleClassLoader extends ClassLoader implements BundleReference {
     }
 
     /**
-     * If there is a parent class loader use the super implementation that will first use the parent and as a fallback
-     * it will call findClass(). In case there is no parent directy use findClass() as if we call the super
-     * implementation it will use the VMClassLoader, fact that should be avoided.
+     * Returns a class found before or a class defined by this class loader. Otherwise, if there is a parent class
+     * loader it is used first and findClass() is called as a fallback. In case there is no parent directly use
+     * findClass(), as the super implementation would use the VMClassLoader, fact that should be avoided.
+     * <p>
+     * Classes not found are not cached, as classes may be defined by this class loader later on.
      *
-     * @see ClassLoader#getResource(String)
+     * @see ClassLoader#loadClass(String, boolean)
      */
     @Override
     protected Class<?> loadClass(final String name, final boolean resolve)
             throws ClassNotFoundException {
-        if (getParent() != null) {
-            return super.loadClass(name, resolve);
+        Class<?> classToLoad = m_classes.get(name);
+        if (classToLoad == null) {
+            synchronized (getClassLoadingLock(name)) {
+                classToLoad = findLoadedClass(name);
+                if (classToLoad == null) {
+                    classToLoad = findClassInParentOrBundle(name);
+                }
+                m_classes.putIfAbsent(name, classToLoad);
+            }
         }
-        final Class<?> classToLoad = findClass(name);
         if (resolve) {
             resolveClass(classToLoad);
         }
         return classToLoad;
     }
 
+    private Class<?> findClassInParentOrBundle(final String name)
+            throws ClassNotFoundException {
+        final ClassLoader parent = getParent();
+        if (parent != null) {
+            try {
+                return parent.loadClass(name);
+            } catch (ClassNotFoundException e) {
+                // not found in parent, fall back to the bundle
+            }
+        }
+        return findClass(name);
+    }
+
     /**
      * Use bundle to find resource.
      *
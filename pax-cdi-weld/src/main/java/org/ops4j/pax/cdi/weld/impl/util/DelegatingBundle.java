@@ -18,7 +18,6 @@ package org.ops4j.pax.cdi.weld.impl.util;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -27,20 +26,22 @@ import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.Version;
 import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
 import org.osgi.framework.wiring.BundleWiring;
 
 /**
@@ -52,26 +53,19 @@ class DelegatingBundle implements Bundle {
 
     private static final String PACKAGE_CACHE = DelegatingBundle.class.getName() + ".packageCache";    
     private static final String RESOURCE_CACHE_SIZE = DelegatingBundle.class.getName() + ".resourceCacheSize";
-    
-    private static final URL NOT_FOUND_RESOURCE;
-    
-    static {
-        try {
-            NOT_FOUND_RESOURCE = new URL("file://foo");
-        }
-        catch (MalformedURLException e) {
-            throw new Error(e);
-        }        
-    }
+    private static final String CLASS_NOT_FOUND_CACHE_SIZE = DelegatingBundle.class.getName() + ".classNotFoundCacheSize";
     
     private Set<Bundle> bundles;
     private Bundle bundle;
     private BundleContext bundleContext;
 
     private final boolean hasDynamicImports;
-    private final Map<String, URL> resourceCache;
+    private final ResourceCache resourceCache;
+    private final AtomicLong bundlesChanged = new AtomicLong();
     private final boolean packageCacheEnabled;
-    private Map<String, Bundle> packageCache;
+    private final ResourceCache classNotFoundCache;
+    private Map<String, Bundle> mainPackages;
+    private volatile Map<String, Bundle> packageCache;
     
     DelegatingBundle(Collection<Bundle> bundles) {
         if (bundles.isEmpty()) {
@@ -86,17 +80,29 @@ class DelegatingBundle implements Bundle {
         this.hasDynamicImports = hasDynamicImports(iterator);
         this.resourceCache = initResourceCache();
         this.packageCacheEnabled = initPackageCacheEnabled();
+        this.classNotFoundCache = initClassNotFoundCache();
     }
 
     DelegatingBundle(Bundle bundle) {
         this(Collections.singletonList(bundle));
     }
     
-    private static Map<String, URL> initResourceCache() {
+    private static ResourceCache initResourceCache() {
         String value = System.getProperty(RESOURCE_CACHE_SIZE, "250");
         int size = Integer.parseInt(value);
         if (size > 0) {
-            return Collections.synchronizedMap(new Cache<String, URL>(size));
+            return new ResourceCache(size);
+        }
+        else {
+            return null;
+        }
+    }
+    
+    private static ResourceCache initClassNotFoundCache() {
+        String value = System.getProperty(CLASS_NOT_FOUND_CACHE_SIZE, "1000");
+        int size = Integer.parseInt(value);
+        if (size > 0) {
+            return new ResourceCache(size);
         }
         else {
             return null;
@@ -122,96 +128,259 @@ class DelegatingBundle implements Bundle {
         return false;
     }
     
-    private synchronized Map<String, Bundle> getPackageBundleMap() {
-        if (packageCache == null) {
-            packageCache = buildPackageBundleMap();
+    private Map<String, Bundle> getPackageBundleMap() {
+        Map<String, Bundle> map = packageCache;
+        if (map == null) {
+            synchronized (this) {
+                map = packageCache;
+                if (map == null) {
+                    map = buildPackageBundleMap();
+                    packageCache = map;
+                }
+            }
         }
-        return packageCache;
+        return map;
     }
     
-    private synchronized void reset() {
-        resourceCache.clear();
-        packageCache = null;
+    /*
+     * Adds the packages exported by a new bundle to the index. Packages already in the index keep
+     * their bundle. The index is copied and republished, so readers never wait. Names not found
+     * before are dropped if their package now maps to the new bundle or is not in the index, as
+     * the new bundle is probed for them.
+     */
+    private synchronized void bundleAdded(Bundle b) {
+        Map<String, Bundle> map = packageCache;
+        if (map == null) {
+            // built with all bundles on first use
+            return;
+        }
+        Map<String, Bundle> copy = new HashMap<String, Bundle>(map);
+        addExportedPackages(copy, b, b.adapt(BundleWiring.class));
+        Map<String, Bundle> index;
+        if (copy.size() == map.size()) {
+            index = map;
+        }
+        else {
+            index = Collections.unmodifiableMap(copy);
+            packageCache = index;
+        }
+        if (classNotFoundCache != null) {
+            classNotFoundCache.removeNotFound(name -> {
+                Bundle owner = index.get(getPackageName(name));
+                return owner == null || owner == b;
+            });
+        }
     }
 
+    private synchronized void bundleRemoved() {
+        if (packageCache != null) {
+            packageCache = buildPackageBundleMap();
+        }
+        if (classNotFoundCache != null) {
+            classNotFoundCache.clear();
+        }
+    }
+
+    /*
+     * Adds a package, found by probing the bundles, to the index.
+     */
+    private synchronized void addPackage(String packageName, Bundle b) {
+        Map<String, Bundle> map = packageCache;
+        if (map != null && !map.containsKey(packageName)) {
+            Map<String, Bundle> copy = new HashMap<String, Bundle>(map);
+            copy.put(packageName, b);
+            packageCache = Collections.unmodifiableMap(copy);
+        }
+    }
+
+    /*
+     * Maps the local, exported and imported packages of the main bundle to the main bundle, and
+     * the packages exported by the remaining bundles to the first bundle exporting them, so an
+     * export of another bundle never hides a private package of the main bundle.
+     */
     private Map<String, Bundle> buildPackageBundleMap() {
+        if (mainPackages == null) {
+            mainPackages = buildMainPackageBundleMap();
+        }
+        Map<String, Bundle> map = new HashMap<String, Bundle>(mainPackages);
+        // the remaining bundles are only consulted for their exported packages
+        for (Bundle b : bundles) {
+            if (b != bundle) {
+                addExportedPackages(map, b, b.adapt(BundleWiring.class));
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private Map<String, Bundle> buildMainPackageBundleMap() {
         Map<String, Bundle> map = new HashMap<String, Bundle>();
-        Iterator<Bundle> iterator = bundles.iterator();
-        // skip first bundle
-        iterator.next();
-        // attempt to load the class from the remaining bundles
-        while (iterator.hasNext()) {
-            Bundle b = iterator.next();
-            BundleWiring wiring = b.adapt(BundleWiring.class);
-            if (wiring != null) {
-                List<BundleCapability> capabilities = wiring.getCapabilities(BundleRevision.PACKAGE_NAMESPACE);
-                if (capabilities != null && !capabilities.isEmpty()) {
-                    for (BundleCapability capability : capabilities) {
-                        Map<String, Object> attributes = capability.getAttributes();
-                        if (attributes != null) {
-                            String packageName = String.valueOf(attributes.get(BundleRevision.PACKAGE_NAMESPACE));
-                            if (!map.containsKey(packageName)) {
-                                map.put(packageName, b);
-                            }
-                        }
-                    }
+        BundleWiring mainWiring = bundle.adapt(BundleWiring.class);
+        if (mainWiring != null) {
+            addLocalPackages(map, mainWiring);
+            addExportedPackages(map, bundle, mainWiring);
+            for (BundleWire wire : mainWiring.getRequiredWires(null)) {
+                String namespace = wire.getCapability().getNamespace();
+                if (BundleRevision.PACKAGE_NAMESPACE.equals(namespace)) {
+                    addPackage(map, bundle, wire.getCapability());
+                }
+                else if (BundleRevision.BUNDLE_NAMESPACE.equals(namespace)) {
+                    // packages of a required bundle are visible through the main bundle
+                    addExportedPackages(map, bundle, wire.getProviderWiring());
                 }
             }
         }
         return map;
     }
+
+    private void addLocalPackages(Map<String, Bundle> map, BundleWiring mainWiring) {
+        Collection<String> resources = mainWiring.listResources("/", "*.class",
+            BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE);
+        if (resources != null) {
+            for (String resource : resources) {
+                int index = resource.lastIndexOf('/');
+                if (index > 0) {
+                    map.put(resource.substring(0, index).replace('/', '.'), bundle);
+                }
+            }
+        }
+    }
+
+    private static void addExportedPackages(Map<String, Bundle> map, Bundle b, BundleWiring wiring) {
+        if (wiring == null) {
+            return;
+        }
+        List<BundleCapability> capabilities = wiring.getCapabilities(BundleRevision.PACKAGE_NAMESPACE);
+        if (capabilities != null) {
+            for (BundleCapability capability : capabilities) {
+                addPackage(map, b, capability);
+            }
+        }
+    }
+
+    private static void addPackage(Map<String, Bundle> map, Bundle b, BundleCapability capability) {
+        Map<String, Object> attributes = capability.getAttributes();
+        if (attributes != null) {
+            Object packageName = attributes.get(BundleRevision.PACKAGE_NAMESPACE);
+            if (packageName != null && !map.containsKey(packageName)) {
+                map.put(packageName.toString(), b);
+            }
+        }
+    }
     
     public Bundle getMainBundle() {
         return bundle;
     }
-        
+
+    /**
+     * Loads a class from the bundle providing its package, according to the package index.
+     * Classes from packages which are not in the index, e.g. boot delegated or dynamically
+     * imported packages, are looked up in the main bundle and then in the remaining bundles.
+     * A class not found in the bundle indexed for its package is looked up in the remaining
+     * bundles, as a package may be split across bundles. Names not found in indexed packages are
+     * remembered, so repeated lookups of missing classes do not go through the bundles again.
+     * Misses in other packages are not, as a dynamic import may resolve once a bundle exporting
+     * the package is installed.
+     */
     public Class<?> loadClass(String name) throws ClassNotFoundException {
+        if (!packageCacheEnabled) {
+            return loadClassFromBundles(name);
+        }
+        int index = name.lastIndexOf('.');
+        if (index <= 0 || name.startsWith("java.")) {
+            return bundle.loadClass(name);
+        }
+        if (classNotFoundCache != null && classNotFoundCache.get(name) != null) {
+            throw new ClassNotFoundException(name);
+        }
+        String packageName = name.substring(0, index);
+        long changes = bundlesChanged.get();
+        Bundle b = getPackageBundleMap().get(packageName);
         try {
-            Class<?> clazz = bundle.loadClass(name);
-            return clazz;
+            if (b != null) {
+                return loadIndexedClass(name, b);
+            }
+            return findUnindexedClass(name, packageName);
+        }
+        catch (ClassNotFoundException cnfe) {
+            if (classNotFoundCache != null && b != null) {
+                classNotFoundCache.putNotFound(name);
+                if (bundlesChanged.get() != changes) {
+                    // a bundle added meanwhile may have the class
+                    classNotFoundCache.remove(name);
+                }
+            }
+            throw cnfe;
+        }
+    }
+
+    private Class<?> loadIndexedClass(String name, Bundle b) throws ClassNotFoundException {
+        try {
+            return b.loadClass(name);
+        }
+        catch (ClassNotFoundException cnfe) {
+            if (bundles.size() > 1) {
+                return findClass(name, b, cnfe);
+            }
+            throw cnfe;
+        }
+    }
+
+    private static String getPackageName(String className) {
+        int index = className.lastIndexOf('.');
+        return (index > 0) ? className.substring(0, index) : "";
+    }
+
+    private Class<?> loadClassFromBundles(String name) throws ClassNotFoundException {
+        try {
+            return bundle.loadClass(name);
         }
         catch (ClassNotFoundException cnfe) {
             if (name.startsWith("java.")) {
                 throw cnfe;
             }
-            
             int index = name.lastIndexOf('.');
             if (index > 0 && bundles.size() > 1) {
-                String packageName = name.substring(0, index);
-                if (packageCacheEnabled) {
-                    return findCachedClass(name, packageName, cnfe);
-                }
-                else {
-                    return findClass(name, packageName, cnfe);
-                }
+                return findClass(name, bundle, cnfe);
             }
-            
             throw cnfe;
         }
     }
-    
-    private Class<?> findCachedClass(String className, String packageName, ClassNotFoundException cnfe) throws ClassNotFoundException {
-        Map<String, Bundle> map = getPackageBundleMap();
-        Bundle b = map.get(packageName);
-        if (b == null) {
+
+    /*
+     * Looks up a class from a package which is not in the index. The remaining bundles are
+     * probed for the class file, so they do not throw when they do not have the class, and the
+     * main bundle is tried last, e.g. for boot delegated packages or classes defined at runtime.
+     */
+    private Class<?> findUnindexedClass(String className, String packageName) throws ClassNotFoundException {
+        String path = className.replace('.', '/') + ".class";
+        if (bundle.getResource(path) == null
             // Work-around for Introspector always looking for classes in sun.beans.infos
-            if (packageName.equals("sun.beans.infos") && className.endsWith("BeanInfo")) {
-                throw cnfe;
+            && !(packageName.equals("sun.beans.infos") && className.endsWith("BeanInfo"))) {
+            for (Bundle delegate : bundles) {
+                if (delegate == bundle || (hasDynamicImports && hasWildcardDynamicImport(delegate))) {
+                    continue;
+                }
+                if (delegate.getResource(path) != null) {
+                    Class<?> clazz = delegate.loadClass(className);
+                    if (FrameworkUtil.getBundle(clazz) == delegate) {
+                        addPackage(packageName, delegate);
+                    }
+                    return clazz;
+                }
             }
-            return findClass(className, packageName, cnfe);
-        }
-        else {
-            return b.loadClass(className);
         }
+        Class<?> clazz = bundle.loadClass(className);
+        // boot delegated or dynamically imported, so later lookups can go to the main bundle
+        addPackage(packageName, bundle);
+        return clazz;
     }
         
-    private Class<?> findClass(String className, String packageName, ClassNotFoundException cnfe) throws ClassNotFoundException {
-        Iterator<Bundle> iterator = bundles.iterator();
-        // skip first bundle
-        iterator.next();
-        while (iterator.hasNext()) {
-            Bundle delegate = iterator.next();
-            if (hasDynamicImports && hasWildcardDynamicImport(delegate)) {
+    private Class<?> findClass(String className, Bundle tried, ClassNotFoundException cnfe) throws ClassNotFoundException {
+        for (Bundle delegate : bundles) {
+            if (delegate == tried) {
+                continue;
+            }
+            if (delegate != bundle && hasDynamicImports && hasWildcardDynamicImport(delegate)) {
                 // skip any bundles with Dynamic-ImportPackage: * to avoid unnecessary wires
                 continue;
             }
@@ -243,58 +412,79 @@ class DelegatingBundle implements Bundle {
     
     public void addBundle(Bundle b) {
         if (bundles.add(b)) {
-            reset();
+            bundlesChanged.incrementAndGet();
+            bundleAdded(b);
+            if (resourceCache != null) {
+                resourceCache.bundleAdded(b);
+            }
         }
     }
 
     public void removeBundle(Bundle b) {
         if (bundles.remove(b)) {
-            reset();
+            bundlesChanged.incrementAndGet();
+            bundleRemoved();
+            if (resourceCache != null) {
+                resourceCache.bundleRemoved(b);
+            }
         }
     }
 
     public URL getResource(String name) {
-        URL resource;
-        if (resourceCache == null) {
-            resource = findResource(name);
-        }
-        else {
-            resource = findCachedResource(name);
+        URL resource = bundle.getResource(name);
+        if (resource == null && bundles.size() > 1) {
+            if (resourceCache == null) {
+                resource = findResource(name);
+            }
+            else {
+                resource = findCachedResource(name);
+            }
         }
         return resource;
     }
     
     private URL findCachedResource(String name) {
-        URL resource = bundle.getResource(name);
-        if (resource == null) {
-            resource = resourceCache.get(name);
-            if (resource == null) {
-                Iterator<Bundle> iterator = bundles.iterator();
-                // skip first bundle
-                iterator.next();
-                // look for resource in the remaining bundles
-                resource = findResource(name, iterator);                
-                resourceCache.put(name, (resource == null) ? NOT_FOUND_RESOURCE : resource);
-            }
-            else if (resource == NOT_FOUND_RESOURCE) {
-                resource = null;
+        ResourceCache.Entry entry = resourceCache.get(name);
+        if (entry != null) {
+            return entry.getResource();
+        }
+        long changes = bundlesChanged.get();
+        // look for resource in the remaining bundles
+        for (Bundle delegate : bundles) {
+            if (delegate != bundle) {
+                URL resource = delegate.getResource(name);
+                if (resource != null) {
+                    resourceCache.putFound(name, resource, delegate);
+                    checkBundlesUnchanged(name, changes);
+                    return resource;
+                }
             }
         }
-        return resource;
+        resourceCache.putNotFound(name);
+        checkBundlesUnchanged(name, changes);
+        return null;
     }
-    
-    private URL findResource(String name) {
-        Iterator<Bundle> iterator = bundles.iterator();
-        return findResource(name, iterator);
+
+    /*
+     * Drops a result which may have been cached after a concurrent change of the bundles
+     * has been applied to the resource cache.
+     */
+    private void checkBundlesUnchanged(String name, long changes) {
+        if (bundlesChanged.get() != changes) {
+            resourceCache.remove(name);
+        }
     }
     
-    private URL findResource(String name, Iterator<Bundle> iterator) {
-        URL resource = null;
-        while (iterator.hasNext() && resource == null) {
-            Bundle delegate = iterator.next();
-            resource = delegate.getResource(name);
+    private URL findResource(String name) {
+        for (Bundle delegate : bundles) {
+            if (delegate != bundle) {
+                URL resource = delegate.getResource(name);
+                if (resource != null) {
+                    return resource;
+                }
+            }
         }
-        return resource;
+        return null;
     }
 
     public Enumeration<URL> getResources(String name) throws IOException {
@@ -419,26 +609,7 @@ class DelegatingBundle implements Bundle {
     }
     
     public String toString() {
-        return "[DelegatingBundle: " + bundles + "]";
+        return "[DelegatingBundle: " + bundles + ((resourceCache == null) ? "" : ", " + resourceCache) + "]";
     }
     
-    private static class Cache<K, V> extends LinkedHashMap<K, V> {
-        
-        private final int maxSize;
-        
-        Cache(int maxSize) {
-            this(16, maxSize, 0.75f);
-        }
-        
-        Cache(int initialSize, int maxSize, float loadFactor) {
-            super(initialSize, loadFactor, true);
-            this.maxSize = maxSize;
-        }
-        
-        @Override   
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return size() > maxSize;
-        }
-    }
-
 }
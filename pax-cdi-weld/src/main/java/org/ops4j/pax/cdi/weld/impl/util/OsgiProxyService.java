@@ -19,6 +19,11 @@ import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import javax.enterprise.inject.spi.BeanManager;
 
 import org.jboss.weld.interceptor.proxy.LifecycleMixin;
@@ -30,6 +35,12 @@ import org.osgi.framework.FrameworkUtil;
 
 /**
  * Implements {@link ProxyServices} for Weld in OSGi runtime.
+ * <p>
+ * The class loader for the proxies of a bean type is resolved once per type. Proxies of public
+ * and protected types are defined by a class loader shared by the container, proxies of
+ * package-private types by the class loader of the bean type. The types resolved are tracked
+ * by the service, so the cached values attached to the bean types do not refer to the container.
+ * A type may be resolved concurrently, it is only counted once.
  *
  * @see org.ops4j.pax.cdi.weld.impl.ProxyWeavingHook
  *
@@ -44,6 +55,28 @@ public class OsgiProxyService implements ProxyServices {
 
     private final ClassLoader loader;
 
+    private static final ClassValue<Boolean> USES_TYPE_CLASS_LOADER = new ClassValue<Boolean>() {
+
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            // For package-private bean type, we must used the same defining classloader
+            // as that of the bean type otherwise IllegalAccessError is thrown and there
+            // seems to be no obvious way to do proper adaptation of the classloader
+            // in case the bean type closure spans multiple bundles.
+            // For Weld mixin classes, we rely on the ProxyWeavingHook that adds dynamic
+            // imports for the corresponding packages.
+            return !Modifier.isPublic(type.getModifiers()) && !Modifier.isProtected(type.getModifiers());
+        }
+    };
+
+    private final Set<Class<?>> resolvedTypes = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder classLoaderLookups = new LongAdder();
+
+    private final AtomicInteger sharedClassLoaderTypes = new AtomicInteger();
+
+    private final AtomicInteger typeClassLoaderTypes = new AtomicInteger();
+
     public OsgiProxyService(BeanManager manager, ClassLoader parent) {
         this.manager = manager;
         // Initiate the delegate classloader to contain the Weld mixin classes
@@ -55,16 +88,15 @@ public class OsgiProxyService implements ProxyServices {
 
     @Override
     public ClassLoader getClassLoader(Class<?> proxiedBeanType) {
-        if (!Modifier.isPublic(proxiedBeanType.getModifiers()) &&
-                !Modifier.isProtected(proxiedBeanType.getModifiers())) {
-            // For package-private bean type, we must used the same defining classloader
-            // as that of the bean type otherwise IllegalAccessError is thrown and there
-            // seems to be no obvious way to do proper adaptation of the classloader
-            // in case the bean type closure spans multiple bundles.
-            // For Weld mixin classes, we rely on the ProxyWeavingHook that adds dynamic
-            // imports for the corresponding packages.
-            return proxiedBeanType.getClassLoader();
+        classLoaderLookups.increment();
+        boolean usesTypeClassLoader = USES_TYPE_CLASS_LOADER.get(proxiedBeanType);
+        if (!resolvedTypes.contains(proxiedBeanType)) {
+            resolveClassLoader(proxiedBeanType, usesTypeClassLoader);
         }
+        return usesTypeClassLoader ? proxiedBeanType.getClassLoader() : loader;
+    }
+
+    private void resolveClassLoader(Class<?> proxiedBeanType, boolean usesTypeClassLoader) {
 //        else if (Extension.class.isAssignableFrom(proxiedBeanType)) {
 //            // It happens that extensions often declare package-private or public methods
 //            // whose return type is package-private hence forcing to define the corresponding
@@ -75,20 +107,63 @@ public class OsgiProxyService implements ProxyServices {
         // TODO: it may be necessary to iterate over the whole list of proxied methods from
         // the type closure and check for package-private or public methods whose parameters
         // or return type are package-private.
-        else {
+        if (!usesTypeClassLoader) {
             // For non package-private bean type, we retrieve its type closure that may
             // span multiple bundles and add then to list of the delegating bundles.
             // We use the bean managed to leverage its annotated types cache.
+            Set<Bundle> bundles = new LinkedHashSet<Bundle>();
             for (Class<?> type : Types.getRawTypes(manager.createAnnotatedType(proxiedBeanType).getTypeClosure())) {
                 Bundle bundle = FrameworkUtil.getBundle(type);
                 if (bundle != null) {
-                    delegate.addBundle(bundle);
+                    bundles.add(bundle);
                 }
             }
-            return loader;
+            // the bundles are added before the type is marked as resolved
+            for (Bundle bundle : bundles) {
+                delegate.addBundle(bundle);
+            }
+        }
+        if (resolvedTypes.add(proxiedBeanType)) {
+            if (usesTypeClassLoader) {
+                typeClassLoaderTypes.incrementAndGet();
+            }
+            else {
+                sharedClassLoaderTypes.incrementAndGet();
+            }
         }
     }
 
+    /**
+     * Returns the number of class loader lookups by Weld. Weld looks up the class loader both
+     * when it looks for an existing proxy class and when it defines a new one, so this is not
+     * the number of proxy classes defined.
+     *
+     * @return number of lookups
+     */
+    public long getClassLoaderLookups() {
+        return classLoaderLookups.sum();
+    }
+
+    /**
+     * Returns the number of proxied types whose proxies are defined by the class loader shared
+     * by the container.
+     *
+     * @return number of types
+     */
+    public int getSharedClassLoaderTypes() {
+        return sharedClassLoaderTypes.get();
+    }
+
+    /**
+     * Returns the number of package-private proxied types whose proxies are defined by the class
+     * loader of the type.
+     *
+     * @return number of types
+     */
+    public int getTypeClassLoaderTypes() {
+        return typeClassLoaderTypes.get();
+    }
+
     @Override
     public Class<?> loadBeanClass(final String className) {
         try {
@@ -103,6 +178,13 @@ public class OsgiProxyService implements ProxyServices {
         // empty
     }
 
+    @Override
+    public String toString() {
+        return "OsgiProxyService [classLoaderLookups=" + getClassLoaderLookups() + ", sharedClassLoaderTypes="
+            + getSharedClassLoaderTypes() + ", typeClassLoaderTypes=" + getTypeClassLoaderTypes()
+            + ", loader=" + delegate + "]";
+    }
+
     private class LoadClass implements PrivilegedExceptionAction<Class<?>> {
 
         private final String className;
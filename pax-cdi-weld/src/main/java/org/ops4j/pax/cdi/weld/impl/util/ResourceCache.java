@@ -0,0 +1,268 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.weld.impl.util;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Size-bounded cache of resource lookups for {@link DelegatingBundle}, remembering both the
+ * resources found and the names not found in any bundle. It also holds the names of the classes
+ * not found.
+ * <p>
+ * The cache is split into segments by resource name. Lookups do not lock. Each segment evicts
+ * in insertion order, giving entries which were read since the last eviction pass a second
+ * chance, so frequently used resources stay cached. Entries removed or replaced stay queued
+ * until the next eviction pass, which also runs once the queue holds twice the capacity.
+ */
+class ResourceCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * Result of a lookup: the resource and the bundle it was found in, or {@code null} for both if
+     * the resource was not found.
+     */
+    static final class Entry {
+
+        private final String name;
+        private final URL resource;
+        private final Bundle bundle;
+        private volatile boolean referenced;
+
+        Entry(String name, URL resource, Bundle bundle) {
+            this.name = name;
+            this.resource = resource;
+            this.bundle = bundle;
+        }
+
+        URL getResource() {
+            return resource;
+        }
+
+        boolean isNotFound() {
+            return resource == null;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+        private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<Entry>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ReentrantLock evictionLock = new ReentrantLock();
+        private final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void put(String name, Entry entry) {
+            // a replaced entry is dropped from the queue on the next eviction pass
+            int newSize = (entries.put(name, entry) == null) ? size.incrementAndGet() : size.get();
+            insertionOrder.add(entry);
+            int newQueued = queued.incrementAndGet();
+            if (newSize > capacity || newQueued > 2 * capacity) {
+                evict();
+            }
+        }
+
+        void remove(String name) {
+            if (entries.remove(name) != null) {
+                // the entry is dropped from the queue on the next eviction pass
+                size.decrementAndGet();
+            }
+        }
+
+        private boolean isStale(Entry entry) {
+            return entries.get(entry.name) != entry;
+        }
+
+        private void evict() {
+            // other writers do not wait, one of them evicts for all
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                while (size.get() > capacity) {
+                    Entry entry = insertionOrder.poll();
+                    if (entry == null) {
+                        break;
+                    }
+                    if (isStale(entry)) {
+                        // removed or replaced before
+                        queued.decrementAndGet();
+                    }
+                    else if (entry.referenced) {
+                        entry.referenced = false;
+                        insertionOrder.add(entry);
+                    }
+                    else {
+                        queued.decrementAndGet();
+                        if (entries.remove(entry.name, entry)) {
+                            size.decrementAndGet();
+                        }
+                    }
+                }
+                if (queued.get() > 2 * capacity) {
+                    for (Iterator<Entry> iterator = insertionOrder.iterator(); iterator.hasNext();) {
+                        if (isStale(iterator.next())) {
+                            iterator.remove();
+                            queued.decrementAndGet();
+                        }
+                    }
+                }
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ResourceCache(int maxSize) {
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxSize));
+        int capacity = (maxSize + count - 1) / count;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    private Segment segmentFor(String name) {
+        int h = name.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Returns the cached result for the given resource name, or {@code null} if the name has not
+     * been looked up yet.
+     */
+    Entry get(String name) {
+        Entry entry = segmentFor(name).entries.get(name);
+        if (entry == null) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+        }
+        return entry;
+    }
+
+    void putFound(String name, URL resource, Bundle bundle) {
+        segmentFor(name).put(name, new Entry(name, resource, bundle));
+    }
+
+    void putNotFound(String name) {
+        segmentFor(name).put(name, new Entry(name, null, null));
+    }
+
+    void remove(String name) {
+        segmentFor(name).remove(name);
+    }
+
+    /**
+     * Drops the names not found so far which the given bundle has. Resources found before remain
+     * valid, the bundles other than the main bundle are not searched in a defined order.
+     */
+    void bundleAdded(Bundle bundle) {
+        removeNotFound(name -> bundle.getResource(name) != null);
+    }
+
+    /**
+     * Drops the names not found so far which match the given predicate.
+     */
+    void removeNotFound(Predicate<String> names) {
+        for (Segment segment : segments) {
+            for (Map.Entry<String, Entry> e : segment.entries.entrySet()) {
+                if (e.getValue().isNotFound() && names.test(e.getKey())) {
+                    segment.remove(e.getKey());
+                }
+            }
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            for (String name : segment.entries.keySet()) {
+                segment.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Drops the resources found in the given bundle. Names not found remain valid.
+     */
+    void bundleRemoved(Bundle bundle) {
+        for (Segment segment : segments) {
+            for (Map.Entry<String, Entry> e : segment.entries.entrySet()) {
+                if (e.getValue().bundle == bundle) {
+                    segment.remove(e.getKey());
+                }
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size.get();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of entries queued for eviction, including entries removed or replaced
+     * since the last eviction pass.
+     */
+    int queueLength() {
+        int length = 0;
+        for (Segment segment : segments) {
+            length += segment.insertionOrder.size();
+        }
+        return length;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceCache [size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.weld.impl.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWiring;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the package index of {@link DelegatingBundle} as bundles are added and removed.
+ */
+public class DelegatingBundleTest {
+
+    private static final String PRIVATE_CLASS = "com.acme.internal.Impl";
+    private static final String LIBRARY_CLASS = "com.acme.lib.Library";
+
+    @Test
+    public void mainPackageBeforeExports() throws ClassNotFoundException {
+        Bundle main = bundle(Collections.singletonList("com/acme/internal/Impl.class"));
+        Bundle other = bundle(Collections.emptyList(), "com.acme.internal");
+        doReturn(String.class).when(main).loadClass(PRIVATE_CLASS);
+
+        DelegatingBundle delegating = new DelegatingBundle(Arrays.asList(main, other));
+        Assert.assertEquals(String.class, delegating.loadClass(PRIVATE_CLASS));
+        verify(other, never()).loadClass(anyString());
+    }
+
+    @Test
+    public void mainPackageBeforeAddedExports() throws ClassNotFoundException {
+        Bundle main = bundle(Collections.singletonList("com/acme/internal/Impl.class"));
+        doReturn(String.class).when(main).loadClass(PRIVATE_CLASS);
+        DelegatingBundle delegating = new DelegatingBundle(main);
+        Assert.assertEquals(String.class, delegating.loadClass(PRIVATE_CLASS));
+
+        // the index is updated incrementally
+        Bundle other = bundle(Collections.emptyList(), "com.acme.internal");
+        delegating.addBundle(other);
+        Assert.assertEquals(String.class, delegating.loadClass(PRIVATE_CLASS));
+        verify(other, never()).loadClass(anyString());
+    }
+
+    @Test
+    public void addedAndRemovedExports() throws ClassNotFoundException {
+        Bundle main = bundle(Collections.singletonList("com/acme/internal/Impl.class"));
+        doReturn(String.class).when(main).loadClass(PRIVATE_CLASS);
+        DelegatingBundle delegating = new DelegatingBundle(main);
+        delegating.loadClass(PRIVATE_CLASS);
+
+        Bundle other = bundle(Collections.emptyList(), "com.acme.lib");
+        doReturn(Integer.class).when(other).loadClass(LIBRARY_CLASS);
+        delegating.addBundle(other);
+        Assert.assertEquals(Integer.class, delegating.loadClass(LIBRARY_CLASS));
+
+        delegating.removeBundle(other);
+        when(main.loadClass(LIBRARY_CLASS)).thenThrow(new ClassNotFoundException(LIBRARY_CLASS));
+        try {
+            delegating.loadClass(LIBRARY_CLASS);
+            Assert.fail("removed bundle still in use");
+        }
+        catch (ClassNotFoundException e) {
+            // expected
+        }
+        verify(other, times(1)).loadClass(LIBRARY_CLASS);
+    }
+
+    @Test
+    public void splitPackage() throws ClassNotFoundException {
+        Bundle main = bundle(Collections.emptyList());
+        Bundle other = bundle(Collections.emptyList(), "com.acme.lib");
+        Bundle split = bundle(Collections.emptyList());
+        String splitClass = "com.acme.lib.Split";
+        when(main.loadClass(splitClass)).thenThrow(new ClassNotFoundException(splitClass));
+        when(other.loadClass(splitClass)).thenThrow(new ClassNotFoundException(splitClass));
+        doReturn(Short.class).when(split).loadClass(splitClass);
+
+        // the package is indexed to the exporter, the class is in another bundle
+        DelegatingBundle delegating = new DelegatingBundle(Arrays.asList(main, other, split));
+        Assert.assertEquals(Short.class, delegating.loadClass(splitClass));
+        Assert.assertEquals(Short.class, delegating.loadClass(splitClass));
+        verify(other, times(2)).loadClass(splitClass);
+    }
+
+    @Test
+    public void missesOfIndexedPackagesAreCached() throws ClassNotFoundException {
+        Bundle main = bundle(Collections.singletonList("com/acme/internal/Impl.class"));
+        String missing = "com.acme.internal.Missing";
+        when(main.loadClass(missing)).thenThrow(new ClassNotFoundException(missing));
+        DelegatingBundle delegating = new DelegatingBundle(main);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                delegating.loadClass(missing);
+                Assert.fail();
+            }
+            catch (ClassNotFoundException e) {
+                // expected
+            }
+        }
+        verify(main, times(1)).loadClass(missing);
+    }
+
+    @Test
+    public void missesOfUnindexedPackagesAreNotCached() throws ClassNotFoundException {
+        Bundle main = bundle(Collections.emptyList());
+        String dynamic = "org.dynamic.Imported";
+        when(main.loadClass(dynamic)).thenThrow(new ClassNotFoundException(dynamic));
+        DelegatingBundle delegating = new DelegatingBundle(main);
+
+        try {
+            delegating.loadClass(dynamic);
+            Assert.fail();
+        }
+        catch (ClassNotFoundException e) {
+            // expected
+        }
+
+        // a dynamic import resolves once a bundle exports the package
+        doReturn(Long.class).when(main).loadClass(dynamic);
+        Assert.assertEquals(Long.class, delegating.loadClass(dynamic));
+    }
+
+    private static Bundle bundle(List<String> localClasses, String... exports) {
+        Bundle bundle = mock(Bundle.class);
+        BundleWiring wiring = mock(BundleWiring.class);
+        List<BundleCapability> capabilities = new ArrayList<>();
+        for (String export : exports) {
+            BundleCapability capability = mock(BundleCapability.class);
+            when(capability.getAttributes())
+                .thenReturn(Collections.singletonMap(BundleRevision.PACKAGE_NAMESPACE, export));
+            capabilities.add(capability);
+        }
+        when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+        when(bundle.getHeaders()).thenReturn(new Hashtable<>());
+        when(wiring.getCapabilities(BundleRevision.PACKAGE_NAMESPACE)).thenReturn(capabilities);
+        when(wiring.getRequiredWires(null)).thenReturn(Collections.emptyList());
+        when(wiring.listResources(anyString(), anyString(), anyInt())).thenReturn(localClasses);
+        return bundle;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.cdi.weld.impl.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ResourceCacheTest {
+
+    // a single segment, so the eviction order is defined
+    private static final int CAPACITY = 1;
+
+    @Test
+    public void evictsInInsertionOrder() {
+        ResourceCache cache = new ResourceCache(CAPACITY);
+        cache.putNotFound("first");
+        cache.putNotFound("second");
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNull(cache.get("first"));
+        Assert.assertNotNull(cache.get("second"));
+    }
+
+    @Test
+    public void keepsReferencedEntries() {
+        ResourceCache cache = new ResourceCache(CAPACITY);
+        cache.putNotFound("used");
+        Assert.assertNotNull(cache.get("used"));
+        cache.putNotFound("other");
+
+        // the referenced entry gets a second chance, the newer one is evicted
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNotNull(cache.get("used"));
+        Assert.assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void queueIsBoundedByRemovals() {
+        ResourceCache cache = new ResourceCache(CAPACITY);
+        for (int i = 0; i < 1000; i++) {
+            cache.putNotFound("name");
+            cache.remove("name");
+        }
+        Assert.assertEquals(0, cache.size());
+        Assert.assertTrue(cache.queueLength() <= 2 * CAPACITY);
+    }
+
+    @Test
+    public void queueIsBoundedByReplacements() {
+        ResourceCache cache = new ResourceCache(CAPACITY);
+        for (int i = 0; i < 1000; i++) {
+            cache.putNotFound("name");
+        }
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.queueLength() <= 2 * CAPACITY);
+        Assert.assertNotNull(cache.get("name"));
+    }
+
+    @Test
+    public void queueIsBoundedByEvictionsAndRemovals() {
+        ResourceCache cache = new ResourceCache(CAPACITY);
+        for (int i = 0; i < 1000; i++) {
+            cache.putNotFound("evicted" + i);
+        }
+        cache.remove("evicted999");
+
+        // the entries evicted before must not let removed entries pile up in the queue
+        for (int i = 0; i < 500; i++) {
+            cache.putNotFound("name");
+            cache.remove("name");
+            Assert.assertTrue(cache.queueLength() <= 2 * CAPACITY);
+        }
+        cache.putNotFound("name");
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNotNull(cache.get("name"));
+    }
+
+    @Test
+    public void replacedEntryIsKept() throws MalformedURLException {
+        ResourceCache cache = new ResourceCache(CAPACITY);
+        URL resource = new URL("file:/resource");
+        cache.putNotFound("replaced");
+        cache.putFound("replaced", resource, mock(Bundle.class));
+        Assert.assertEquals(resource, cache.get("replaced").getResource());
+        cache.putNotFound("other");
+
+        // the queued entry replaced before is skipped, the referenced replacement stays
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(resource, cache.get("replaced").getResource());
+        Assert.assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void bundleChanges() throws MalformedURLException {
+        ResourceCache cache = new ResourceCache(1024);
+        Bundle bundle = mock(Bundle.class);
+        URL resource = new URL("file:/found");
+        when(bundle.getResource("missing")).thenReturn(resource);
+        cache.putFound("found", resource, bundle);
+        cache.putNotFound("missing");
+        cache.putNotFound("absent");
+
+        cache.bundleAdded(bundle);
+        Assert.assertNull(cache.get("missing"));
+        Assert.assertTrue(cache.get("absent").isNotFound());
+
+        cache.bundleRemoved(bundle);
+        Assert.assertNull(cache.get("found"));
+        Assert.assertEquals(1, cache.size());
+    }
+}